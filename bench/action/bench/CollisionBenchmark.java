@@ -0,0 +1,82 @@
+package action.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import action.collision.SpatialHashGrid;
+import action.collision.SweepAndPrune;
+import action.objects.GameObject;
+import action.physics.ContactSolver;
+import action.physics.PhysicsWorld;
+import action.physics.Simulation;
+
+/**
+ * Benchmarks for resolving every collision in a scene once, as the collision
+ * phase of a frame does. The brute force version is the original all against
+ * all loop through FloatingObject.resolveCollisions, and the others find
+ * contacts through a Broadphase over the PhysicsWorld.
+ * 
+ * The scene is rebuilt before every iteration so that each one measures the
+ * same starting state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int count;
+
+    private List<GameObject> gameObjects;
+    private PhysicsWorld world;
+
+    private final SpatialHashGrid grid = new SpatialHashGrid(Simulation.DEFAULT_CELL_SIZE);
+    private final SweepAndPrune sweepAndPrune = new SweepAndPrune();
+    private final ContactSolver solver = new ContactSolver();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        gameObjects = SceneGenerator.createGameObjects(count, SceneGenerator.DEFAULT_SEED);
+
+        world = new PhysicsWorld(count);
+        SceneGenerator.populate(world, count, SceneGenerator.DEFAULT_SEED);
+    }
+
+    @Benchmark
+    public void resolveCollisionsBruteForce() {
+        for (GameObject gameObject : gameObjects) {
+            gameObject.resolveCollisions(gameObjects);
+        }
+    }
+
+    @Benchmark
+    public int collideSpatialHashGrid() {
+        world.findContacts(grid, solver);
+        solver.solve(world);
+
+        return solver.getCount();
+    }
+
+    @Benchmark
+    public int collideSweepAndPrune() {
+        world.findContacts(sweepAndPrune, solver);
+        solver.solve(world);
+
+        return solver.getCount();
+    }
+}
@@ -0,0 +1,61 @@
+package action.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import action.collision.SpatialHashGrid;
+import action.collision.SweepAndPrune;
+import action.physics.Simulation;
+
+/**
+ * Benchmarks a full headless frame: everything the ActionTimer does in a pulse
+ * except drawing. Each operation is one Simulation step.
+ * 
+ * The scene is rebuilt before every iteration so that each one starts from the
+ * same state, and then evolves over the iteration like a real game would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+    private static final double STEP_LENGTH = 1 / 120.0;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int count;
+
+    @Param({ "grid", "sweep" })
+    public String broadphase;
+
+    private Simulation simulation;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        simulation = new Simulation();
+        SceneGenerator.populate(simulation.getWorld(), count, SceneGenerator.DEFAULT_SEED);
+
+        if (broadphase.equals("sweep"))
+            simulation.setBroadphase(new SweepAndPrune());
+        else
+            simulation.setBroadphase(new SpatialHashGrid(Simulation.DEFAULT_CELL_SIZE));
+    }
+
+    @Benchmark
+    public void step() {
+        simulation.step(STEP_LENGTH);
+    }
+}
@@ -0,0 +1,83 @@
+package action.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import action.collision.ContactResult;
+import action.collision.Narrowphase;
+import action.objects.GameObject;
+import javafx.geometry.Point2D;
+
+/**
+ * Benchmarks for the exact tests between single pairs of GameObjects, through
+ * both the GameObject API and the primitive Narrowphase underneath it. Each
+ * operation is one test, averaged over a fixed set of pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NarrowphaseBenchmark {
+    private static final int PAIRS = 1024;
+
+    private GameObject[] firsts = new GameObject[PAIRS];
+    private GameObject[] seconds = new GameObject[PAIRS];
+    private Point2D[] points = new Point2D[PAIRS];
+
+    private final ContactResult result = new ContactResult();
+
+    @Setup
+    public void setup() {
+        List<GameObject> gameObjects = SceneGenerator.createGameObjects(PAIRS * 2, SceneGenerator.DEFAULT_SEED);
+
+        for (int i = 0; i < PAIRS; i++) {
+            firsts[i] = gameObjects.get(i * 2);
+            seconds[i] = gameObjects.get(i * 2 + 1);
+            points[i] = seconds[i].getA();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getShortestLine(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(firsts[i].getShortestLine(seconds[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getNearestPoint(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(firsts[i].getNearestPoint(points[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void narrowphaseTouching(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            GameObject first = firsts[i];
+            GameObject second = seconds[i];
+
+            blackhole.consume(Narrowphase.touching(first.getAX(), first.getAY(), first.getBX(), first.getBY(),
+                    second.getAX(), second.getAY(), second.getBX(), second.getBY(),
+                    first.getRadius() + second.getRadius(), result));
+        }
+    }
+}
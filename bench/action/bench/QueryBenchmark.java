@@ -0,0 +1,77 @@
+package action.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import action.physics.PhysicsWorld;
+import action.physics.RayHit;
+
+/**
+ * Benchmarks the spatial queries of a PhysicsWorld: a fan of rays cast from one
+ * point in a single call, as for AI vision, and a nearest neighbour search. The
+ * bodies do not move between operations, so the trees are only built once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int RAY_COUNT = 64;
+    private static final double RAY_LENGTH = 500;
+    private static final int NEAREST_COUNT = 8;
+
+    @Param({ "100", "1000", "10000" })
+    public int count;
+
+    private PhysicsWorld world;
+    private double centreX, centreY;
+
+    private final double[] rays = new double[RAY_COUNT * 4];
+    private final RayHit[] hits = new RayHit[RAY_COUNT];
+    private final int[] nearestIds = new int[NEAREST_COUNT];
+    private final double[] nearestDistances = new double[NEAREST_COUNT];
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        world = new PhysicsWorld();
+        SceneGenerator.populate(world, count, SceneGenerator.DEFAULT_SEED);
+
+        // The scenes are spread over a square with a side of 60 per root body
+        centreX = Math.sqrt(count) * 30;
+        centreY = centreX;
+
+        for (int i = 0; i < RAY_COUNT; i++) {
+            double angle = i * 2 * Math.PI / RAY_COUNT;
+
+            rays[i * 4] = centreX;
+            rays[i * 4 + 1] = centreY;
+            rays[i * 4 + 2] = centreX + Math.cos(angle) * RAY_LENGTH;
+            rays[i * 4 + 3] = centreY + Math.sin(angle) * RAY_LENGTH;
+            hits[i] = new RayHit();
+        }
+    }
+
+    @Benchmark
+    public int raycastFan() {
+        return world.raycast(rays, RAY_COUNT, -1, hits);
+    }
+
+    @Benchmark
+    public int findNearest() {
+        return world.findNearest(centreX, centreY, Double.POSITIVE_INFINITY, nearestIds, nearestDistances);
+    }
+}
@@ -0,0 +1,101 @@
+package action.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import action.objects.FallingObject;
+import action.objects.FloatingObject;
+import action.objects.GameObject;
+import action.physics.PhysicsWorld;
+import javafx.geometry.Point2D;
+
+/**
+ * The SceneGenerator class builds random but reproducible scenes for the
+ * benchmarks. The same count and seed always give the same scene.
+ * 
+ * Scenes are a mix of short falling capsules and long infinite-mass walls,
+ * spread over a square whose area grows with the object count so that the
+ * density, and so the number of contacts per object, stays about the same.
+ */
+public final class SceneGenerator {
+    public static final long DEFAULT_SEED = 0x5eed;
+
+    // The average area given to each object in the scene
+    private static final double AREA_PER_OBJECT = 60 * 60;
+
+    private static final double WALL_FRACTION = 0.1;
+    private static final double GRAVITY = 200;
+
+    private SceneGenerator() {
+    }
+
+    /**
+     * Add a random scene to the given PhysicsWorld.
+     * 
+     * @param world the PhysicsWorld to add the bodies to.
+     * @param count the number of bodies to add.
+     * @param seed  the seed for the random scene.
+     */
+    public static void populate(PhysicsWorld world, int count, long seed) {
+        Random random = new Random(seed);
+        double size = Math.sqrt(count * AREA_PER_OBJECT);
+
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * size;
+            double y = random.nextDouble() * size;
+            double angle = random.nextDouble() * 2 * Math.PI;
+
+            if (random.nextDouble() < WALL_FRACTION) {
+                double length = 100 + random.nextDouble() * 200;
+
+                world.add(x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length,
+                        5 + random.nextDouble() * 5, Double.POSITIVE_INFINITY);
+            } else {
+                double length = 10 + random.nextDouble() * 30;
+
+                int id = world.add(x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length,
+                        2 + random.nextDouble() * 4, 1 + random.nextDouble() * 4);
+
+                world.setVelocity(id, random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50);
+                world.setAcceleration(id, 0, GRAVITY);
+            }
+        }
+    }
+
+    /**
+     * Create a random scene as a List of GameObjects. Walls are FloatingObjects
+     * and everything else is a FallingObject.
+     * 
+     * @param count the number of GameObjects to create.
+     * @param seed  the seed for the random scene.
+     * @return the GameObjects in the scene.
+     */
+    public static List<GameObject> createGameObjects(int count, long seed) {
+        PhysicsWorld world = new PhysicsWorld(count);
+        populate(world, count, seed);
+
+        List<GameObject> gameObjects = new ArrayList<>(count);
+
+        for (int id = 0; id < world.getRows(); id++) {
+            Point2D a = new Point2D(world.getAX(id), world.getAY(id));
+            Point2D b = new Point2D(world.getBX(id), world.getBY(id));
+            double mass = world.getMass(id);
+
+            GameObject gameObject;
+
+            if (mass == Double.POSITIVE_INFINITY) {
+                gameObject = new FloatingObject(a, b, world.getRadius(id), mass);
+            } else {
+                FallingObject fallingObject = new FallingObject(a, b, world.getRadius(id), mass);
+                fallingObject.setAcceleration(new Point2D(world.getAccelerationX(id), world.getAccelerationY(id)));
+                gameObject = fallingObject;
+            }
+
+            gameObject.setVelocity(new Point2D(world.getVelocityX(id), world.getVelocityY(id)));
+            gameObjects.add(gameObject);
+        }
+
+        return gameObjects;
+    }
+}
@@ -0,0 +1,81 @@
+package action.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import action.physics.DeltaSnapshot;
+import action.physics.PhysicsWorld;
+import action.physics.Simulation;
+import action.physics.WorldSnapshot;
+
+/**
+ * Benchmarks saving and restoring the state of a PhysicsWorld, as done several
+ * times per frame when rolling back and simulating again. The delta benchmarks
+ * compare against a keyframe taken a few steps earlier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final double STEP_LENGTH = 1 / 120.0;
+    private static final int DELTA_STEPS = 8;
+
+    @Param({ "100", "1000", "10000" })
+    public int count;
+
+    private PhysicsWorld world;
+    private final WorldSnapshot keyframe = new WorldSnapshot();
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    private final DeltaSnapshot delta = new DeltaSnapshot();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Simulation simulation = new Simulation();
+        world = simulation.getWorld();
+        SceneGenerator.populate(world, count, SceneGenerator.DEFAULT_SEED);
+
+        world.save(keyframe);
+
+        for (int i = 0; i < DELTA_STEPS; i++) {
+            simulation.step(STEP_LENGTH);
+        }
+
+        world.save(snapshot);
+        world.save(delta, keyframe);
+    }
+
+    @Benchmark
+    public void save() {
+        world.save(snapshot);
+    }
+
+    @Benchmark
+    public void restore() {
+        world.restore(snapshot);
+    }
+
+    @Benchmark
+    public void saveDelta() {
+        world.save(delta, keyframe);
+    }
+
+    @Benchmark
+    public void restoreDelta() {
+        world.restore(delta);
+    }
+}
@@ -0,0 +1,89 @@
+package action.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import action.objects.FallingObject;
+import action.objects.GameObject;
+import action.objects.GameObjectPool;
+import action.objects.SpawnBuffer;
+import action.physics.PhysicsWorld;
+import javafx.geometry.Point2D;
+
+/**
+ * Benchmarks spawning and despawning short-lived GameObjects through a
+ * SpawnBuffer, as a stream of projectiles would. Each operation spawns a burst
+ * of GameObjects, despawns the burst from a fixed number of operations before,
+ * and applies the buffer. The GC profiler shows what pooling the GameObjects
+ * saves over creating new ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+    private static final int LIFETIME = 60;
+
+    @Param({ "10", "100", "1000" })
+    public int burst;
+
+    @Param({ "true", "false" })
+    public boolean pooled;
+
+    private PhysicsWorld world;
+    private ArrayList<GameObject> gameObjects;
+    private SpawnBuffer buffer;
+    private GameObjectPool<FallingObject> pool;
+
+    // Each burst still alive, oldest first, as a ring
+    private FallingObject[] alive;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        world = new PhysicsWorld();
+        gameObjects = new ArrayList<>();
+        buffer = new SpawnBuffer();
+        pool = new GameObjectPool<>(() -> new FallingObject(Point2D.ZERO, Point2D.ZERO, 0, 1));
+        alive = new FallingObject[burst * LIFETIME];
+        next = 0;
+
+        if (pooled)
+            pool.fill(alive.length + burst);
+    }
+
+    @Benchmark
+    public void spawnAndDespawn() {
+        for (int i = 0; i < burst; i++) {
+            int slot = next + i;
+
+            if (alive[slot] != null)
+                buffer.despawn(alive[slot]);
+
+            double x = slot * 8;
+            FallingObject gameObject = pooled ? pool.obtain(x, 0, x + 4, 0, 2, 1)
+                    : new FallingObject(new Point2D(x, 0), new Point2D(x + 4, 0), 2, 1);
+
+            buffer.spawn(gameObject);
+            alive[slot] = gameObject;
+        }
+
+        next = (next + burst) % alive.length;
+        buffer.apply(gameObjects, world);
+    }
+}
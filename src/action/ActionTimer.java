@@ -1,9 +1,27 @@
 package action;
 
+import action.level.ChunkStreamer;
+import action.movement.ControllerScheduler;
+import action.movement.InputDispatcher;
 import action.movement.MovementController;
+import action.movement.PlayerController;
 import action.objects.GameObject;
+import action.objects.SpawnBuffer;
+import action.physics.FrameProfiler;
+import action.physics.FrameProfiler.Phase;
+import action.physics.PhysicsWorld;
+import action.physics.Simulation;
+import action.physics.SimulationThread;
+import action.render.Camera;
+import action.render.ProfilerOverlay;
+import action.render.SceneRenderer;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javafx.animation.AnimationTimer;
 import javafx.scene.canvas.GraphicsContext;
@@ -11,15 +29,68 @@ import javafx.scene.canvas.GraphicsContext;
 /**
  * The ActionTimer class provides an AnimationTimer implementation that handles
  * all GameObject collisions and invokes their methods to move them.
+ * 
+ * The ActionTimer is a thin JavaFX adapter over a Simulation. It feeds the time
+ * between pulses into the Simulation, applies the MovementControllers at the
+ * start of every step, and draws the Simulation's PhysicsWorld with a
+ * SceneRenderer. The state of every GameObject is kept in that PhysicsWorld,
+ * which can also hold bodies that have no GameObject, such as those loaded from
+ * a level file.
+ * 
+ * The Simulation can also run on a SimulationThread of its own, so that a slow
+ * step never holds up drawing or input. The JavaFX thread then only picks up
+ * the latest state handed over by the SimulationThread and draws it, and the
+ * changes it makes to the PhysicsWorld are run on the simulation thread.
+ * 
+ * GameObjects that come and go during play, such as projectiles, should be
+ * spawned and despawned through the SpawnBuffer, which is applied at the start
+ * of every step on whichever thread runs the Simulation.
  */
 public class ActionTimer extends AnimationTimer {
     private long previousNow = 0;
 
+    private final Simulation simulation = new Simulation();
+
+    // The GameObjects that were in the Collection at the last frame, and the ones
+    // in it now, kept to find the GameObjects that were removed
+    private final Set<GameObject> attached = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<GameObject> current = Collections.newSetFromMap(new IdentityHashMap<>());
+
     private Collection<GameObject> gameObjects;
+    private final SpawnBuffer spawnBuffer = new SpawnBuffer();
     private Collection<MovementController> movementControllers;
+    private InputDispatcher inputDispatcher;
+    private final ControllerScheduler controllerScheduler = new ControllerScheduler();
 
     private GraphicsContext context;
 
+    private final SceneRenderer renderer = new SceneRenderer();
+    private ProfilerOverlay overlay;
+
+    private ChunkStreamer chunkStreamer;
+
+    // While the simulation runs on its own thread, the state drawn is copied into
+    // this PhysicsWorld, and the changes to the simulated one are made in a task.
+    // Only one task is queued at a time, so frames drawn while a slow step runs
+    // do not pile up tasks that would each do the same work.
+    private SimulationThread simulationThread;
+    private final PhysicsWorld renderWorld = new PhysicsWorld();
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    private final Runnable updateTask = () -> {
+        // Cleared first, so changes made while the task runs queue it again
+        updatePending.set(false);
+        updateWorld();
+        streamChunks();
+    };
+
+    /**
+     * Initialize a new ActionTimer that applies its MovementControllers at the
+     * start of every simulation step.
+     */
+    public ActionTimer() {
+        simulation.addStepListener(this::applyMovementControllers);
+    }
+
     public void handle(long now) {
         if (previousNow == 0)
             previousNow = now;
@@ -27,23 +98,122 @@ public class ActionTimer extends AnimationTimer {
         double deltaTime = (now - previousNow) / 1000000000.0;
         previousNow = now;
 
-        context.clearRect(0, 0, context.getCanvas().getWidth(), context.getCanvas().getHeight());
+        FrameProfiler profiler = simulation.getProfiler();
+        long frameStart = profiler == null ? 0 : profiler.start();
+
+        PhysicsWorld world;
+        double alpha;
+
+        if (simulationThread == null) {
+            updateWorld();
+            streamChunks();
+
+            if (profiler != null)
+                profiler.record(Phase.SYNC, frameStart);
+
+            world = simulation.getWorld();
+            alpha = simulation.advance(deltaTime);
+        } else {
+            if (updatePending.compareAndSet(false, true))
+                simulationThread.execute(updateTask);
+
+            simulationThread.update(renderWorld);
+
+            if (profiler != null)
+                profiler.record(Phase.SYNC, frameStart);
+
+            world = renderWorld;
+            alpha = simulationThread.getAlpha(now);
+        }
+
+        // Draw the objects between their last two simulated positions
+        renderer.draw(context, world, alpha, profiler);
+
+        if (profiler != null) {
+            if (overlay != null) {
+                overlay.draw(context, profiler);
+                renderer.addDirtyRegion(0, 0, overlay.getWidth(), overlay.getHeight());
+            }
+
+            profiler.record(Phase.FRAME, frameStart);
+        }
+    }
+
+    /**
+     * Apply the spawns and despawns recorded in the last step and sample the held
+     * keys, then apply all MovementControllers for a single simulation step,
+     * followed by the ones in the ControllerScheduler that are due.
+     * 
+     * @param deltaTime the length of the step, in seconds.
+     */
+    private void applyMovementControllers(double deltaTime) {
+        if (spawnBuffer.apply(gameObjects, simulation.getWorld()))
+            updateWorld();
+
+        if (inputDispatcher != null)
+            inputDispatcher.sample();
 
-        // Apply all MovementControllers
         for (MovementController movementController : movementControllers) {
             movementController.applyMovement(deltaTime);
         }
 
-        // Resolve all collisions in the scene
-        for (GameObject gameObject : gameObjects) {
-            gameObject.resolveCollisions(gameObjects);
+        controllerScheduler.beforeStep(deltaTime);
+    }
+
+    /**
+     * Stream chunks in and out around the GameObject attached to the first
+     * PlayerController, if there is a ChunkStreamer.
+     */
+    private void streamChunks() {
+        if (chunkStreamer == null)
+            return;
+
+        for (MovementController movementController : movementControllers) {
+            if (!(movementController instanceof PlayerController))
+                continue;
+
+            GameObject player = movementController.getGameObject();
+
+            chunkStreamer.update(simulation.getWorld(), (player.getAX() + player.getBX()) / 2,
+                    (player.getAY() + player.getBY()) / 2);
+
+            return;
         }
+    }
+
+    /**
+     * Make sure the PhysicsWorld holds the GameObjects in the Collection.
+     * GameObjects added to the Collection since the last frame are moved into the
+     * PhysicsWorld, and GameObjects removed from it are detached. Bodies added to
+     * the PhysicsWorld directly, such as those loaded from a level file, are left
+     * alone.
+     */
+    private void updateWorld() {
+        PhysicsWorld world = simulation.getWorld();
 
-        // Move and draw the objects
         for (GameObject gameObject : gameObjects) {
-            gameObject.applyVelocity(deltaTime);
-            gameObject.draw(context);
+            gameObject.setWorld(world);
+            attached.add(gameObject);
+        }
+
+        if (attached.size() == gameObjects.size())
+            return;
+
+        current.addAll(gameObjects);
+
+        for (Iterator<GameObject> iterator = attached.iterator(); iterator.hasNext();) {
+            GameObject gameObject = iterator.next();
+
+            if (current.contains(gameObject))
+                continue;
+
+            if (gameObject.getWorld() == world)
+                gameObject.detach();
+
+            iterator.remove();
         }
+
+        current.clear();
     }
 
     /**
@@ -62,6 +232,19 @@ public class ActionTimer extends AnimationTimer {
      */
     public void setGameObjects(Collection<GameObject> gameObjects) {
         this.gameObjects = gameObjects;
+        updateWorld();
+    }
+
+    /**
+     * Access the SpawnBuffer applied at the start of every step. GameObjects
+     * spawned through it are added to the Collection of GameObjects, and those
+     * despawned through it are removed, without changing the Collection in the
+     * middle of a step or frame.
+     * 
+     * @return the SpawnBuffer.
+     */
+    public SpawnBuffer getSpawnBuffer() {
+        return spawnBuffer;
     }
 
     /**
@@ -82,6 +265,150 @@ public class ActionTimer extends AnimationTimer {
         this.movementControllers = movementControllers;
     }
 
+    /**
+     * Access the ControllerScheduler that runs controllers which do not need to
+     * run every step, such as scripted and AI controllers. Its controllers run
+     * after the ones in the Collection of MovementControllers.
+     * 
+     * @return the ControllerScheduler.
+     */
+    public ControllerScheduler getControllerScheduler() {
+        return controllerScheduler;
+    }
+
+    /**
+     * Access the InputDispatcher sampled at the start of every step.
+     * 
+     * @return the InputDispatcher, or null if none is sampled.
+     */
+    public InputDispatcher getInputDispatcher() {
+        return inputDispatcher;
+    }
+
+    /**
+     * Update the InputDispatcher sampled at the start of every step, before the
+     * MovementControllers are applied, so that they all read the same keys.
+     * 
+     * @param inputDispatcher the new InputDispatcher, or null to sample none.
+     */
+    public void setInputDispatcher(InputDispatcher inputDispatcher) {
+        this.inputDispatcher = inputDispatcher;
+    }
+
+    /**
+     * Access the Simulation driven by this ActionTimer. The Simulation's
+     * Broadphase and FixedTimestep can be changed through it.
+     * 
+     * @return the Simulation.
+     */
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Check whether the Simulation runs on a SimulationThread of its own.
+     * 
+     * @return true if the Simulation runs on its own thread.
+     */
+    public boolean isSimulationThreaded() {
+        return simulationThread != null;
+    }
+
+    /**
+     * Start or stop running the Simulation on a SimulationThread of its own. The
+     * Simulation must have a FixedTimestep to run on its own thread. While it
+     * does, the Collections of GameObjects and MovementControllers, and the
+     * GameObjects themselves, must only be changed through tasks passed to the
+     * SimulationThread.
+     * 
+     * @param threaded true to run the Simulation on its own thread, or false to
+     *                 run it on the JavaFX thread again.
+     */
+    public void setSimulationThreaded(boolean threaded) {
+        if (threaded == (simulationThread != null))
+            return;
+
+        if (threaded) {
+            // A task left queued on an earlier SimulationThread never ran
+            updatePending.set(false);
+            simulationThread = new SimulationThread(simulation);
+            simulationThread.start();
+        } else {
+            simulationThread.close();
+            simulationThread = null;
+        }
+    }
+
+    /**
+     * Access the SimulationThread running the Simulation.
+     * 
+     * @return the SimulationThread, or null if the Simulation runs on the JavaFX
+     *         thread.
+     */
+    public SimulationThread getSimulationThread() {
+        return simulationThread;
+    }
+
+    /**
+     * Access the Camera that picks the part of the world drawn.
+     * 
+     * @return the Camera, or null if the world is drawn with its origin at the top
+     *         left corner of the canvas.
+     */
+    public Camera getCamera() {
+        return renderer.getCamera();
+    }
+
+    /**
+     * Update the Camera that picks the part of the world drawn. Only the
+     * GameObjects in view of the Camera are drawn.
+     * 
+     * @param camera the new Camera, or null to draw the world with its origin at
+     *               the top left corner of the canvas.
+     */
+    public void setCamera(Camera camera) {
+        renderer.setCamera(camera);
+    }
+
+    /**
+     * Access the ChunkStreamer that loads the level around the player.
+     * 
+     * @return the ChunkStreamer, or null if the whole level is always loaded.
+     */
+    public ChunkStreamer getChunkStreamer() {
+        return chunkStreamer;
+    }
+
+    /**
+     * Update the ChunkStreamer that loads the level around the player. Each frame,
+     * it streams chunks around the GameObject attached to the first
+     * PlayerController.
+     * 
+     * @param chunkStreamer the new ChunkStreamer, or null to stop streaming.
+     */
+    public void setChunkStreamer(ChunkStreamer chunkStreamer) {
+        this.chunkStreamer = chunkStreamer;
+    }
+
+    /**
+     * Access the ProfilerOverlay drawn over each frame.
+     * 
+     * @return the ProfilerOverlay, or null if none is drawn.
+     */
+    public ProfilerOverlay getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Update the ProfilerOverlay drawn over each frame. The overlay is only drawn
+     * while the Simulation has a FrameProfiler.
+     * 
+     * @param overlay the new ProfilerOverlay, or null to draw none.
+     */
+    public void setOverlay(ProfilerOverlay overlay) {
+        this.overlay = overlay;
+    }
+
     /**
      * Access the GraphicsContext referenced by this ActionTimer.
      * 
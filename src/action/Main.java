@@ -1,13 +1,26 @@
 package action;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
+import action.movement.InputDispatcher;
 import action.movement.MovementController;
 import action.movement.PlayerController;
 import action.objects.FallingObject;
 import action.objects.FloatingObject;
 import action.objects.GameObject;
+import action.level.LevelReader;
+import action.level.LevelWriter;
+import action.physics.FixedTimestep;
+import action.physics.PhysicsWorld;
+import action.replay.InputRecorder;
+import action.replay.ReplayFormat;
 import javafx.application.Application;
 import javafx.geometry.Point2D;
 import javafx.stage.Stage;
@@ -22,8 +35,16 @@ public class Main extends Application {
     public static final int WIDTH = 1000;
     public static final int HEIGHT = 500;
 
+    public static final double STEPS_PER_SECOND = 120;
+    public static final int MAX_STEPS_PER_FRAME = 8;
+
+    public static final double PLAYER_SPEED = 500;
+
+    private InputRecorder recorder;
+    private ActionTimer timer;
+
     @Override
-    public void start(Stage primaryStage) {
+    public void start(Stage primaryStage) throws IOException {
         // Initialize the stage
         primaryStage.setTitle("ACTION - Movement Demo");
 
@@ -44,11 +65,14 @@ public class Main extends Application {
 
         FloatingObject wall2 = new FloatingObject(new Point2D(300, 300), new Point2D(800, 280), 10,
                 Double.POSITIVE_INFINITY);
+        wall2.setStatic(true);
 
         FloatingObject wall3 = new FloatingObject(new Point2D(800, -10), new Point2D(900, 50), 10, 1);
         wall3.setVelocity(new Point2D(-60, 10));
 
-        MovementController playerController = new PlayerController(player, 500, scene, KeyCode.W, KeyCode.S, KeyCode.A, KeyCode.D);
+        // Every controller reads its keys from the same InputDispatcher
+        InputDispatcher inputDispatcher = new InputDispatcher(scene);
+        PlayerController playerController = new PlayerController(player, PLAYER_SPEED, inputDispatcher, KeyCode.W, KeyCode.S, KeyCode.A, KeyCode.D);
 
         // Add the new MovementControllers to the Collection
         Collection<GameObject> gameObjects = new ArrayList<>();
@@ -61,10 +85,36 @@ public class Main extends Application {
         movementControllers.add(playerController);
 
         // Initialize the ActionTimer
-        ActionTimer timer = new ActionTimer();
+        timer = new ActionTimer();
         timer.setGameObjects(gameObjects);
         timer.setMovementControllers(movementControllers);
+        timer.setInputDispatcher(inputDispatcher);
         timer.setContext(context);
+        timer.getSimulation().setTimestep(new FixedTimestep(STEPS_PER_SECOND, MAX_STEPS_PER_FRAME));
+
+        // Load the level file given on the command line, if there is one
+        List<String> arguments = getParameters().getUnnamed();
+
+        if (!arguments.isEmpty())
+            LevelReader.load(Paths.get(arguments.get(0)), timer.getSimulation().getWorld());
+
+        // Record the session if --record=<name> was given, starting from the world
+        // as it is now
+        Map<String, String> named = getParameters().getNamed();
+
+        if (named.containsKey("record")) {
+            PhysicsWorld world = timer.getSimulation().getWorld();
+            Path replayPath = Paths.get(named.get("record") + ReplayFormat.REPLAY_EXTENSION);
+
+            LevelWriter.write(world, ReplayFormat.getLevelPath(replayPath));
+            recorder = new InputRecorder(Files.newOutputStream(replayPath), timer.getSimulation(), player.getId(),
+                    PLAYER_SPEED, playerController::getInput);
+            timer.getSimulation().addStepListener(recorder);
+        }
+
+        // Run the simulation on its own thread if --threaded=true was given
+        timer.setSimulationThreaded(Boolean.parseBoolean(named.get("threaded")));
+
         timer.start();
 
         // Show the stage
@@ -72,9 +122,21 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() throws IOException {
+        // Stop stepping before the recording is closed
+        if (timer != null) {
+            timer.stop();
+            timer.setSimulationThreaded(false);
+        }
+
+        if (recorder != null)
+            recorder.close();
+    }
+
     public static void main(String[] args) {
         try {
-            launch();
+            launch(args);
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
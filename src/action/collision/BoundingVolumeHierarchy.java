@@ -0,0 +1,361 @@
+package action.collision;
+
+import java.util.Arrays;
+
+/**
+ * A BoundingVolumeHierarchy is a binary tree of axis-aligned boxes, built once
+ * over a fixed set of Bounds and then queried many times. It suits geometry
+ * that never moves, where the cost of building the tree is paid at load time
+ * and each query only visits the branches that overlap it.
+ * 
+ * The tree is built top down. Each node's boxes are split in half at the median
+ * of their centres along the longer side of the node, until a node holds at
+ * most a few boxes. The nodes are stored in flat arrays in depth first order,
+ * so a node's first child always follows it directly. The boxes are copied into
+ * leaf order, so the boxes of a leaf sit next to each other in memory.
+ * 
+ * Besides box queries, the tree answers ray casts and nearest neighbour
+ * searches, both of which let the caller shrink the search as results come in.
+ * 
+ * Queries share a traversal stack, so a BoundingVolumeHierarchy must not be
+ * queried from more than one thread at a time.
+ */
+public class BoundingVolumeHierarchy {
+    public static final int LEAF_SIZE = 4;
+
+    // The boxes, in leaf order, and the index each one had in the built Bounds
+    private double[] minX = new double[0], minY = new double[0], maxX = new double[0], maxY = new double[0];
+    private int[] indices = new int[0];
+    private int size;
+
+    // Each node's box, the range of boxes it holds, and the index of its second
+    // child, or -1 for a leaf
+    private double[] nodeMinX = new double[0], nodeMinY = new double[0], nodeMaxX = new double[0],
+            nodeMaxY = new double[0];
+    private int[] nodeStart = new int[0], nodeEnd = new int[0], nodeSecond = new int[0];
+    private int nodeCount;
+
+    // Reused while building and querying
+    private double[] centres = new double[0];
+    private int[] stack = new int[64];
+
+    /**
+     * Build the tree over every box in the given Bounds, replacing anything that
+     * was built before. Later changes to the Bounds do not affect the tree.
+     * 
+     * @param bounds the boxes to build the tree over.
+     */
+    public void build(Bounds bounds) {
+        size = bounds.size();
+        nodeCount = 0;
+
+        if (indices.length < size) {
+            minX = new double[size];
+            minY = new double[size];
+            maxX = new double[size];
+            maxY = new double[size];
+            indices = new int[size];
+            centres = new double[size];
+        }
+
+        // A tree with leaves of at least half the leaf size has fewer than this many
+        // nodes
+        int maxNodes = Math.max(1, 4 * size / LEAF_SIZE + 1);
+
+        if (nodeStart.length < maxNodes) {
+            nodeMinX = new double[maxNodes];
+            nodeMinY = new double[maxNodes];
+            nodeMaxX = new double[maxNodes];
+            nodeMaxY = new double[maxNodes];
+            nodeStart = new int[maxNodes];
+            nodeEnd = new int[maxNodes];
+            nodeSecond = new int[maxNodes];
+        }
+
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+
+        if (size > 0)
+            buildNode(bounds, 0, size);
+
+        // Copy the boxes into leaf order
+        for (int i = 0; i < size; i++) {
+            int index = indices[i];
+
+            minX[i] = bounds.getMinX(index);
+            minY[i] = bounds.getMinY(index);
+            maxX[i] = bounds.getMaxX(index);
+            maxY[i] = bounds.getMaxY(index);
+        }
+    }
+
+    private int buildNode(Bounds bounds, int start, int end) {
+        int node = nodeCount++;
+
+        double lowX = Double.POSITIVE_INFINITY, lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY, highY = Double.NEGATIVE_INFINITY;
+
+        for (int i = start; i < end; i++) {
+            int index = indices[i];
+
+            lowX = Math.min(lowX, bounds.getMinX(index));
+            lowY = Math.min(lowY, bounds.getMinY(index));
+            highX = Math.max(highX, bounds.getMaxX(index));
+            highY = Math.max(highY, bounds.getMaxY(index));
+        }
+
+        nodeMinX[node] = lowX;
+        nodeMinY[node] = lowY;
+        nodeMaxX[node] = highX;
+        nodeMaxY[node] = highY;
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeSecond[node] = -1;
+
+        if (end - start <= LEAF_SIZE)
+            return node;
+
+        // Split at the median centre along the longer side
+        boolean alongX = highX - lowX >= highY - lowY;
+
+        for (int i = start; i < end; i++) {
+            int index = indices[i];
+
+            centres[i] = alongX ? bounds.getMinX(index) + bounds.getMaxX(index)
+                    : bounds.getMinY(index) + bounds.getMaxY(index);
+        }
+
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle);
+
+        buildNode(bounds, start, middle);
+        nodeSecond[node] = buildNode(bounds, middle, end);
+
+        return node;
+    }
+
+    // Partially sort the indices and their centres so that the one at k is where
+    // it would be if the range were sorted, with no larger centre before it and no
+    // smaller one after it
+    private void select(int low, int high, int k) {
+        while (low < high) {
+            double pivot = centres[(low + high) >>> 1];
+            int i = low, j = high;
+
+            while (i <= j) {
+                while (centres[i] < pivot)
+                    i++;
+
+                while (centres[j] > pivot)
+                    j--;
+
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+                high = j;
+            else if (k >= i)
+                low = i;
+            else
+                return;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+
+        double centre = centres[i];
+        centres[i] = centres[j];
+        centres[j] = centre;
+    }
+
+    /**
+     * Find every box that overlaps the given box. Boxes that only touch along an
+     * edge count as overlapping, the same as in Bounds.
+     * 
+     * @param minX     the lowest x coordinate of the query box.
+     * @param minY     the lowest y coordinate of the query box.
+     * @param maxX     the highest x coordinate of the query box.
+     * @param maxY     the highest y coordinate of the query box.
+     * @param callback the QueryCallback that receives the index, in the built
+     *                 Bounds, of each overlapping box.
+     */
+    public void query(double minX, double minY, double maxX, double maxY, QueryCallback callback) {
+        if (size == 0)
+            return;
+
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            if (nodeMinX[node] > maxX || nodeMaxX[node] < minX || nodeMinY[node] > maxY || nodeMaxY[node] < minY)
+                continue;
+
+            if (nodeSecond[node] < 0) {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                    if (this.minX[i] <= maxX && this.maxX[i] >= minX && this.minY[i] <= maxY && this.maxY[i] >= minY)
+                        callback.found(indices[i]);
+                }
+
+                continue;
+            }
+
+            if (top + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+
+            // Visit the first child next
+            stack[top++] = nodeSecond[node];
+            stack[top++] = node + 1;
+        }
+    }
+
+    /**
+     * Find the boxes crossed by the segment from one point to another, in no
+     * particular order. The callback can shorten the segment as it goes, so that
+     * branches beyond the closest hit found so far are skipped.
+     * 
+     * @param ax       the x coordinate of the start of the ray.
+     * @param ay       the y coordinate of the start of the ray.
+     * @param bx       the x coordinate of the end of the ray.
+     * @param by       the y coordinate of the end of the ray.
+     * @param callback the RayCallback that receives the index, in the built Bounds,
+     *                 of each box crossed.
+     */
+    public void raycast(double ax, double ay, double bx, double by, RayCallback callback) {
+        if (size == 0)
+            return;
+
+        double directionX = bx - ax;
+        double directionY = by - ay;
+        double inverseX = 1 / directionX;
+        double inverseY = 1 / directionY;
+        double maxFraction = 1;
+
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            if (!Narrowphase.crossesBox(ax, ay, directionX, directionY, inverseX, inverseY, maxFraction, nodeMinX[node],
+                    nodeMinY[node], nodeMaxX[node], nodeMaxY[node]))
+                continue;
+
+            if (nodeSecond[node] < 0) {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                    if (!Narrowphase.crossesBox(ax, ay, directionX, directionY, inverseX, inverseY, maxFraction, minX[i], minY[i],
+                            maxX[i], maxY[i]))
+                        continue;
+
+                    double fraction = callback.found(indices[i], maxFraction);
+
+                    if (fraction < 0)
+                        return;
+
+                    maxFraction = Math.min(maxFraction, fraction);
+                }
+
+                continue;
+            }
+
+            if (top + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+
+            stack[top++] = nodeSecond[node];
+            stack[top++] = node + 1;
+        }
+    }
+
+    /**
+     * Find the boxes within a distance of a point, visiting the nearer branch of
+     * each node first. The callback can narrow the search as it goes, so that
+     * branches further away than the results found so far are skipped. A box that
+     * holds the point is at a distance of 0.
+     * 
+     * @param x           the x coordinate of the point.
+     * @param y           the y coordinate of the point.
+     * @param maxDistance the largest distance to search.
+     * @param callback    the NearestCallback that receives the index, in the built
+     *                    Bounds, of each box found.
+     */
+    public void nearest(double x, double y, double maxDistance, NearestCallback callback) {
+        if (size == 0)
+            return;
+
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            if (distance(x, y, nodeMinX[node], nodeMinY[node], nodeMaxX[node], nodeMaxY[node]) > maxDistance)
+                continue;
+
+            if (nodeSecond[node] < 0) {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                    if (distance(x, y, minX[i], minY[i], maxX[i], maxY[i]) > maxDistance)
+                        continue;
+
+                    double distance = callback.found(indices[i], maxDistance);
+
+                    if (distance < 0)
+                        return;
+
+                    maxDistance = Math.min(maxDistance, distance);
+                }
+
+                continue;
+            }
+
+            if (top + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+
+            int first = node + 1;
+            int second = nodeSecond[node];
+
+            // Push the further child first, so the nearer one is visited next
+            if (distance(x, y, nodeMinX[first], nodeMinY[first], nodeMaxX[first], nodeMaxY[first]) <= distance(x, y,
+                    nodeMinX[second], nodeMinY[second], nodeMaxX[second], nodeMaxY[second])) {
+                stack[top++] = second;
+                stack[top++] = first;
+            } else {
+                stack[top++] = first;
+                stack[top++] = second;
+            }
+        }
+    }
+
+    private static double distance(double x, double y, double minX, double minY, double maxX, double maxY) {
+        double dx = Math.max(0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0, Math.max(minY - y, y - maxY));
+
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Get the number of boxes in the tree.
+     * 
+     * @return the number of boxes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of nodes in the tree, including the leaves.
+     * 
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
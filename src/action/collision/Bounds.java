@@ -0,0 +1,146 @@
+package action.collision;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of axis-aligned bounding boxes. The boxes are stored in
+ * parallel arrays of primitives so that a Broadphase can scan them without
+ * allocating anything.
+ */
+public class Bounds {
+    private double[] minX, minY, maxX, maxY;
+
+    private int size;
+
+    /**
+     * Initialize a new, empty Bounds with a small default capacity.
+     */
+    public Bounds() {
+        this(16);
+    }
+
+    /**
+     * Initialize a new, empty Bounds with room for the given number of boxes.
+     * 
+     * @param capacity the initial capacity.
+     */
+    public Bounds(int capacity) {
+        capacity = Math.max(1, capacity);
+
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+    }
+
+    /**
+     * Remove all boxes. The underlying storage is kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Append a box with the given extents.
+     * 
+     * @param minX the lowest x coordinate of the box.
+     * @param minY the lowest y coordinate of the box.
+     * @param maxX the highest x coordinate of the box.
+     * @param maxY the highest y coordinate of the box.
+     * @return the index of the new box.
+     */
+    public int add(double minX, double minY, double maxX, double maxY) {
+        if (size == this.minX.length) {
+            int capacity = size * 2;
+
+            this.minX = Arrays.copyOf(this.minX, capacity);
+            this.minY = Arrays.copyOf(this.minY, capacity);
+            this.maxX = Arrays.copyOf(this.maxX, capacity);
+            this.maxY = Arrays.copyOf(this.maxY, capacity);
+        }
+
+        this.minX[size] = minX;
+        this.minY[size] = minY;
+        this.maxX[size] = maxX;
+        this.maxY[size] = maxY;
+
+        return size++;
+    }
+
+    /**
+     * Append the box that encloses a capsule, which is a line segment padded by a
+     * radius on every side.
+     * 
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the radius of the capsule.
+     * @return the index of the new box.
+     */
+    public int addCapsule(double ax, double ay, double bx, double by, double radius) {
+        return add(Math.min(ax, bx) - radius, Math.min(ay, by) - radius, Math.max(ax, bx) + radius,
+                Math.max(ay, by) + radius);
+    }
+
+    /**
+     * Check whether two of the boxes overlap. Boxes that only touch along an edge
+     * are considered to overlap.
+     * 
+     * @param i the index of the first box.
+     * @param j the index of the second box.
+     * @return true if the boxes overlap.
+     */
+    public boolean overlaps(int i, int j) {
+        return minX[i] <= maxX[j] && minX[j] <= maxX[i] && minY[i] <= maxY[j] && minY[j] <= maxY[i];
+    }
+
+    /**
+     * Get the number of boxes.
+     * 
+     * @return the number of boxes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the lowest x coordinate of a box.
+     * 
+     * @param index the index of the box.
+     * @return the lowest x coordinate.
+     */
+    public double getMinX(int index) {
+        return minX[index];
+    }
+
+    /**
+     * Get the lowest y coordinate of a box.
+     * 
+     * @param index the index of the box.
+     * @return the lowest y coordinate.
+     */
+    public double getMinY(int index) {
+        return minY[index];
+    }
+
+    /**
+     * Get the highest x coordinate of a box.
+     * 
+     * @param index the index of the box.
+     * @return the highest x coordinate.
+     */
+    public double getMaxX(int index) {
+        return maxX[index];
+    }
+
+    /**
+     * Get the highest y coordinate of a box.
+     * 
+     * @param index the index of the box.
+     * @return the highest y coordinate.
+     */
+    public double getMaxY(int index) {
+        return maxY[index];
+    }
+}
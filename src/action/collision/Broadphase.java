@@ -0,0 +1,17 @@
+package action.collision;
+
+/**
+ * A Broadphase cheaply filters the set of all possible pairs of objects in the
+ * scene down to the pairs whose bounding boxes overlap. Only those pairs need
+ * to be passed on to the exact (and much more expensive) collision test.
+ */
+public interface Broadphase {
+    /**
+     * Find every pair of overlapping boxes in the given Bounds and pass it to the
+     * callback. Each pair is reported exactly once.
+     * 
+     * @param bounds   the bounding boxes to search.
+     * @param callback the callback that receives each overlapping pair.
+     */
+    public void findPairs(Bounds bounds, PairCallback callback);
+}
@@ -0,0 +1,108 @@
+package action.collision;
+
+/**
+ * A ContactResult holds the output of a Narrowphase test between two capsules.
+ * It is meant to be created once and reused for every test, so that the
+ * narrowphase never allocates.
+ */
+public class ContactResult {
+    private double firstX, firstY, secondX, secondY;
+    private double distanceSquared;
+    private double normalX, normalY;
+
+    void setPoints(double firstX, double firstY, double secondX, double secondY) {
+        this.firstX = firstX;
+        this.firstY = firstY;
+        this.secondX = secondX;
+        this.secondY = secondY;
+
+        double dx = secondX - firstX;
+        double dy = secondY - firstY;
+
+        distanceSquared = dx * dx + dy * dy;
+    }
+
+    void setNormal(double normalX, double normalY) {
+        this.normalX = normalX;
+        this.normalY = normalY;
+    }
+
+    /**
+     * Get the x coordinate of the closest point on the center line of the first
+     * capsule.
+     * 
+     * @return the x coordinate of the first contact point.
+     */
+    public double getFirstX() {
+        return firstX;
+    }
+
+    /**
+     * Get the y coordinate of the closest point on the center line of the first
+     * capsule.
+     * 
+     * @return the y coordinate of the first contact point.
+     */
+    public double getFirstY() {
+        return firstY;
+    }
+
+    /**
+     * Get the x coordinate of the closest point on the center line of the second
+     * capsule.
+     * 
+     * @return the x coordinate of the second contact point.
+     */
+    public double getSecondX() {
+        return secondX;
+    }
+
+    /**
+     * Get the y coordinate of the closest point on the center line of the second
+     * capsule.
+     * 
+     * @return the y coordinate of the second contact point.
+     */
+    public double getSecondY() {
+        return secondY;
+    }
+
+    /**
+     * Get the squared distance between the center lines of the two capsules.
+     * 
+     * @return the squared distance between the contact points.
+     */
+    public double getDistanceSquared() {
+        return distanceSquared;
+    }
+
+    /**
+     * Get the distance between the center lines of the two capsules. Unlike the
+     * other values, this one costs a square root.
+     * 
+     * @return the distance between the contact points.
+     */
+    public double getDistance() {
+        return Math.sqrt(distanceSquared);
+    }
+
+    /**
+     * Get the x component of the unit contact normal, which points from the first
+     * capsule towards the second. This is only set by Narrowphase.touching.
+     * 
+     * @return the x component of the contact normal.
+     */
+    public double getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Get the y component of the unit contact normal, which points from the first
+     * capsule towards the second. This is only set by Narrowphase.touching.
+     * 
+     * @return the y component of the contact normal.
+     */
+    public double getNormalY() {
+        return normalY;
+    }
+}
@@ -0,0 +1,456 @@
+package action.collision;
+
+/**
+ * The Narrowphase class holds the exact tests between pairs of capsules. Each
+ * capsule is a line segment padded by a radius, so the tests all come down to
+ * finding the closest points between two line segments.
+ * 
+ * Ray casts, point tests and box tests against a single capsule live here
+ * too, for the spatial queries.
+ * 
+ * The tests only work on primitives and write their output into a reusable
+ * ContactResult, so they never allocate.
+ */
+public final class Narrowphase {
+    public static final double TIME_OF_IMPACT_TOLERANCE = 0.05;
+    public static final int MAX_TIME_OF_IMPACT_ITERATIONS = 32;
+
+    private Narrowphase() {
+    }
+
+    /**
+     * Find the closest points between two line segments, and the squared distance
+     * between them. If the segments cross, both points are the crossing point.
+     * 
+     * @param ax     the x coordinate of the first segment's first endpoint.
+     * @param ay     the y coordinate of the first segment's first endpoint.
+     * @param bx     the x coordinate of the first segment's second endpoint.
+     * @param by     the y coordinate of the first segment's second endpoint.
+     * @param cx     the x coordinate of the second segment's first endpoint.
+     * @param cy     the y coordinate of the second segment's first endpoint.
+     * @param dx     the x coordinate of the second segment's second endpoint.
+     * @param dy     the y coordinate of the second segment's second endpoint.
+     * @param result the ContactResult to write the points and distance to.
+     */
+    public static void closestPoints(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+            double dy, ContactResult result) {
+        double firstX = bx - ax;
+        double firstY = by - ay;
+        double secondX = dx - cx;
+        double secondY = dy - cy;
+        double offsetX = ax - cx;
+        double offsetY = ay - cy;
+
+        double firstLengthSquared = firstX * firstX + firstY * firstY;
+        double secondLengthSquared = secondX * secondX + secondY * secondY;
+        double f = secondX * offsetX + secondY * offsetY;
+
+        // s and t are the positions of the closest points along the first and second
+        // segments, from 0 at the first endpoint to 1 at the second
+        double s, t;
+
+        if (firstLengthSquared == 0 && secondLengthSquared == 0) {
+            s = 0;
+            t = 0;
+        } else if (firstLengthSquared == 0) {
+            s = 0;
+            t = clamp(f / secondLengthSquared);
+        } else {
+            double c = firstX * offsetX + firstY * offsetY;
+
+            if (secondLengthSquared == 0) {
+                t = 0;
+                s = clamp(-c / firstLengthSquared);
+            } else {
+                double b = firstX * secondX + firstY * secondY;
+                double denominator = firstLengthSquared * secondLengthSquared - b * b;
+
+                // Parallel segments have many closest points, so any s will do
+                s = denominator != 0 ? clamp((b * f - c * secondLengthSquared) / denominator) : 0;
+                t = (b * s + f) / secondLengthSquared;
+
+                if (t < 0) {
+                    t = 0;
+                    s = clamp(-c / firstLengthSquared);
+                } else if (t > 1) {
+                    t = 1;
+                    s = clamp((b - c) / firstLengthSquared);
+                }
+            }
+        }
+
+        result.setPoints(ax + firstX * s, ay + firstY * s, cx + secondX * t, cy + secondY * t);
+    }
+
+    /**
+     * Test whether two capsules are touching. Capsules that are too far apart are
+     * rejected using squared distances only. For capsules that touch, the result
+     * also holds the unit contact normal pointing from the first capsule towards
+     * the second.
+     * 
+     * If the center lines touch or cross, there is no closest direction between
+     * them, so the normal is taken perpendicular to the second segment, pointing
+     * away from the middle of the first. The normal is zero if both segments are
+     * single points in the same place.
+     * 
+     * @param ax        the x coordinate of the first segment's first endpoint.
+     * @param ay        the y coordinate of the first segment's first endpoint.
+     * @param bx        the x coordinate of the first segment's second endpoint.
+     * @param by        the y coordinate of the first segment's second endpoint.
+     * @param cx        the x coordinate of the second segment's first endpoint.
+     * @param cy        the y coordinate of the second segment's first endpoint.
+     * @param dx        the x coordinate of the second segment's second endpoint.
+     * @param dy        the y coordinate of the second segment's second endpoint.
+     * @param radiusSum the sum of the two capsules' radii.
+     * @param result    the ContactResult to write the contact to.
+     * @return true if the capsules are touching.
+     */
+    public static boolean touching(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+            double dy, double radiusSum, ContactResult result) {
+        closestPoints(ax, ay, bx, by, cx, cy, dx, dy, result);
+
+        double distanceSquared = result.getDistanceSquared();
+
+        if (distanceSquared > radiusSum * radiusSum)
+            return false;
+
+        if (distanceSquared > 0) {
+            double inverseDistance = 1 / Math.sqrt(distanceSquared);
+
+            result.setNormal((result.getSecondX() - result.getFirstX()) * inverseDistance,
+                    (result.getSecondY() - result.getFirstY()) * inverseDistance);
+
+            return true;
+        }
+
+        // Use a perpendicular of whichever segment has a length
+        double perpendicularX = cy - dy;
+        double perpendicularY = dx - cx;
+
+        if (perpendicularX == 0 && perpendicularY == 0) {
+            perpendicularX = ay - by;
+            perpendicularY = bx - ax;
+        }
+
+        double length = Math.sqrt(perpendicularX * perpendicularX + perpendicularY * perpendicularY);
+
+        if (length == 0) {
+            result.setNormal(0, 0);
+            return true;
+        }
+
+        // Point the normal from the middle of the first segment towards the second
+        double towardsX = (cx + dx - ax - bx) * 0.5;
+        double towardsY = (cy + dy - ay - by) * 0.5;
+
+        if (perpendicularX * towardsX + perpendicularY * towardsY < 0)
+            length = -length;
+
+        result.setNormal(perpendicularX / length, perpendicularY / length);
+
+        return true;
+    }
+
+    /**
+     * Find the earliest time at which two capsules touch while the first one
+     * moves in a straight line and the second stays still. For two moving
+     * capsules, pass the first one's movement relative to the second.
+     * 
+     * The search uses conservative advancement. The first capsule is moved
+     * forward by the gap between the capsules divided by its speed, which can
+     * never carry it past the point of contact, until the gap is within
+     * TIME_OF_IMPACT_TOLERANCE. A capsule that only grazes the other may not
+     * converge within MAX_TIME_OF_IMPACT_ITERATIONS steps, and is then treated as
+     * a miss.
+     * 
+     * @param ax        the x coordinate of the first segment's first endpoint.
+     * @param ay        the y coordinate of the first segment's first endpoint.
+     * @param bx        the x coordinate of the first segment's second endpoint.
+     * @param by        the y coordinate of the first segment's second endpoint.
+     * @param cx        the x coordinate of the second segment's first endpoint.
+     * @param cy        the y coordinate of the second segment's first endpoint.
+     * @param dx        the x coordinate of the second segment's second endpoint.
+     * @param dy        the y coordinate of the second segment's second endpoint.
+     * @param moveX     the distance the first segment moves along the x axis.
+     * @param moveY     the distance the first segment moves along the y axis.
+     * @param radiusSum the sum of the two capsules' radii.
+     * @param result    the ContactResult to write the points, distance and normal
+     *                  at the time of impact to.
+     * @return the fraction of the movement completed at the time of impact, from 0
+     *         to 1, or -1 if the capsules do not touch during the movement.
+     */
+    public static double timeOfImpact(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+            double dy, double moveX, double moveY, double radiusSum, ContactResult result) {
+        double speed = Math.sqrt(moveX * moveX + moveY * moveY);
+        double t = 0;
+
+        for (int i = 0; i < MAX_TIME_OF_IMPACT_ITERATIONS; i++) {
+            double offsetX = moveX * t;
+            double offsetY = moveY * t;
+
+            if (touching(ax + offsetX, ay + offsetY, bx + offsetX, by + offsetY, cx, cy, dx, dy,
+                    radiusSum + TIME_OF_IMPACT_TOLERANCE, result))
+                return t;
+
+            if (speed == 0)
+                return -1;
+
+            t += (result.getDistance() - radiusSum) / speed;
+
+            if (t > 1)
+                return -1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find where a ray, the segment from one point to another, first enters a
+     * capsule. A ray that starts inside the capsule hits it straight away, with
+     * the normal pointing back along the ray.
+     * 
+     * @param ax     the x coordinate of the start of the ray.
+     * @param ay     the y coordinate of the start of the ray.
+     * @param bx     the x coordinate of the end of the ray.
+     * @param by     the y coordinate of the end of the ray.
+     * @param cx     the x coordinate of the capsule's first endpoint.
+     * @param cy     the y coordinate of the capsule's first endpoint.
+     * @param dx     the x coordinate of the capsule's second endpoint.
+     * @param dy     the y coordinate of the capsule's second endpoint.
+     * @param radius the radius of the capsule.
+     * @param result the ContactResult to write the point of impact to, as both
+     *               points, along with the unit surface normal there.
+     * @return the fraction of the ray travelled before the hit, from 0 to 1, or -1
+     *         if the ray misses the capsule.
+     */
+    public static double raycast(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+            double dy, double radius, ContactResult result) {
+        double rayX = bx - ax;
+        double rayY = by - ay;
+
+        if (pointDistanceSquared(ax, ay, cx, cy, dx, dy) <= radius * radius) {
+            double length = Math.sqrt(rayX * rayX + rayY * rayY);
+
+            result.setPoints(ax, ay, ax, ay);
+            result.setNormal(length == 0 ? 0 : -rayX / length, length == 0 ? 0 : -rayY / length);
+
+            return 0;
+        }
+
+        double segmentX = dx - cx;
+        double segmentY = dy - cy;
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+
+        double hit = -1;
+        double normalX = 0, normalY = 0;
+
+        // The flat sides can only be hit from outside the slab between them
+        if (lengthSquared > 0) {
+            double length = Math.sqrt(lengthSquared);
+            double sideX = -segmentY / length;
+            double sideY = segmentX / length;
+            double offset = (ax - cx) * sideX + (ay - cy) * sideY;
+            double approach = rayX * sideX + rayY * sideY;
+
+            if (Math.abs(offset) > radius && offset * approach < 0) {
+                double side = offset > 0 ? radius : -radius;
+                double t = (side - offset) / approach;
+                double along = ((ax + rayX * t - cx) * segmentX + (ay + rayY * t - cy) * segmentY) / lengthSquared;
+
+                if (t <= 1 && along >= 0 && along <= 1) {
+                    hit = t;
+                    normalX = offset > 0 ? sideX : -sideX;
+                    normalY = offset > 0 ? sideY : -sideY;
+                }
+            }
+        }
+
+        // Otherwise the ray can only enter through one of the round ends
+        if (hit < 0) {
+            double first = circleRaycast(ax, ay, rayX, rayY, cx, cy, radius);
+            double second = circleRaycast(ax, ay, rayX, rayY, dx, dy, radius);
+            double centreX = cx, centreY = cy;
+
+            if (second >= 0 && (first < 0 || second < first)) {
+                first = second;
+                centreX = dx;
+                centreY = dy;
+            }
+
+            if (first < 0)
+                return -1;
+
+            hit = first;
+            normalX = ax + rayX * hit - centreX;
+            normalY = ay + rayY * hit - centreY;
+
+            double length = Math.sqrt(normalX * normalX + normalY * normalY);
+
+            // A capsule with no radius is hit exactly at its end, where any normal
+            // facing the ray will do
+            if (length == 0) {
+                normalX = -rayX;
+                normalY = -rayY;
+                length = Math.sqrt(rayX * rayX + rayY * rayY);
+            }
+
+            normalX /= length;
+            normalY /= length;
+        }
+
+        double hitX = ax + rayX * hit;
+        double hitY = ay + rayY * hit;
+
+        result.setPoints(hitX, hitY, hitX, hitY);
+        result.setNormal(normalX, normalY);
+
+        return hit;
+    }
+
+    // Find the fraction of a ray starting outside a circle at which it enters the
+    // circle, or -1 if it misses
+    private static double circleRaycast(double ax, double ay, double rayX, double rayY, double centreX,
+            double centreY, double radius) {
+        double a = rayX * rayX + rayY * rayY;
+
+        if (a == 0)
+            return -1;
+
+        double offsetX = ax - centreX;
+        double offsetY = ay - centreY;
+        double b = offsetX * rayX + offsetY * rayY;
+        double c = offsetX * offsetX + offsetY * offsetY - radius * radius;
+        double discriminant = b * b - a * c;
+
+        if (discriminant < 0)
+            return -1;
+
+        double t = (-b - Math.sqrt(discriminant)) / a;
+
+        return t >= 0 && t <= 1 ? t : -1;
+    }
+
+    /**
+     * Test whether a point is inside a capsule. A point on the surface counts as
+     * inside.
+     * 
+     * @param x      the x coordinate of the point.
+     * @param y      the y coordinate of the point.
+     * @param ax     the x coordinate of the capsule's first endpoint.
+     * @param ay     the y coordinate of the capsule's first endpoint.
+     * @param bx     the x coordinate of the capsule's second endpoint.
+     * @param by     the y coordinate of the capsule's second endpoint.
+     * @param radius the radius of the capsule.
+     * @return true if the point is inside the capsule.
+     */
+    public static boolean contains(double x, double y, double ax, double ay, double bx, double by, double radius) {
+        return pointDistanceSquared(x, y, ax, ay, bx, by) <= radius * radius;
+    }
+
+    /**
+     * Find the distance from a point to the surface of a capsule. The distance is
+     * negative if the point is inside the capsule.
+     * 
+     * @param x      the x coordinate of the point.
+     * @param y      the y coordinate of the point.
+     * @param ax     the x coordinate of the capsule's first endpoint.
+     * @param ay     the y coordinate of the capsule's first endpoint.
+     * @param bx     the x coordinate of the capsule's second endpoint.
+     * @param by     the y coordinate of the capsule's second endpoint.
+     * @param radius the radius of the capsule.
+     * @return the distance to the capsule's surface.
+     */
+    public static double distance(double x, double y, double ax, double ay, double bx, double by, double radius) {
+        return Math.sqrt(pointDistanceSquared(x, y, ax, ay, bx, by)) - radius;
+    }
+
+    /**
+     * Test whether a capsule overlaps an axis-aligned box. A capsule that only
+     * touches the box counts as overlapping.
+     * 
+     * @param ax     the x coordinate of the capsule's first endpoint.
+     * @param ay     the y coordinate of the capsule's first endpoint.
+     * @param bx     the x coordinate of the capsule's second endpoint.
+     * @param by     the y coordinate of the capsule's second endpoint.
+     * @param radius the radius of the capsule.
+     * @param minX   the lowest x coordinate of the box.
+     * @param minY   the lowest y coordinate of the box.
+     * @param maxX   the highest x coordinate of the box.
+     * @param maxY   the highest y coordinate of the box.
+     * @return true if the capsule overlaps the box.
+     */
+    public static boolean overlapsBox(double ax, double ay, double bx, double by, double radius, double minX,
+            double minY, double maxX, double maxY) {
+        double directionX = bx - ax;
+        double directionY = by - ay;
+
+        if (crossesBox(ax, ay, directionX, directionY, 1 / directionX, 1 / directionY, 1, minX, minY, maxX, maxY))
+            return true;
+
+        // Apart from each other, a segment and a box are closest at an endpoint of
+        // the segment or at a corner of the box
+        double radiusSquared = radius * radius;
+
+        return boxDistanceSquared(ax, ay, minX, minY, maxX, maxY) <= radiusSquared
+                || boxDistanceSquared(bx, by, minX, minY, maxX, maxY) <= radiusSquared
+                || pointDistanceSquared(minX, minY, ax, ay, bx, by) <= radiusSquared
+                || pointDistanceSquared(maxX, minY, ax, ay, bx, by) <= radiusSquared
+                || pointDistanceSquared(minX, maxY, ax, ay, bx, by) <= radiusSquared
+                || pointDistanceSquared(maxX, maxY, ax, ay, bx, by) <= radiusSquared;
+    }
+
+    // Test whether the part of a ray up to the given fraction crosses a box, using
+    // the slabs between the box's sides along each axis
+    static boolean crossesBox(double ax, double ay, double directionX, double directionY, double inverseX,
+            double inverseY, double maxFraction, double minX, double minY, double maxX, double maxY) {
+        double low = 0, high = maxFraction;
+
+        // A ray parallel to a slab either stays inside it or never enters it
+        if (directionX == 0) {
+            if (ax < minX || ax > maxX)
+                return false;
+        } else {
+            double first = (minX - ax) * inverseX;
+            double second = (maxX - ax) * inverseX;
+
+            low = Math.max(low, Math.min(first, second));
+            high = Math.min(high, Math.max(first, second));
+        }
+
+        if (directionY == 0) {
+            if (ay < minY || ay > maxY)
+                return false;
+        } else {
+            double first = (minY - ay) * inverseY;
+            double second = (maxY - ay) * inverseY;
+
+            low = Math.max(low, Math.min(first, second));
+            high = Math.min(high, Math.max(first, second));
+        }
+
+        return low <= high;
+    }
+
+    private static double pointDistanceSquared(double x, double y, double ax, double ay, double bx, double by) {
+        double segmentX = bx - ax;
+        double segmentY = by - ay;
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+        double t = lengthSquared == 0 ? 0 : clamp(((x - ax) * segmentX + (y - ay) * segmentY) / lengthSquared);
+        double offsetX = ax + segmentX * t - x;
+        double offsetY = ay + segmentY * t - y;
+
+        return offsetX * offsetX + offsetY * offsetY;
+    }
+
+    private static double boxDistanceSquared(double x, double y, double minX, double minY, double maxX,
+            double maxY) {
+        double offsetX = Math.max(0, Math.max(minX - x, x - maxX));
+        double offsetY = Math.max(0, Math.max(minY - y, y - maxY));
+
+        return offsetX * offsetX + offsetY * offsetY;
+    }
+
+    private static double clamp(double value) {
+        return Math.min(1, Math.max(0, value));
+    }
+}
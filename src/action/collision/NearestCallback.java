@@ -0,0 +1,21 @@
+package action.collision;
+
+/**
+ * A NearestCallback receives the boxes near a point, closest first where the
+ * structure can tell, and decides how far from the point is still worth
+ * searching. Boxes are given as indices into the Bounds that were searched.
+ */
+@FunctionalInterface
+public interface NearestCallback {
+    /**
+     * Handle a single box within the search distance of the point. Returning the
+     * given distance keeps searching as far, returning a smaller one narrows the
+     * search, as when enough closer results were found, and returning a negative
+     * number stops the search.
+     * 
+     * @param index       the index of the box.
+     * @param maxDistance the distance from the point that is being searched.
+     * @return the distance to keep searching, or a negative number to stop.
+     */
+    public double found(int index, double maxDistance);
+}
@@ -0,0 +1,17 @@
+package action.collision;
+
+/**
+ * A PairCallback receives the candidate pairs produced by a Broadphase. Pairs
+ * are given as indices into the Bounds that were searched.
+ */
+@FunctionalInterface
+public interface PairCallback {
+    /**
+     * Handle a single candidate pair. The first index is always lower than the
+     * second.
+     * 
+     * @param i the index of the first box in the pair.
+     * @param j the index of the second box in the pair.
+     */
+    public void pair(int i, int j);
+}
@@ -0,0 +1,15 @@
+package action.collision;
+
+/**
+ * A QueryCallback receives the boxes found by a spatial query. Boxes are given
+ * as indices into the Bounds that were searched.
+ */
+@FunctionalInterface
+public interface QueryCallback {
+    /**
+     * Handle a single box that matched the query.
+     * 
+     * @param index the index of the box.
+     */
+    public void found(int index);
+}
@@ -0,0 +1,23 @@
+package action.collision;
+
+/**
+ * A RayCallback receives the boxes crossed by a ray cast through a spatial
+ * structure, and decides how much of the ray is still worth searching. Boxes
+ * are given as indices into the Bounds that were searched.
+ */
+@FunctionalInterface
+public interface RayCallback {
+    /**
+     * Handle a single box crossed by the ray. Returning the given fraction keeps
+     * searching the rest of the ray, returning a smaller one only searches the
+     * ray up to it, as when a closer hit was found, and returning a negative
+     * number stops the search.
+     * 
+     * @param index       the index of the box.
+     * @param maxFraction the fraction of the ray that is being searched, from 0 to
+     *                    1.
+     * @return the fraction of the ray to keep searching, or a negative number to
+     *         stop.
+     */
+    public double found(int index, double maxFraction);
+}
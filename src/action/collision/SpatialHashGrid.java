@@ -0,0 +1,192 @@
+package action.collision;
+
+import java.util.Arrays;
+
+/**
+ * A SpatialHashGrid is a Broadphase that divides the plane into square cells of
+ * a fixed size. Each box is inserted into every cell it covers, and only boxes
+ * that share a cell are tested against each other.
+ * 
+ * The occupied cells are kept in a hash table keyed on their exact integer
+ * coordinates, so the grid is unbounded and memory only grows with the number
+ * of occupied cells. All storage is reused between calls to findPairs.
+ * 
+ * The cell size should be close to the size of a typical object. Objects much
+ * larger than a cell are inserted into many cells, and cells much larger than
+ * an object hold many objects that do not actually overlap.
+ */
+public class SpatialHashGrid implements Broadphase {
+    private static final int EMPTY = -1;
+
+    private double cellSize, inverseCellSize;
+
+    // Open addressing table of occupied cells, each holding the head of a linked
+    // list of entries
+    private long[] cellKeys = new long[64];
+    private int[] cellHeads = new int[64];
+    private int[] usedSlots = new int[32];
+    private int usedCount;
+
+    // One entry for every (cell, box) pair in the current frame
+    private int[] entryBoxes = new int[64];
+    private int[] entryNext = new int[64];
+    private int entryCount;
+
+    /**
+     * Initialize a new SpatialHashGrid with the given cell size.
+     * 
+     * @param cellSize the width and height of each cell.
+     */
+    public SpatialHashGrid(double cellSize) {
+        setCellSize(cellSize);
+        Arrays.fill(cellHeads, EMPTY);
+    }
+
+    public void findPairs(Bounds bounds, PairCallback callback) {
+        clearCells();
+
+        // Insert every box into each cell it covers
+        for (int i = 0; i < bounds.size(); i++) {
+            int minCellX = toCell(bounds.getMinX(i));
+            int minCellY = toCell(bounds.getMinY(i));
+            int maxCellX = toCell(bounds.getMaxX(i));
+            int maxCellY = toCell(bounds.getMaxY(i));
+
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    insert(cellX, cellY, i);
+                }
+            }
+        }
+
+        // Test the boxes that share each cell
+        for (int u = 0; u < usedCount; u++) {
+            int slot = usedSlots[u];
+            long key = cellKeys[slot];
+
+            for (int e1 = cellHeads[slot]; e1 != EMPTY; e1 = entryNext[e1]) {
+                int i = entryBoxes[e1];
+
+                for (int e2 = entryNext[e1]; e2 != EMPTY; e2 = entryNext[e2]) {
+                    int j = entryBoxes[e2];
+
+                    if (!bounds.overlaps(i, j))
+                        continue;
+
+                    // Two boxes can share several cells, so only report the pair from the cell
+                    // that holds the corner of their intersection
+                    int cellX = toCell(Math.max(bounds.getMinX(i), bounds.getMinX(j)));
+                    int cellY = toCell(Math.max(bounds.getMinY(i), bounds.getMinY(j)));
+
+                    if (toKey(cellX, cellY) != key)
+                        continue;
+
+                    callback.pair(Math.min(i, j), Math.max(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the width and height of each cell.
+     * 
+     * @return the cell size.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Set the width and height of each cell. This method throws an
+     * IllegalArgumentException if the given size is not a positive finite number.
+     * 
+     * @param cellSize the new cell size.
+     */
+    public void setCellSize(double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("cellSize must be a positive finite number");
+        }
+
+        this.cellSize = cellSize;
+        inverseCellSize = 1 / cellSize;
+    }
+
+    private int toCell(double coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private static long toKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private static int hash(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void clearCells() {
+        for (int u = 0; u < usedCount; u++) {
+            cellHeads[usedSlots[u]] = EMPTY;
+        }
+
+        usedCount = 0;
+        entryCount = 0;
+    }
+
+    private void insert(int cellX, int cellY, int box) {
+        long key = toKey(cellX, cellY);
+        int slot = findSlot(key);
+
+        if (cellHeads[slot] == EMPTY) {
+            if ((usedCount + 1) * 2 > cellKeys.length) {
+                growTable();
+                slot = findSlot(key);
+            }
+
+            cellKeys[slot] = key;
+
+            if (usedCount == usedSlots.length)
+                usedSlots = Arrays.copyOf(usedSlots, usedCount * 2);
+
+            usedSlots[usedCount++] = slot;
+        }
+
+        if (entryCount == entryBoxes.length) {
+            entryBoxes = Arrays.copyOf(entryBoxes, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+
+        entryBoxes[entryCount] = box;
+        entryNext[entryCount] = cellHeads[slot];
+        cellHeads[slot] = entryCount++;
+    }
+
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (cellHeads[slot] != EMPTY && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void growTable() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldKeys.length * 2];
+        Arrays.fill(cellHeads, EMPTY);
+
+        for (int u = 0; u < usedCount; u++) {
+            int oldSlot = usedSlots[u];
+            int slot = findSlot(oldKeys[oldSlot]);
+
+            cellKeys[slot] = oldKeys[oldSlot];
+            cellHeads[slot] = oldHeads[oldSlot];
+            usedSlots[u] = slot;
+        }
+    }
+}
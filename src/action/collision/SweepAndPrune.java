@@ -0,0 +1,143 @@
+package action.collision;
+
+import java.util.Arrays;
+
+/**
+ * A SweepAndPrune is a Broadphase that sorts the boxes along one axis and then
+ * sweeps across them, only testing boxes whose extents along that axis overlap.
+ * 
+ * The sorted order is kept between calls to findPairs and repaired with an
+ * insertion sort. Objects rarely move far between frames, so the order is
+ * usually almost sorted already and the repair costs close to linear time. For
+ * this to hold, each index in the Bounds should refer to the same object from
+ * one call to the next.
+ */
+public class SweepAndPrune implements Broadphase {
+    /**
+     * The axis along which the boxes are sorted and swept.
+     */
+    public enum Axis {
+        X, Y
+    }
+
+    private Axis axis;
+
+    // The box indices sorted by their lowest coordinate along the sweep axis,
+    // along with a copy of that coordinate so sorting does not need to look it up
+    private int[] order = new int[16];
+    private double[] keys = new double[16];
+    private int size;
+
+    /**
+     * Initialize a new SweepAndPrune that sweeps along the x axis.
+     */
+    public SweepAndPrune() {
+        this(Axis.X);
+    }
+
+    /**
+     * Initialize a new SweepAndPrune that sweeps along the given axis. The best
+     * axis is the one along which the objects in the scene are most spread out.
+     * 
+     * @param axis the axis to sweep along.
+     */
+    public SweepAndPrune(Axis axis) {
+        setAxis(axis);
+    }
+
+    public void findPairs(Bounds bounds, PairCallback callback) {
+        updateOrder(bounds);
+
+        for (int n = 0; n < size; n++) {
+            int i = order[n];
+            double max = getMax(bounds, i);
+
+            for (int m = n + 1; m < size && keys[m] <= max; m++) {
+                int j = order[m];
+
+                if (bounds.overlaps(i, j))
+                    callback.pair(Math.min(i, j), Math.max(i, j));
+            }
+        }
+    }
+
+    /**
+     * Get the axis along which the boxes are sorted and swept.
+     * 
+     * @return the sweep axis.
+     */
+    public Axis getAxis() {
+        return axis;
+    }
+
+    /**
+     * Set the axis along which the boxes are sorted and swept. Changing the axis
+     * discards the coherence between frames, so the next call to findPairs may be
+     * much slower than usual.
+     * 
+     * @param axis the new sweep axis.
+     */
+    public void setAxis(Axis axis) {
+        if (axis == null) {
+            throw new IllegalArgumentException("axis must not be null");
+        }
+
+        this.axis = axis;
+    }
+
+    private double getMin(Bounds bounds, int index) {
+        return axis == Axis.X ? bounds.getMinX(index) : bounds.getMinY(index);
+    }
+
+    private double getMax(Bounds bounds, int index) {
+        return axis == Axis.X ? bounds.getMaxX(index) : bounds.getMaxY(index);
+    }
+
+    private void updateOrder(Bounds bounds) {
+        int count = bounds.size();
+
+        // Drop the boxes that no longer exist
+        if (count < size) {
+            int kept = 0;
+
+            for (int n = 0; n < size; n++) {
+                if (order[n] < count)
+                    order[kept++] = order[n];
+            }
+
+            size = kept;
+        }
+
+        // Append the boxes that are new since the last call
+        if (count > order.length) {
+            order = Arrays.copyOf(order, Math.max(count, order.length * 2));
+            keys = Arrays.copyOf(keys, order.length);
+        }
+
+        for (int i = size; i < count; i++) {
+            order[i] = i;
+        }
+
+        size = count;
+
+        for (int n = 0; n < size; n++) {
+            keys[n] = getMin(bounds, order[n]);
+        }
+
+        // Repair the order with an insertion sort, which is fast on nearly sorted data
+        for (int n = 1; n < size; n++) {
+            int index = order[n];
+            double key = keys[n];
+            int m = n - 1;
+
+            while (m >= 0 && keys[m] > key) {
+                order[m + 1] = order[m];
+                keys[m + 1] = keys[m];
+                m--;
+            }
+
+            order[m + 1] = index;
+            keys[m + 1] = key;
+        }
+    }
+}
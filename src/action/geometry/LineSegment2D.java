@@ -23,6 +23,13 @@ public class LineSegment2D {
         length = a.distance(b);
     }
 
+    /**
+     * Initialize a new LineSegment without endpoints, for a subclass that keeps
+     * its endpoints elsewhere and overrides every method that uses them.
+     */
+    protected LineSegment2D() {
+    }
+
     /**
      * Access the first endpoint of this LineSegment.
      * 
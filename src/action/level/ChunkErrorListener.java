@@ -0,0 +1,22 @@
+package action.level;
+
+import java.io.IOException;
+
+/**
+ * A ChunkErrorListener is told when a ChunkStreamer could not load a chunk. It
+ * is called from ChunkStreamer.update, on the thread that steps the
+ * PhysicsWorld, and must not throw.
+ */
+@FunctionalInterface
+public interface ChunkErrorListener {
+    /**
+     * Handle a chunk that could not be loaded. The chunk stays resident with no
+     * bodies until it is unloaded, and is read again if it comes back into range
+     * after that.
+     * 
+     * @param x     the x coordinate of the chunk, in chunks.
+     * @param y     the y coordinate of the chunk, in chunks.
+     * @param error the reason the chunk could not be loaded.
+     */
+    public void chunkFailed(int x, int y, IOException error);
+}
@@ -0,0 +1,497 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * A ChunkStreamer keeps only the part of a large level near a point of focus,
+ * usually the player, in a PhysicsWorld. The level is split into square chunks
+ * of a fixed size, each stored in its own level file, and chunks are loaded and
+ * unloaded as the focus moves.
+ * 
+ * A chunk is loaded once any part of it comes within the residency radius of
+ * the focus, and unloaded once all of it is further away than the residency
+ * radius plus the hysteresis, so a focus moving back and forth along a chunk
+ * boundary does not load and unload the same chunk over and over.
+ * 
+ * Chunk files are read on a background Executor into a PhysicsWorld of their
+ * own. Each call to update then copies at most a fixed number of bodies from
+ * the loaded chunks into the main PhysicsWorld, so a large chunk is handed over
+ * across several frames instead of stalling one.
+ * 
+ * Bodies belong to the chunk they were loaded from, and are removed with it
+ * even if they have moved away. Bodies of a resident chunk must not be removed
+ * from the PhysicsWorld by anything else.
+ * 
+ * A chunk file that cannot be read does not stop the streaming. The chunk is
+ * treated as empty, and the failure is passed to the ChunkErrorListener, or
+ * printed to the standard error stream if there is none.
+ */
+public class ChunkStreamer implements AutoCloseable {
+    public static final int DEFAULT_BODIES_PER_UPDATE = 10000;
+
+    private final Path directory;
+    private final double chunkSize;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private double residencyRadius;
+    private double hysteresis;
+    private int bodiesPerUpdate = DEFAULT_BODIES_PER_UPDATE;
+
+    // Every chunk that is loading, waiting to be copied in, or resident, keyed by
+    // its packed coordinates
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+
+    // Chunks that finished reading on the Executor, in the order they finished
+    private final Queue<Chunk> loaded = new ConcurrentLinkedQueue<>();
+
+    // The chunk being copied into the PhysicsWorld, if it did not fit in one update
+    private Chunk copying;
+
+    private PhysicsWorld world;
+
+    private ChunkErrorListener errorListener;
+    private int failedCount;
+
+    /**
+     * Initialize a new ChunkStreamer that reads chunks from the given directory on
+     * a background thread of its own, which is stopped by close.
+     * 
+     * @param directory       the directory holding the chunk files.
+     * @param chunkSize       the length of each side of a chunk.
+     * @param residencyRadius the distance from the focus within which chunks are
+     *                        loaded.
+     * @param hysteresis      the extra distance a chunk must be beyond the
+     *                        residency radius before it is unloaded.
+     */
+    public ChunkStreamer(Path directory, double chunkSize, double residencyRadius, double hysteresis) {
+        this(directory, chunkSize, residencyRadius, hysteresis, null);
+    }
+
+    /**
+     * Initialize a new ChunkStreamer that reads chunks from the given directory on
+     * the given Executor.
+     * 
+     * @param directory       the directory holding the chunk files.
+     * @param chunkSize       the length of each side of a chunk.
+     * @param residencyRadius the distance from the focus within which chunks are
+     *                        loaded.
+     * @param hysteresis      the extra distance a chunk must be beyond the
+     *                        residency radius before it is unloaded.
+     * @param executor        the Executor to read chunk files on, or null to use a
+     *                        background thread of this ChunkStreamer's own.
+     */
+    public ChunkStreamer(Path directory, double chunkSize, double residencyRadius, double hysteresis,
+            Executor executor) {
+        if (!(chunkSize > 0) || Double.isInfinite(chunkSize)) {
+            throw new IllegalArgumentException("chunkSize must be a positive finite number");
+        }
+
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        setResidencyRadius(residencyRadius);
+        setHysteresis(hysteresis);
+
+        if (executor == null) {
+            ownedExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chunk-streamer");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            this.executor = ownedExecutor;
+        } else {
+            ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Load and unload chunks around the given point of focus, and copy loaded
+     * chunks into the given PhysicsWorld up to the per-update budget. This is
+     * meant to be called once per frame, from the thread that steps the
+     * PhysicsWorld.
+     * 
+     * Changing to a different PhysicsWorld forgets every chunk that was streamed
+     * into the old one, without removing its bodies.
+     * 
+     * @param world  the PhysicsWorld to stream chunks into.
+     * @param focusX the x coordinate of the point of focus.
+     * @param focusY the y coordinate of the point of focus.
+     */
+    public void update(PhysicsWorld world, double focusX, double focusY) {
+        if (world != this.world) {
+            for (Chunk chunk : chunks.values()) {
+                chunk.cancelled = true;
+            }
+
+            chunks.clear();
+            copying = null;
+            this.world = world;
+        }
+
+        unloadDistant(focusX, focusY);
+        requestNearby(focusX, focusY);
+        copyLoaded();
+    }
+
+    private void unloadDistant(double focusX, double focusY) {
+        double unloadRadius = residencyRadius + hysteresis;
+
+        for (Iterator<Chunk> iterator = chunks.values().iterator(); iterator.hasNext();) {
+            Chunk chunk = iterator.next();
+
+            if (distanceSquared(chunk.x, chunk.y, focusX, focusY) <= unloadRadius * unloadRadius)
+                continue;
+
+            // A chunk still being read is dropped when its result arrives
+            chunk.cancelled = true;
+
+            for (int i = 0; i < chunk.copied; i++) {
+                world.remove(chunk.ids[i]);
+            }
+
+            iterator.remove();
+        }
+    }
+
+    private void requestNearby(double focusX, double focusY) {
+        int minX = (int) Math.floor((focusX - residencyRadius) / chunkSize);
+        int minY = (int) Math.floor((focusY - residencyRadius) / chunkSize);
+        int maxX = (int) Math.floor((focusX + residencyRadius) / chunkSize);
+        int maxY = (int) Math.floor((focusY + residencyRadius) / chunkSize);
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                if (distanceSquared(x, y, focusX, focusY) > residencyRadius * residencyRadius)
+                    continue;
+
+                Long key = key(x, y);
+
+                if (chunks.containsKey(key))
+                    continue;
+
+                Chunk chunk = new Chunk(x, y);
+                chunks.put(key, chunk);
+                executor.execute(() -> read(chunk));
+            }
+        }
+    }
+
+    // Runs on the Executor
+    private void read(Chunk chunk) {
+        if (chunk.cancelled)
+            return;
+
+        Path path = getChunkPath(chunk.x, chunk.y);
+        PhysicsWorld staging = new PhysicsWorld(1);
+
+        try {
+            if (Files.exists(path))
+                LevelReader.load(path, staging);
+        } catch (IOException e) {
+            chunk.error = e;
+        } catch (RuntimeException e) {
+            // The records of a damaged file can hold values the PhysicsWorld rejects
+            chunk.error = new IOException(path + ": " + e.getMessage(), e);
+        }
+
+        chunk.staging = staging;
+        loaded.add(chunk);
+    }
+
+    private void copyLoaded() {
+        int budget = bodiesPerUpdate;
+
+        while (budget > 0) {
+            if (copying == null) {
+                copying = loaded.poll();
+
+                if (copying == null)
+                    return;
+
+                // A chunk that could not be read stays resident with no bodies, so it
+                // is not read again until it is unloaded
+                if (copying.error != null && !copying.cancelled) {
+                    Chunk failed = copying;
+                    failed.ids = new int[0];
+                    failed.staging = null;
+                    copying = null;
+
+                    reportFailure(failed);
+                    continue;
+                }
+
+                if (!copying.cancelled) {
+                    copying.ids = new int[copying.staging.getCount()];
+                    world.ensureCapacity(world.getCount() + copying.ids.length);
+                }
+            }
+
+            // The chunk may have been unloaded before or while it was copied in
+            if (copying.cancelled) {
+                copying = null;
+                continue;
+            }
+
+            PhysicsWorld staging = copying.staging;
+
+            // Rows of a freshly loaded PhysicsWorld are never freed, so its ids are 0 to
+            // count - 1
+            while (budget > 0 && copying.copied < copying.ids.length) {
+                copying.ids[copying.copied] = world.addCopy(staging, copying.copied);
+                copying.copied++;
+                budget--;
+            }
+
+            if (copying.copied == copying.ids.length) {
+                copying.staging = null;
+                copying = null;
+            }
+        }
+    }
+
+    private void reportFailure(Chunk chunk) {
+        failedCount++;
+
+        if (errorListener != null)
+            errorListener.chunkFailed(chunk.x, chunk.y, chunk.error);
+        else
+            System.err.println("could not load chunk " + chunk.x + ", " + chunk.y + ": " + chunk.error);
+    }
+
+    // The squared distance from a point to the nearest point of a chunk
+    private double distanceSquared(int x, int y, double focusX, double focusY) {
+        double dx = Math.max(0, Math.max(x * chunkSize - focusX, focusX - (x + 1) * chunkSize));
+        double dy = Math.max(0, Math.max(y * chunkSize - focusY, focusY - (y + 1) * chunkSize));
+
+        return dx * dx + dy * dy;
+    }
+
+    private static Long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Get the path of the file holding a chunk.
+     * 
+     * @param x the x coordinate of the chunk, in chunks.
+     * @param y the y coordinate of the chunk, in chunks.
+     * @return the path of the chunk file.
+     */
+    public Path getChunkPath(int x, int y) {
+        return getChunkPath(directory, x, y);
+    }
+
+    private static Path getChunkPath(Path directory, int x, int y) {
+        return directory.resolve(x + "_" + y + ".level");
+    }
+
+    /**
+     * Split the bodies of a PhysicsWorld into chunk files in the given directory.
+     * Each body goes into the chunk that holds the middle of its segment. Chunks
+     * with no bodies are not written.
+     * 
+     * @param world     the PhysicsWorld to split.
+     * @param chunkSize the length of each side of a chunk.
+     * @param directory the directory to write the chunk files to.
+     * @return the number of chunk files written.
+     * @throws IOException if a chunk file cannot be written.
+     */
+    public static int writeChunks(PhysicsWorld world, double chunkSize, Path directory) throws IOException {
+        Map<Long, List<Integer>> bodies = new HashMap<>();
+
+        for (int id = 0; id < world.getRows(); id++) {
+            if (!world.isAlive(id))
+                continue;
+
+            int x = (int) Math.floor((world.getAX(id) + world.getBX(id)) / 2 / chunkSize);
+            int y = (int) Math.floor((world.getAY(id) + world.getBY(id)) / 2 / chunkSize);
+
+            bodies.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(id);
+        }
+
+        Files.createDirectories(directory);
+
+        for (Map.Entry<Long, List<Integer>> entry : bodies.entrySet()) {
+            long key = entry.getKey();
+
+            try (LevelWriter writer = new LevelWriter(getChunkPath(directory, (int) (key >> 32), (int) key))) {
+                for (int id : entry.getValue()) {
+                    writer.add(world, id);
+                }
+            }
+        }
+
+        return bodies.size();
+    }
+
+    /**
+     * Get the number of chunks that are loading, waiting to be copied in, or
+     * resident.
+     * 
+     * @return the number of chunks.
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Get the number of chunks that could not be loaded since this ChunkStreamer
+     * was created.
+     * 
+     * @return the number of failed chunks.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Access the ChunkErrorListener told about chunks that could not be loaded.
+     * 
+     * @return the ChunkErrorListener, or null if failures are printed to the
+     *         standard error stream.
+     */
+    public ChunkErrorListener getErrorListener() {
+        return errorListener;
+    }
+
+    /**
+     * Update the ChunkErrorListener told about chunks that could not be loaded.
+     * 
+     * @param errorListener the new ChunkErrorListener, or null to print failures
+     *                      to the standard error stream.
+     */
+    public void setErrorListener(ChunkErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Get the length of each side of a chunk.
+     * 
+     * @return the chunk size.
+     */
+    public double getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the distance from the focus within which chunks are loaded.
+     * 
+     * @return the residency radius.
+     */
+    public double getResidencyRadius() {
+        return residencyRadius;
+    }
+
+    /**
+     * Set the distance from the focus within which chunks are loaded. This method
+     * throws an IllegalArgumentException if the given radius is less than 0.
+     * 
+     * @param residencyRadius the new residency radius.
+     */
+    public void setResidencyRadius(double residencyRadius) {
+        if (residencyRadius < 0) {
+            throw new IllegalArgumentException("residencyRadius must be greater than or equal to 0");
+        }
+
+        this.residencyRadius = residencyRadius;
+    }
+
+    /**
+     * Get the extra distance a chunk must be beyond the residency radius before
+     * it is unloaded.
+     * 
+     * @return the hysteresis.
+     */
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Set the extra distance a chunk must be beyond the residency radius before
+     * it is unloaded. This method throws an IllegalArgumentException if the given
+     * distance is less than 0.
+     * 
+     * @param hysteresis the new hysteresis.
+     */
+    public void setHysteresis(double hysteresis) {
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("hysteresis must be greater than or equal to 0");
+        }
+
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Get the most bodies copied into the PhysicsWorld by a single update.
+     * 
+     * @return the number of bodies per update.
+     */
+    public int getBodiesPerUpdate() {
+        return bodiesPerUpdate;
+    }
+
+    /**
+     * Set the most bodies copied into the PhysicsWorld by a single update. This
+     * method throws an IllegalArgumentException if the given number is less than
+     * 1.
+     * 
+     * @param bodiesPerUpdate the new number of bodies per update.
+     */
+    public void setBodiesPerUpdate(int bodiesPerUpdate) {
+        if (bodiesPerUpdate < 1) {
+            throw new IllegalArgumentException("bodiesPerUpdate must be at least 1");
+        }
+
+        this.bodiesPerUpdate = bodiesPerUpdate;
+    }
+
+    /**
+     * Stop the background thread, if this ChunkStreamer made its own. Chunks that
+     * are already resident stay in the PhysicsWorld.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null)
+            ownedExecutor.shutdownNow();
+    }
+
+    /**
+     * The state of one chunk, shared with the Executor while it is read.
+     */
+    private static class Chunk {
+        private final int x, y;
+
+        // Set on the update thread and read on the Executor
+        private volatile boolean cancelled;
+
+        // Written on the Executor before the chunk is queued, which publishes them
+        private PhysicsWorld staging;
+        private IOException error;
+
+        // The ids of the bodies copied into the PhysicsWorld so far
+        private int[] ids;
+        private int copied;
+
+        private Chunk(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package action.level;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The LevelFormat class describes the binary level format. A level file is a
+ * fixed size header followed by one fixed size record per body, all in little
+ * endian byte order so that it can be read straight out of a memory mapped
+ * file on common hardware.
+ * 
+ * The header holds, in order, the magic number as an int, the format version as
+ * an int, the number of records as an int, and the CRC-32 of all the record
+ * bytes as an int.
+ * 
+ * Each record holds, in order, the x and y coordinates of the first endpoint,
+ * the x and y coordinates of the second endpoint, the radius, the mass, the x
+ * and y components of the initial velocity, and the x and y components of the
+ * initial acceleration, all as doubles, followed by the kind of body as an int
+ * and an int that is reserved and must be 0.
+ * 
+ * Any change to the layout must increase VERSION.
+ */
+public final class LevelFormat {
+    /**
+     * The first four bytes of every level file, which spell "ACTL" when read as
+     * bytes in order.
+     */
+    public static final int MAGIC = 0x4c544341;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 88;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * The kind of a body that moves and collides as usual.
+     */
+    public static final int KIND_DYNAMIC = 0;
+
+    /**
+     * The kind of a static body, which must have infinite mass.
+     */
+    public static final int KIND_STATIC = 1;
+
+    /**
+     * The kind of a dynamic body that always uses continuous collision detection.
+     */
+    public static final int KIND_CONTINUOUS = 2;
+
+    // The offsets of the fields within the header
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int COUNT_OFFSET = 8;
+    static final int CHECKSUM_OFFSET = 12;
+
+    // The offsets of the fields within a record
+    static final int AX_OFFSET = 0;
+    static final int AY_OFFSET = 8;
+    static final int BX_OFFSET = 16;
+    static final int BY_OFFSET = 24;
+    static final int RADIUS_OFFSET = 32;
+    static final int MASS_OFFSET = 40;
+    static final int VELOCITY_X_OFFSET = 48;
+    static final int VELOCITY_Y_OFFSET = 56;
+    static final int ACCELERATION_X_OFFSET = 64;
+    static final int ACCELERATION_Y_OFFSET = 72;
+    static final int KIND_OFFSET = 80;
+    static final int RESERVED_OFFSET = 84;
+
+    private LevelFormat() {
+    }
+
+    /**
+     * Get the size of a level file holding the given number of records.
+     * 
+     * @param count the number of records.
+     * @return the size of the file, in bytes.
+     */
+    public static long getFileSize(int count) {
+        return HEADER_SIZE + (long) count * RECORD_SIZE;
+    }
+
+    // Get the offset of a record within a level file
+    static int recordOffset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    // Check that the header is this format and version, and that the buffer is
+    // exactly long enough for its records, returning a description of the problem
+    // or null
+    static String checkHeader(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE)
+            return "file is too short to hold a header";
+
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC)
+            return "file is not a level file";
+
+        int version = buffer.getInt(VERSION_OFFSET);
+
+        if (version != VERSION)
+            return "unsupported level version " + version + ", expected " + VERSION;
+
+        int count = buffer.getInt(COUNT_OFFSET);
+
+        if (count < 0)
+            return "negative record count " + count;
+
+        if (buffer.limit() != getFileSize(count))
+            return "file holds " + buffer.limit() + " bytes, but " + count + " records need " + getFileSize(count);
+
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * The LevelReader class loads level files straight into a PhysicsWorld. The
+ * file is memory mapped and each record is read with absolute gets, so loading
+ * creates no objects per body and takes time in proportion to the size of the
+ * file.
+ * 
+ * Loading only checks the header. The records are trusted, so a level that did
+ * not come from a LevelWriter should be checked with the LevelValidator first.
+ * 
+ * @see LevelFormat
+ */
+public final class LevelReader {
+    private LevelReader() {
+    }
+
+    /**
+     * Load every body in a level file into the given PhysicsWorld, in the order
+     * they appear in the file.
+     * 
+     * @param path  the path of the level file.
+     * @param world the PhysicsWorld to add the bodies to.
+     * @return the number of bodies added.
+     * @throws IOException if the file cannot be read or its header is not valid.
+     */
+    public static int load(Path path, PhysicsWorld world) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        String problem = LevelFormat.checkHeader(buffer);
+
+        if (problem != null) {
+            throw new IOException(path + ": " + problem);
+        }
+
+        int count = buffer.getInt(LevelFormat.COUNT_OFFSET);
+        world.ensureCapacity(world.getRows() + count);
+
+        for (int record = 0; record < count; record++) {
+            int offset = LevelFormat.recordOffset(record);
+            int kind = buffer.getInt(offset + LevelFormat.KIND_OFFSET);
+
+            int id = world.add(buffer.getDouble(offset + LevelFormat.AX_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.AY_OFFSET), buffer.getDouble(offset + LevelFormat.BX_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.BY_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.RADIUS_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.MASS_OFFSET));
+
+            if (kind == LevelFormat.KIND_STATIC) {
+                world.setStatic(id, true);
+                continue;
+            }
+
+            world.setVelocity(id, buffer.getDouble(offset + LevelFormat.VELOCITY_X_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.VELOCITY_Y_OFFSET));
+            world.setAcceleration(id, buffer.getDouble(offset + LevelFormat.ACCELERATION_X_OFFSET),
+                    buffer.getDouble(offset + LevelFormat.ACCELERATION_Y_OFFSET));
+
+            if (kind == LevelFormat.KIND_CONTINUOUS)
+                world.setContinuous(id, true);
+        }
+
+        return count;
+    }
+
+    // Map a whole file for reading, in the level byte order. The mapping stays
+    // valid after the channel is closed.
+    static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + ": file is too large to be a level file");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(LevelFormat.BYTE_ORDER);
+
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The LevelValidator class checks level files for every problem that would
+ * make loading fail or leave the PhysicsWorld in a bad state, so that
+ * generated levels can be checked once when they are built instead of every
+ * time they are loaded.
+ * 
+ * It can also be run from the command line with the paths of the files to
+ * check, and exits with a status of 1 if any of them has a problem.
+ * 
+ * @see LevelFormat
+ */
+public final class LevelValidator {
+    /**
+     * The most problems reported for a single file, after which checking stops.
+     */
+    public static final int MAX_PROBLEMS = 100;
+
+    private LevelValidator() {
+    }
+
+    /**
+     * Check a level file.
+     * 
+     * @param path the path of the level file.
+     * @return a description of each problem found, which is empty if the file is
+     *         valid.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<String> validate(Path path) throws IOException {
+        List<String> problems = new ArrayList<>();
+        MappedByteBuffer buffer = LevelReader.map(path);
+
+        String problem = LevelFormat.checkHeader(buffer);
+
+        if (problem != null) {
+            problems.add(problem);
+            return problems;
+        }
+
+        CRC32 checksum = new CRC32();
+        buffer.position(LevelFormat.HEADER_SIZE);
+        checksum.update(buffer);
+
+        if ((int) checksum.getValue() != buffer.getInt(LevelFormat.CHECKSUM_OFFSET))
+            problems.add("checksum does not match the records");
+
+        int count = buffer.getInt(LevelFormat.COUNT_OFFSET);
+
+        for (int record = 0; record < count && problems.size() < MAX_PROBLEMS; record++) {
+            checkRecord(buffer, record, problems);
+        }
+
+        return problems;
+    }
+
+    private static void checkRecord(MappedByteBuffer buffer, int record, List<String> problems) {
+        int offset = LevelFormat.recordOffset(record);
+        String name = "record " + record + ": ";
+
+        for (int field = LevelFormat.AX_OFFSET; field <= LevelFormat.ACCELERATION_Y_OFFSET; field += 8) {
+            if (field == LevelFormat.MASS_OFFSET)
+                continue;
+
+            if (!Double.isFinite(buffer.getDouble(offset + field))) {
+                problems.add(name + "value at byte " + field + " is not a finite number");
+                return;
+            }
+        }
+
+        double radius = buffer.getDouble(offset + LevelFormat.RADIUS_OFFSET);
+        double mass = buffer.getDouble(offset + LevelFormat.MASS_OFFSET);
+        int kind = buffer.getInt(offset + LevelFormat.KIND_OFFSET);
+
+        if (radius < 0)
+            problems.add(name + "radius must be greater than or equal to 0");
+
+        if (!(mass > 0))
+            problems.add(name + "mass must be greater than 0");
+
+        if (kind < LevelFormat.KIND_DYNAMIC || kind > LevelFormat.KIND_CONTINUOUS)
+            problems.add(name + "unknown kind " + kind);
+
+        if (kind == LevelFormat.KIND_STATIC && mass != Double.POSITIVE_INFINITY)
+            problems.add(name + "a static body must have infinite mass");
+
+        if (buffer.getInt(offset + LevelFormat.RESERVED_OFFSET) != 0)
+            problems.add(name + "reserved field must be 0");
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean valid = true;
+
+        for (String arg : args) {
+            List<String> problems = validate(Paths.get(arg));
+
+            for (String problem : problems) {
+                System.err.println(arg + ": " + problem);
+            }
+
+            if (problems.isEmpty())
+                System.out.println(arg + ": valid");
+            else
+                valid = false;
+        }
+
+        if (!valid)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,183 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * A LevelWriter writes bodies to a file in the binary level format. Records are
+ * gathered in a buffer and written out in large blocks, so a level of any size
+ * can be written with a small, fixed amount of memory.
+ * 
+ * A LevelWriter must be closed to write the header, without which the file is
+ * not a valid level.
+ * 
+ * @see LevelFormat
+ */
+public class LevelWriter implements AutoCloseable {
+    private static final int BLOCK_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_RECORDS * LevelFormat.RECORD_SIZE)
+            .order(LevelFormat.BYTE_ORDER);
+    private final CRC32 checksum = new CRC32();
+
+    private int count;
+    private boolean closed;
+
+    /**
+     * Open a new level file for writing, replacing any file already at the given
+     * path.
+     * 
+     * @param path the path of the level file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public LevelWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(LevelFormat.HEADER_SIZE);
+    }
+
+    /**
+     * Write every body in a PhysicsWorld to a new level file at the given path.
+     * Bodies are written in order of their ids, with their current positions,
+     * velocities and accelerations.
+     * 
+     * @param world the PhysicsWorld to write.
+     * @param path  the path of the level file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(PhysicsWorld world, Path path) throws IOException {
+        try (LevelWriter writer = new LevelWriter(path)) {
+            for (int id = 0; id < world.getRows(); id++) {
+                if (world.isAlive(id))
+                    writer.add(world, id);
+            }
+        }
+    }
+
+    /**
+     * Add a record for one body in a PhysicsWorld.
+     * 
+     * @param world the PhysicsWorld holding the body.
+     * @param id    the id of the body.
+     * @throws IOException if the file cannot be written.
+     */
+    public void add(PhysicsWorld world, int id) throws IOException {
+        int kind = LevelFormat.KIND_DYNAMIC;
+
+        if (world.isStatic(id))
+            kind = LevelFormat.KIND_STATIC;
+        else if (world.isContinuous(id))
+            kind = LevelFormat.KIND_CONTINUOUS;
+
+        add(world.getAX(id), world.getAY(id), world.getBX(id), world.getBY(id), world.getRadius(id),
+                world.getMass(id), world.getVelocityX(id), world.getVelocityY(id), world.getAccelerationX(id),
+                world.getAccelerationY(id), kind);
+    }
+
+    /**
+     * Add a record for a body with the given state. The values are not checked
+     * here, so a level generator should run the LevelValidator over its output.
+     * 
+     * @param ax            the x coordinate of the first endpoint.
+     * @param ay            the y coordinate of the first endpoint.
+     * @param bx            the x coordinate of the second endpoint.
+     * @param by            the y coordinate of the second endpoint.
+     * @param radius        the radius of the body.
+     * @param mass          the mass of the body.
+     * @param velocityX     the x component of the initial velocity.
+     * @param velocityY     the y component of the initial velocity.
+     * @param accelerationX the x component of the initial acceleration.
+     * @param accelerationY the y component of the initial acceleration.
+     * @param kind          the kind of the body, one of the KIND constants of
+     *                      LevelFormat.
+     * @throws IOException if the file cannot be written.
+     */
+    public void add(double ax, double ay, double bx, double by, double radius, double mass, double velocityX,
+            double velocityY, double accelerationX, double accelerationY, int kind) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("the LevelWriter is closed");
+        }
+
+        if (count == Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many records for one level");
+        }
+
+        if (!block.hasRemaining())
+            flush();
+
+        block.putDouble(ax);
+        block.putDouble(ay);
+        block.putDouble(bx);
+        block.putDouble(by);
+        block.putDouble(radius);
+        block.putDouble(mass);
+        block.putDouble(velocityX);
+        block.putDouble(velocityY);
+        block.putDouble(accelerationX);
+        block.putDouble(accelerationY);
+        block.putInt(kind);
+        block.putInt(0);
+
+        count++;
+    }
+
+    /**
+     * Get the number of records added so far.
+     * 
+     * @return the number of records.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    private void flush() throws IOException {
+        block.flip();
+
+        checksum.update(block);
+        block.rewind();
+
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+
+        block.clear();
+    }
+
+    /**
+     * Write any buffered records and the header, and close the file.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+
+        try {
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(LevelFormat.HEADER_SIZE).order(LevelFormat.BYTE_ORDER);
+            header.putInt(LevelFormat.MAGIC_OFFSET, LevelFormat.MAGIC);
+            header.putInt(LevelFormat.VERSION_OFFSET, LevelFormat.VERSION);
+            header.putInt(LevelFormat.COUNT_OFFSET, count);
+            header.putInt(LevelFormat.CHECKSUM_OFFSET, (int) checksum.getValue());
+
+            // The header sits at the start of the file, so its offset in the buffer is
+            // its offset in the file
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package action.movement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import action.physics.StepListener;
+
+/**
+ * A ControllerScheduler runs large numbers of MovementControllers, such as
+ * scripted or AI controllers, without running every one of them every step.
+ * 
+ * Each controller has an interval, the number of steps between its runs, and
+ * is passed all the time since its last run. Controllers with the same interval
+ * are spread across the steps as they are added, so that a thousand controllers
+ * that run every sixth step cost about as much in each step.
+ * 
+ * The controllers that are due in a step are run in round-robin order until the
+ * time budget for the step is spent, judged by each controller's recent cost.
+ * The ones that did not fit stay due, and the next step starts with them, so
+ * every controller gets its turn. With the default budget, which is unlimited,
+ * every due controller runs and the schedule only depends on the step count,
+ * which keeps the simulation deterministic.
+ * 
+ * Given a ForkJoinPool, the think phases of the due ParallelControllers run in
+ * parallel before any movement is applied. The time each controller takes is
+ * recorded in its ScheduledController.
+ */
+public class ControllerScheduler implements StepListener {
+    // The number of ParallelControllers thought about in a single task
+    private static final int THINK_CHUNK_SIZE = 32;
+
+    private final List<ScheduledController> controllers = new ArrayList<>();
+
+    // The number of controllers added so far with each interval, which spreads
+    // their first runs
+    private final Map<Integer, Integer> addedPerInterval = new HashMap<>();
+    private ForkJoinPool pool;
+    private long budgetNanos = Long.MAX_VALUE;
+
+    private long step;
+    private double time;
+    private int cursor;
+
+    // The controllers chosen to run in the current step, and how long their
+    // think phases took
+    private ScheduledController[] selected = new ScheduledController[16];
+    private double[] selectedDeltaTimes = new double[16];
+    private long[] thinkNanos = new long[16];
+    private int selectedCount;
+
+    private int lastRunCount, lastDeferredCount;
+    private long lastStepNanos;
+
+    /**
+     * Initialize a new, empty ControllerScheduler with an unlimited budget and no
+     * ForkJoinPool.
+     */
+    public ControllerScheduler() {
+    }
+
+    /**
+     * Add a MovementController that runs every given number of steps. Its first
+     * run is spread among the others added with the same interval, in turn. This
+     * method throws an IllegalArgumentException if the given interval is less
+     * than 1.
+     * 
+     * @param controller the MovementController to add.
+     * @param interval   the number of steps between runs.
+     * @return the new ScheduledController.
+     */
+    public ScheduledController add(MovementController controller, int interval) {
+        if (controller == null) {
+            throw new IllegalArgumentException("controller must not be null");
+        }
+
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be at least 1");
+        }
+
+        int added = addedPerInterval.merge(interval, 1, Integer::sum) - 1;
+
+        ScheduledController scheduled = new ScheduledController(controller, interval, step + 1 + added % interval,
+                time);
+        controllers.add(scheduled);
+
+        return scheduled;
+    }
+
+    /**
+     * Remove a MovementController.
+     * 
+     * @param controller the MovementController to remove.
+     * @return true if the MovementController was scheduled.
+     */
+    public boolean remove(MovementController controller) {
+        for (int i = 0; i < controllers.size(); i++) {
+            if (controllers.get(i).getController() == controller) {
+                controllers.remove(i);
+
+                if (cursor > i)
+                    cursor--;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void beforeStep(double deltaTime) {
+        long start = System.nanoTime();
+
+        step++;
+        time += deltaTime;
+
+        select();
+        think();
+
+        for (int i = 0; i < selectedCount; i++) {
+            ScheduledController scheduled = selected[i];
+            long runStart = System.nanoTime();
+
+            scheduled.getController().applyMovement(selectedDeltaTimes[i]);
+            scheduled.record(thinkNanos[i] + System.nanoTime() - runStart);
+
+            scheduled.nextStep = step + scheduled.getInterval();
+            scheduled.lastTime = time;
+            selected[i] = null;
+        }
+
+        lastRunCount = selectedCount;
+        lastStepNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Choose the due controllers to run in this step, in round-robin order from
+     * where the last step stopped, until their estimated cost fills the budget.
+     */
+    private void select() {
+        int count = controllers.size();
+        double cost = 0;
+        int deferred = 0;
+        int next = -1;
+
+        selectedCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            int index = (cursor + i) % count;
+            ScheduledController scheduled = controllers.get(index);
+
+            if (scheduled.nextStep > step)
+                continue;
+
+            // Always run at least one controller, so that a small budget still makes
+            // progress
+            if (selectedCount > 0 && cost + scheduled.getEstimatedNanos() > budgetNanos) {
+                if (next < 0)
+                    next = index;
+
+                deferred++;
+                continue;
+            }
+
+            cost += scheduled.getEstimatedNanos();
+            addSelected(scheduled);
+        }
+
+        // Start the next step with the first controller that did not fit
+        if (next >= 0)
+            cursor = next;
+
+        lastDeferredCount = deferred;
+    }
+
+    private void addSelected(ScheduledController scheduled) {
+        if (selectedCount == selected.length) {
+            int capacity = selectedCount * 2;
+
+            selected = Arrays.copyOf(selected, capacity);
+            selectedDeltaTimes = Arrays.copyOf(selectedDeltaTimes, capacity);
+            thinkNanos = Arrays.copyOf(thinkNanos, capacity);
+        }
+
+        selected[selectedCount] = scheduled;
+        selectedDeltaTimes[selectedCount] = time - scheduled.lastTime;
+        thinkNanos[selectedCount] = 0;
+        selectedCount++;
+    }
+
+    private void think() {
+        if (pool == null || selectedCount <= THINK_CHUNK_SIZE)
+            thinkRange(0, selectedCount);
+        else
+            pool.invoke(new ThinkTask(0, selectedCount));
+    }
+
+    private void thinkRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            ScheduledController scheduled = selected[i];
+
+            if (!scheduled.isParallel())
+                continue;
+
+            long start = System.nanoTime();
+            ((ParallelController) scheduled.getController()).think(selectedDeltaTimes[i]);
+            thinkNanos[i] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Find the controllers that have taken the most time in total.
+     * 
+     * @param count the number of controllers to return.
+     * @return up to count ScheduledControllers, the most expensive first.
+     */
+    public List<ScheduledController> getMostExpensive(int count) {
+        List<ScheduledController> sorted = new ArrayList<>(controllers);
+        sorted.sort(Comparator.comparingLong(ScheduledController::getTotalNanos).reversed());
+
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    /**
+     * Access the ScheduledControllers, in the order they were added.
+     * 
+     * @return an unmodifiable view of the ScheduledControllers.
+     */
+    public List<ScheduledController> getControllers() {
+        return Collections.unmodifiableList(controllers);
+    }
+
+    /**
+     * Get the number of controllers run in the last step.
+     * 
+     * @return the number of controllers run.
+     */
+    public int getLastRunCount() {
+        return lastRunCount;
+    }
+
+    /**
+     * Get the number of controllers that were due in the last step but did not fit
+     * in the budget.
+     * 
+     * @return the number of deferred controllers.
+     */
+    public int getLastDeferredCount() {
+        return lastDeferredCount;
+    }
+
+    /**
+     * Get the time the last step's controllers took to run.
+     * 
+     * @return the time, in nanoseconds.
+     */
+    public long getLastStepNanos() {
+        return lastStepNanos;
+    }
+
+    /**
+     * Get the time budget for the controllers in each step.
+     * 
+     * @return the budget, in nanoseconds.
+     */
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * Set the time budget for the controllers in each step. Controllers that do
+     * not fit in the budget run in a later step. This method throws an
+     * IllegalArgumentException if the given budget is not positive.
+     * 
+     * @param budgetNanos the new budget, in nanoseconds, or Long.MAX_VALUE to run
+     *                    every due controller.
+     */
+    public void setBudgetNanos(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("budgetNanos must be positive");
+        }
+
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Access the ForkJoinPool used to run the think phases of ParallelControllers.
+     * 
+     * @return the ForkJoinPool, or null if every controller runs on the calling
+     *         thread.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Update the ForkJoinPool used to run the think phases of ParallelControllers.
+     * 
+     * @param pool the new ForkJoinPool, or null to run every controller on the
+     *             calling thread.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * A task that runs the think phases of a range of the selected controllers,
+     * splitting it in half until it is small enough.
+     */
+    private class ThinkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        ThinkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THINK_CHUNK_SIZE) {
+                thinkRange(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ThinkTask(from, middle), new ThinkTask(middle, to));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package action.movement;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * An InputDispatcher is the single place where the key events of a Scene are
+ * handled. It keeps the held keys in a bit set indexed by KeyCode ordinal, and
+ * samples them into an immutable InputState once per simulation step, which is
+ * shared by every MovementController bound to it.
+ * 
+ * The handlers are added alongside any others on the Scene instead of
+ * replacing them, so there should be one InputDispatcher per Scene no matter
+ * how many controllers read from it. Keys are recorded on the JavaFX thread and
+ * sampled on whichever thread runs the simulation.
+ */
+public class InputDispatcher {
+    private final AtomicLongArray pressed = new AtomicLongArray(InputState.WORD_COUNT);
+    private final long[] sampleWords = new long[InputState.WORD_COUNT];
+
+    private volatile InputState state = InputState.EMPTY;
+
+    private final EventHandler<KeyEvent> keyPress = event -> setPressed(event.getCode(), true);
+    private final EventHandler<KeyEvent> keyRelease = event -> setPressed(event.getCode(), false);
+
+    /**
+     * Initialize a new InputDispatcher that is not attached to any Scene. Keys
+     * can still be pressed and released through setPressed.
+     */
+    public InputDispatcher() {
+    }
+
+    /**
+     * Initialize a new InputDispatcher that handles the key events of the given
+     * Scene.
+     * 
+     * @param scene the Scene to handle key events for.
+     */
+    public InputDispatcher(Scene scene) {
+        attach(scene);
+    }
+
+    /**
+     * Start handling the key events of a Scene.
+     * 
+     * @param scene the Scene to handle key events for.
+     */
+    public void attach(Scene scene) {
+        scene.addEventHandler(KeyEvent.KEY_PRESSED, keyPress);
+        scene.addEventHandler(KeyEvent.KEY_RELEASED, keyRelease);
+    }
+
+    /**
+     * Stop handling the key events of a Scene.
+     * 
+     * @param scene the Scene to stop handling key events for.
+     */
+    public void detach(Scene scene) {
+        scene.removeEventHandler(KeyEvent.KEY_PRESSED, keyPress);
+        scene.removeEventHandler(KeyEvent.KEY_RELEASED, keyRelease);
+    }
+
+    /**
+     * Record that a key was pressed or released. This is called by the key event
+     * handlers, and can be called directly to drive the input from elsewhere.
+     * 
+     * @param keyCode the key.
+     * @param down    true if the key was pressed, or false if it was released.
+     */
+    public void setPressed(KeyCode keyCode, boolean down) {
+        if (keyCode == null)
+            return;
+
+        int ordinal = keyCode.ordinal();
+        int word = ordinal >>> 6;
+        long bit = 1L << ordinal;
+
+        if (down)
+            pressed.getAndAccumulate(word, bit, (value, mask) -> value | mask);
+        else
+            pressed.getAndAccumulate(word, bit, (value, mask) -> value & ~mask);
+    }
+
+    /**
+     * Check whether a key is held right now. MovementControllers should read the
+     * sampled InputState instead, so that they agree on the keys for the whole
+     * step.
+     * 
+     * @param keyCode the key to check.
+     * @return true if the key is held.
+     */
+    public boolean isPressed(KeyCode keyCode) {
+        int ordinal = keyCode.ordinal();
+
+        return (pressed.get(ordinal >>> 6) & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Release every key, for example when the window loses focus and the release
+     * events would be missed.
+     */
+    public void releaseAll() {
+        for (int i = 0; i < pressed.length(); i++) {
+            pressed.set(i, 0);
+        }
+    }
+
+    /**
+     * Sample the held keys into a new InputState, which becomes the state
+     * returned by getState. This is called once at the start of every step, by
+     * the thread that runs the simulation. If the held keys have not changed, the
+     * previous InputState is kept.
+     * 
+     * @return the sampled InputState.
+     */
+    public InputState sample() {
+        for (int i = 0; i < sampleWords.length; i++) {
+            sampleWords[i] = pressed.get(i);
+        }
+
+        InputState current = state;
+
+        if (!current.matches(sampleWords))
+            state = current = new InputState(sampleWords.clone());
+
+        return current;
+    }
+
+    /**
+     * Access the InputState from the last call to sample.
+     * 
+     * @return the sampled InputState.
+     */
+    public InputState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,61 @@
+package action.movement;
+
+import java.util.Arrays;
+
+import javafx.scene.input.KeyCode;
+
+/**
+ * An InputState is an immutable record of which keys were held at one moment,
+ * as sampled by an InputDispatcher at the start of a simulation step. Since it
+ * never changes, any number of MovementControllers on any thread can read it
+ * without locking, and all of them see the same keys for the whole step.
+ */
+public final class InputState {
+    // The number of longs needed for one bit per KeyCode, which must be set
+    // before EMPTY is created
+    static final int WORD_COUNT = (KeyCode.values().length + 63) / 64;
+
+    /**
+     * The InputState with no keys held.
+     */
+    public static final InputState EMPTY = new InputState(new long[WORD_COUNT]);
+
+    // One bit per KeyCode, indexed by ordinal
+    private final long[] words;
+
+    InputState(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Check whether the given key was held.
+     * 
+     * @param keyCode the key to check.
+     * @return true if the key was held.
+     */
+    public boolean isPressed(KeyCode keyCode) {
+        int ordinal = keyCode.ordinal();
+        int word = ordinal >>> 6;
+
+        return word < words.length && (words[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Check whether any key was held.
+     * 
+     * @return true if at least one key was held.
+     */
+    public boolean isAnyPressed() {
+        for (long word : words) {
+            if (word != 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    // Check whether this state holds the same keys as the given words
+    boolean matches(long[] other) {
+        return Arrays.equals(words, other);
+    }
+}
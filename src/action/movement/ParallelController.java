@@ -0,0 +1,26 @@
+package action.movement;
+
+/**
+ * A ParallelController is a MovementController that splits its work into a
+ * think phase, which only reads shared state, and the usual applyMovement,
+ * which acts on what it decided. A ControllerScheduler with a ForkJoinPool runs
+ * the think phase of many ParallelControllers at once, then applies their
+ * movement one after another.
+ * 
+ * The think phase must not change anything outside of the controller itself,
+ * including the PhysicsWorld, since other controllers read it at the same time.
+ * It must not run the PhysicsWorld's spatial queries either, such as raycast or
+ * findNearest, since only one query can run at a time. A controller that needs
+ * them, as for line of sight, should cast its rays in applyMovement, all at
+ * once with the batch raycast, and think about the hits in the next think.
+ */
+public interface ParallelController extends MovementController {
+    /**
+     * Decide on the movement to apply, reading but not changing shared state, and
+     * without running spatial queries on the PhysicsWorld. This is called just
+     * before applyMovement, possibly on another thread.
+     * 
+     * @param deltaTime the time since this controller last ran, in seconds.
+     */
+    public void think(double deltaTime);
+}
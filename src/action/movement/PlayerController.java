@@ -1,83 +1,233 @@
 package action.movement;
 
 import action.objects.GameObject;
-import javafx.event.EventHandler;
-import javafx.geometry.Point2D;
-import javafx.scene.Scene;
+import action.physics.PhysicsWorld;
+import action.physics.PlayerInput;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
 import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
 
 public class PlayerController implements MovementController {
+    /**
+     * The input bit set while the up key is held.
+     */
+    public static final int UP = PlayerInput.UP;
+
+    /**
+     * The input bit set while the down key is held.
+     */
+    public static final int DOWN = PlayerInput.DOWN;
+
+    /**
+     * The input bit set while the left key is held.
+     */
+    public static final int LEFT = PlayerInput.LEFT;
+
+    /**
+     * The input bit set while the right key is held.
+     */
+    public static final int RIGHT = PlayerInput.RIGHT;
+
     private GameObject gameObject;
 
     private double speed;
 
-    private boolean up, down, left, right;
+    // The keys that drive this controller, and the input bits they set
+    private final EnumMap<KeyCode, Integer> bindings = new EnumMap<>(KeyCode.class);
+
+    // The same bindings as parallel arrays, rebuilt whenever they change, so that
+    // reading the input each step does not allocate
+    private KeyCode[] boundKeys = new KeyCode[0];
+    private int[] boundBits = new int[0];
+    private InputDispatcher dispatcher;
+
+    // Read from the InputDispatcher at each step, or set directly when there is
+    // none, possibly from another thread
+    private volatile int input;
 
     /**
-     * Create a new PlayerController with the specified GameObject, speed, scene,
-     * and keys.
+     * Create a new PlayerController with the specified GameObject, speed,
+     * InputDispatcher, and keys. Any number of PlayerControllers can share the
+     * same InputDispatcher.
      * 
      * @param gameObject the GameObject to apply the movement to.
      * @param speed      the speed of the movement, in pixels per second squared.
-     * @param scene      the current scene in which to check for key press events.
+     * @param dispatcher the InputDispatcher to read the held keys from.
      * @param upKey      the key associated with upward movement.
      * @param downKey    the key associated with downward movement.
      * @param leftKey    the key associated with leftward movement.
      * @param rightKey   the key associated with rightward movement.
      */
-    public PlayerController(GameObject gameObject, double speed, Scene scene, KeyCode upKey, KeyCode downKey,
-            KeyCode leftKey, KeyCode rightKey) {
+    public PlayerController(GameObject gameObject, double speed, InputDispatcher dispatcher, KeyCode upKey,
+            KeyCode downKey, KeyCode leftKey, KeyCode rightKey) {
+        this(gameObject, speed);
+        this.dispatcher = dispatcher;
+
+        bind(upKey, UP);
+        bind(downKey, DOWN);
+        bind(leftKey, LEFT);
+        bind(rightKey, RIGHT);
+    }
+
+    /**
+     * Create a new PlayerController with the specified GameObject and speed, and
+     * no InputDispatcher. Its input only changes through setInput, which suits
+     * scripted and replayed input.
+     * 
+     * @param gameObject the GameObject to apply the movement to.
+     * @param speed      the speed of the movement, in pixels per second squared.
+     */
+    public PlayerController(GameObject gameObject, double speed) {
         this.gameObject = gameObject;
         this.speed = speed;
+    }
+
+    /**
+     * Bind a key to one or more input bits, replacing any earlier binding of the
+     * same key. This method throws an IllegalArgumentException if the bits are
+     * not a combination of UP, DOWN, LEFT and RIGHT.
+     * 
+     * @param keyCode the key to bind.
+     * @param bits    the input bits set while the key is held.
+     */
+    public void bind(KeyCode keyCode, int bits) {
+        if (keyCode == null || bits == 0 || (bits & ~PlayerInput.ALL) != 0) {
+            throw new IllegalArgumentException("bits must be a combination of UP, DOWN, LEFT and RIGHT");
+        }
+
+        bindings.put(keyCode, bits);
+        updateBoundKeys();
+    }
+
+    /**
+     * Remove the binding of a key.
+     * 
+     * @param keyCode the key to unbind.
+     */
+    public void unbind(KeyCode keyCode) {
+        bindings.remove(keyCode);
+        updateBoundKeys();
+    }
+
+    private void updateBoundKeys() {
+        KeyCode[] keys = new KeyCode[bindings.size()];
+        int[] bits = new int[keys.length];
+        int index = 0;
+
+        for (Map.Entry<KeyCode, Integer> binding : bindings.entrySet()) {
+            keys[index] = binding.getKey();
+            bits[index] = binding.getValue();
+            index++;
+        }
+
+        boundKeys = keys;
+        boundBits = bits;
+    }
 
-        EventHandler<KeyEvent> keyPress = new EventHandler<>() {
-            @Override
-            public void handle(KeyEvent event) {
-                KeyCode eventCode = event.getCode();
-
-                if (eventCode == upKey) {
-                    up = true;
-                } else if (eventCode == downKey) {
-                    down = true;
-                } else if (eventCode == leftKey) {
-                    left = true;
-                } else if (eventCode == rightKey) {
-                    right = true;
-                }
-            }
-        };
-
-        EventHandler<KeyEvent> keyRelease = new EventHandler<>() {
-            @Override
-            public void handle(KeyEvent event) {
-                KeyCode eventCode = event.getCode();
-
-                if (eventCode == upKey) {
-                    up = false;
-                } else if (eventCode == downKey) {
-                    down = false;
-                } else if (eventCode == leftKey) {
-                    left = false;
-                } else if (eventCode == rightKey) {
-                    right = false;
-                }
-            }
-        };
-
-        scene.setOnKeyPressed(keyPress);
-        scene.setOnKeyReleased(keyRelease);
+    /**
+     * Access the keys bound to this PlayerController and the input bits they set.
+     * 
+     * @return an unmodifiable view of the bindings.
+     */
+    public Map<KeyCode, Integer> getBindings() {
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    /**
+     * Find the input bits set by the keys held in an InputState.
+     * 
+     * @param state the InputState to read.
+     * @return the input, as a combination of UP, DOWN, LEFT and RIGHT.
+     */
+    public int getInput(InputState state) {
+        KeyCode[] keys = boundKeys;
+        int[] keyBits = boundBits;
+        int bits = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (state.isPressed(keys[i]))
+                bits |= keyBits[i];
+        }
+
+        return bits;
     }
 
     public void applyMovement(double deltaTime) {
-        double totalUp = ((up ? 1 : 0) - (down ? 1 : 0)) * speed * deltaTime;
-        double totalRight = ((right ? 1 : 0) - (left ? 1 : 0)) * speed * deltaTime;
+        if (dispatcher != null)
+            input = getInput(dispatcher.getState());
 
-        // totalUp must be negated because lower y coordinates appear higher on the
-        // screen
-        Point2D newVelocity = gameObject.getVelocity().add(totalRight, -totalUp);
+        if (gameObject.isDetached()) {
+            gameObject.setVelocity(
+                    gameObject.getVelocityX() + PlayerInput.getVelocityChangeX(input, speed, deltaTime),
+                    gameObject.getVelocityY() + PlayerInput.getVelocityChangeY(input, speed, deltaTime));
+        } else {
+            applyInput(gameObject.getWorld(), gameObject.getId(), input, speed, deltaTime);
+        }
+    }
+
+    /**
+     * Apply the movement for the given input to a body in a PhysicsWorld. This is
+     * the movement applied by every PlayerController, without the need for a
+     * GameObject or a Scene, so that recorded input can be replayed headlessly.
+     * 
+     * @param world     the PhysicsWorld holding the body.
+     * @param id        the id of the body.
+     * @param input     the held keys, as a combination of UP, DOWN, LEFT and RIGHT.
+     * @param speed     the speed of the movement, in pixels per second squared.
+     * @param deltaTime the length of the current step, in seconds.
+     */
+    public static void applyInput(PhysicsWorld world, int id, int input, double speed, double deltaTime) {
+        PlayerInput.apply(world, id, input, speed, deltaTime);
+    }
 
-        gameObject.setVelocity(newVelocity);
+    /**
+     * Get the input applied in the last step, as a combination of UP, DOWN, LEFT
+     * and RIGHT.
+     * 
+     * @return the current input.
+     */
+    public int getInput() {
+        return input;
+    }
+
+    /**
+     * Update the input, as a combination of UP, DOWN, LEFT and RIGHT. With an
+     * InputDispatcher, the input is read from it again at the next step.
+     * 
+     * @param input the new input.
+     */
+    public void setInput(int input) {
+        this.input = input;
+    }
+
+    /**
+     * Get the speed of the movement.
+     * 
+     * @return the speed, in pixels per second squared.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Access the InputDispatcher the held keys are read from.
+     * 
+     * @return the InputDispatcher, or null if the input is only set directly.
+     */
+    public InputDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Update the InputDispatcher the held keys are read from.
+     * 
+     * @param dispatcher the new InputDispatcher, or null to only set the input
+     *                   directly.
+     */
+    public void setDispatcher(InputDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     public GameObject getGameObject() {
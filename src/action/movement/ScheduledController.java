@@ -0,0 +1,133 @@
+package action.movement;
+
+/**
+ * A ScheduledController is a MovementController's entry in a
+ * ControllerScheduler. It holds how often the controller runs and how much time
+ * it has taken, so that the expensive controllers can be found.
+ */
+public class ScheduledController {
+    // How much each new sample moves the cost estimate
+    private static final double ESTIMATE_WEIGHT = 0.125;
+
+    private final MovementController controller;
+    private final boolean parallel;
+    private int interval;
+
+    // The step this controller is next due at, and the simulated time it last ran
+    long nextStep;
+    double lastTime;
+
+    private long runCount;
+    private long totalNanos, maxNanos;
+    private double estimatedNanos;
+
+    ScheduledController(MovementController controller, int interval, long nextStep, double lastTime) {
+        this.controller = controller;
+        this.parallel = controller instanceof ParallelController;
+        this.nextStep = nextStep;
+        this.lastTime = lastTime;
+        setInterval(interval);
+    }
+
+    void record(long nanos) {
+        runCount++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        estimatedNanos = runCount == 1 ? nanos : estimatedNanos + (nanos - estimatedNanos) * ESTIMATE_WEIGHT;
+    }
+
+    /**
+     * Access the scheduled MovementController.
+     * 
+     * @return the MovementController.
+     */
+    public MovementController getController() {
+        return controller;
+    }
+
+    /**
+     * Check whether the controller's think phase can run in parallel.
+     * 
+     * @return true if the controller is a ParallelController.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Get the number of steps between runs of the controller.
+     * 
+     * @return the interval, in steps.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Set the number of steps between runs of the controller. A controller with an
+     * interval of 1 runs every step. This method throws an
+     * IllegalArgumentException if the given interval is less than 1.
+     * 
+     * @param interval the new interval, in steps.
+     */
+    public void setInterval(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be at least 1");
+        }
+
+        this.interval = interval;
+    }
+
+    /**
+     * Get the number of times the controller has run.
+     * 
+     * @return the run count.
+     */
+    public long getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Get the total time the controller has taken.
+     * 
+     * @return the total time, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Get the longest time a single run of the controller has taken.
+     * 
+     * @return the longest time, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Get the average time a run of the controller takes.
+     * 
+     * @return the average time, in nanoseconds.
+     */
+    public double getAverageNanos() {
+        return runCount == 0 ? 0 : (double) totalNanos / runCount;
+    }
+
+    /**
+     * Get the expected time of the controller's next run, which follows its recent
+     * runs more than its older ones. The scheduler uses this to decide how many
+     * controllers fit in a step's budget.
+     * 
+     * @return the expected time, in nanoseconds.
+     */
+    public double getEstimatedNanos() {
+        return estimatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: every %d steps, %d runs, avg %.1f us, max %.1f us, total %.1f ms", controller,
+                interval, runCount, getAverageNanos() / 1000, maxNanos / 1000.0, totalNanos / 1000000.0);
+    }
+}
@@ -0,0 +1,71 @@
+package action.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A BufferPool hands out direct ByteBuffers of a fixed size and takes them back
+ * when they are no longer needed, so that connections coming and going do not
+ * allocate direct memory, which is slow to allocate and to free. A BufferPool is
+ * not thread safe, and is meant to be used by a single event loop.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+    /**
+     * Initialize a new, empty BufferPool.
+     * 
+     * @param bufferSize the size of each ByteBuffer, in bytes.
+     * @param maxPooled  the highest number of free ByteBuffers kept for reuse.
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize < 1 || maxPooled < 0) {
+            throw new IllegalArgumentException("bufferSize must be positive and maxPooled must not be negative");
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Take a cleared ByteBuffer from the pool, or allocate a new one if the pool
+     * is empty.
+     * 
+     * @return a cleared ByteBuffer.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSize) : buffer.clear();
+    }
+
+    /**
+     * Give a ByteBuffer back to the pool.
+     * 
+     * @param buffer the ByteBuffer, which must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize && buffers.size() < maxPooled)
+            buffers.push(buffer);
+    }
+
+    /**
+     * Get the size of each ByteBuffer.
+     * 
+     * @return the buffer size, in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get the number of free ByteBuffers in the pool.
+     * 
+     * @return the number of pooled ByteBuffers.
+     */
+    public int getPooledCount() {
+        return buffers.size();
+    }
+}
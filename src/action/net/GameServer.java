@@ -0,0 +1,582 @@
+package action.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import action.level.LevelReader;
+import action.physics.FixedTimestep;
+import action.physics.PhysicsWorld;
+import action.physics.PlayerInput;
+import action.physics.Simulation;
+
+/**
+ * A GameServer runs a Simulation authoritatively for any number of clients
+ * connected over TCP. Each client gets a body of its own, which the server
+ * moves with the PlayerInput the client sends, and every tick the server sends
+ * the state of every body to every client.
+ * 
+ * Everything happens on a single thread, in an event loop around a Selector.
+ * Connections are non-blocking, and each one reads into and writes from direct
+ * ByteBuffers taken from a BufferPool. Each tick the state is encoded once, as
+ * a delta from the previous tick, and the same bytes are copied to every
+ * client. A client whose write buffer cannot take a tick is skipped until it
+ * has caught up, and is then sent a full state, so a slow client never holds up
+ * the others. When the world grows so large that a full state no longer fits in
+ * an empty write buffer, the buffer is replaced with a larger one, and so is
+ * the size of the buffers given to clients that connect later.
+ * 
+ * Between ticks, the Simulation advances by the length of a tick, which runs as
+ * many steps as its FixedTimestep allows, so the tick rate can be lower than
+ * the step rate.
+ * 
+ * @see NetProtocol
+ */
+public class GameServer implements AutoCloseable {
+    public static final double DEFAULT_TICK_RATE = 30;
+    public static final double DEFAULT_SPEED = 500;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int MAX_POOLED = 1024;
+
+    // The longest a tick can fall behind before the missed ticks are dropped
+    private static final int MAX_MISSED_TICKS = 5;
+
+    private final Simulation simulation;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+
+    private final BufferPool readPool = new BufferPool(READ_BUFFER_SIZE, MAX_POOLED);
+    private BufferPool writePool;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final StateEncoder encoder = new StateEncoder();
+
+    // The STATE messages of the current tick, encoded once for every client
+    private ByteBuffer deltaMessage, fullMessage;
+    private boolean fullEncoded;
+
+    private double tickRate = DEFAULT_TICK_RATE;
+    private double speed = DEFAULT_SPEED;
+    private ToIntFunction<PhysicsWorld> spawner = world -> world.add(0, 0, 20, 0, 5, 1);
+
+    private int tick;
+    private int lastTickBytes;
+    private long lastTickNanos;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * A connected client and the state of its connection.
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer;
+        ByteBuffer writeBuffer;
+        final int bodyId;
+
+        SelectionKey key;
+        int input;
+        boolean needsFull = true;
+
+        Connection(SocketChannel channel, ByteBuffer readBuffer, ByteBuffer writeBuffer, int bodyId) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+            this.writeBuffer = writeBuffer;
+            this.bodyId = bodyId;
+        }
+    }
+
+    /**
+     * Initialize a new GameServer for the given Simulation, listening on the given
+     * address. The server does not accept connections until it is run.
+     * 
+     * @param simulation the Simulation to run.
+     * @param address    the address to listen on, with a port of 0 for any free
+     *                   port.
+     * @param bufferSize the starting size of each client's write buffer, which
+     *                   grows if it cannot hold a full state of the world.
+     * @throws IOException if the address cannot be bound.
+     */
+    public GameServer(Simulation simulation, InetSocketAddress address, int bufferSize) throws IOException {
+        this.simulation = simulation;
+        writePool = new BufferPool(bufferSize, MAX_POOLED);
+        deltaMessage = ByteBuffer.allocateDirect(bufferSize);
+        fullMessage = ByteBuffer.allocateDirect(bufferSize);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address, 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        simulation.addStepListener(this::applyInput);
+    }
+
+    /**
+     * Run the server on a new thread.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "server");
+        thread.start();
+    }
+
+    /**
+     * Run the event loop on the current thread until close is called.
+     */
+    public void run() {
+        running = true;
+
+        long tickNanos = (long) (1000000000 / tickRate);
+        long nextTick = System.nanoTime() + tickNanos;
+
+        try {
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+
+                if (wait > 1000000)
+                    selector.select(wait / 1000000);
+                else
+                    selector.selectNow();
+
+                handleSelected();
+
+                long now = System.nanoTime();
+
+                if (now >= nextTick) {
+                    tick(now);
+
+                    tickNanos = (long) (1000000000 / tickRate);
+                    nextTick += tickNanos;
+
+                    if (now - nextTick > tickNanos * MAX_MISSED_TICKS)
+                        nextTick = now + tickNanos;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("the server stopped", e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    /**
+     * Stop the server and close every connection.
+     * 
+     * @throws IOException if the listening socket cannot be closed.
+     */
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void handleSelected() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            if (!key.isValid())
+                continue;
+
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+
+            Connection connection = (Connection) key.attachment();
+
+            try {
+                if (key.isReadable())
+                    read(connection);
+
+                if (key.isValid() && key.isWritable())
+                    flush(connection);
+            } catch (IOException | RuntimeException e) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            int bodyId = spawner.applyAsInt(simulation.getWorld());
+            Connection connection = new Connection(channel, readPool.acquire(), writePool.acquire(), bodyId);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+
+            ByteBuffer buffer = connection.writeBuffer;
+            buffer.putInt(1 + 4 + 4 + 8 + 8);
+            buffer.put(NetProtocol.WELCOME);
+            buffer.putInt(NetProtocol.VERSION);
+            buffer.putInt(bodyId);
+            buffer.putDouble(tickRate);
+            buffer.putDouble(NetProtocol.POSITION_QUANTUM);
+
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+
+        if (connection.channel.read(buffer) < 0) {
+            disconnect(connection);
+            return;
+        }
+
+        buffer.flip();
+
+        while (buffer.remaining() >= NetProtocol.FRAME_HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+
+            if (length < 1 || length > buffer.capacity() - 4)
+                throw new IOException("bad frame length " + length);
+
+            if (buffer.remaining() < 4 + length)
+                break;
+
+            int end = buffer.position() + 4 + length;
+            buffer.getInt();
+            byte type = buffer.get();
+
+            if (type == NetProtocol.INPUT) {
+                buffer.getInt();
+                connection.input = buffer.get() & PlayerInput.ALL;
+            } else if (type == NetProtocol.PING) {
+                long time = buffer.getLong();
+                ByteBuffer out = connection.writeBuffer;
+
+                if (out.remaining() >= NetProtocol.PING_SIZE) {
+                    out.putInt(9);
+                    out.put(NetProtocol.PONG);
+                    out.putLong(time);
+                }
+            } else {
+                throw new IOException("unknown message type " + type);
+            }
+
+            buffer.position(end);
+        }
+
+        buffer.compact();
+        flush(connection);
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.writeBuffer;
+
+        buffer.flip();
+        connection.channel.write(buffer);
+        buffer.compact();
+
+        // Only ask to be told when the socket can take more if there is more
+        int ops = buffer.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+
+        if (connection.key.interestOps() != ops)
+            connection.key.interestOps(ops);
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connections.remove(connection))
+            return;
+
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+
+        PhysicsWorld world = simulation.getWorld();
+
+        if (world.isAlive(connection.bodyId))
+            world.remove(connection.bodyId);
+
+        readPool.release(connection.readBuffer);
+        writePool.release(connection.writeBuffer);
+    }
+
+    private void applyInput(double deltaTime) {
+        PhysicsWorld world = simulation.getWorld();
+
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+
+            if (connection.input != 0)
+                PlayerInput.apply(world, connection.bodyId, connection.input, speed, deltaTime);
+        }
+    }
+
+    private void tick(long start) {
+        simulation.advance(1 / tickRate);
+        tick++;
+
+        encoder.capture(simulation.getWorld());
+        deltaMessage = encodeState(deltaMessage, false);
+        fullEncoded = false;
+
+        int tickMicros = (int) ((System.nanoTime() - start) / 1000);
+        deltaMessage.putInt(NetProtocol.FRAME_HEADER_SIZE + 5, tickMicros);
+
+        int bytes = 0;
+
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+            ByteBuffer message = deltaMessage;
+
+            if (connection.needsFull) {
+                if (!fullEncoded) {
+                    fullMessage = encodeState(fullMessage, true);
+                    fullMessage.putInt(NetProtocol.FRAME_HEADER_SIZE + 5, tickMicros);
+                    fullEncoded = true;
+                }
+
+                message = fullMessage;
+            }
+
+            if (message.remaining() > connection.writeBuffer.capacity())
+                growWriteBuffer(connection, message.remaining());
+
+            // A client that cannot take the whole tick skips it, and is sent a full
+            // state once it can
+            if (connection.writeBuffer.remaining() < message.remaining()) {
+                connection.needsFull = true;
+                continue;
+            }
+
+            connection.writeBuffer.put(message.duplicate());
+            connection.needsFull = false;
+            bytes += message.remaining();
+
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                disconnect(connection);
+                i--;
+            }
+        }
+
+        lastTickBytes = bytes;
+        lastTickNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Give a connection a write buffer with room for a message of the given size
+     * and the delta after it, keeping whatever it has not sent yet. The pool is
+     * replaced with one of the new size, so later connections start with room for
+     * the whole world.
+     */
+    private void growWriteBuffer(Connection connection, int messageSize) {
+        long capacity = writePool.getBufferSize();
+
+        while (capacity < 2L * messageSize) {
+            capacity *= 2;
+        }
+
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("a full state of " + messageSize + " bytes is too large to send");
+        }
+
+        if (capacity != writePool.getBufferSize())
+            writePool = new BufferPool((int) capacity, MAX_POOLED);
+
+        ByteBuffer old = connection.writeBuffer;
+        ByteBuffer grown = writePool.acquire();
+
+        old.flip();
+        grown.put(old);
+        connection.writeBuffer = grown;
+    }
+
+    /**
+     * Encode a STATE message for the current tick into the given ByteBuffer,
+     * growing it if the state does not fit, and leave it ready to be read.
+     */
+    private ByteBuffer encodeState(ByteBuffer buffer, boolean full) {
+        while (true) {
+            buffer.clear();
+
+            try {
+                buffer.putInt(0);
+                buffer.put(NetProtocol.STATE);
+                buffer.putInt(tick);
+                buffer.put((byte) (full ? 1 : 0));
+                buffer.putInt(0);
+
+                if (full)
+                    encoder.writeFull(buffer);
+                else
+                    encoder.writeDelta(buffer);
+
+                buffer.putInt(0, buffer.position() - 4);
+                buffer.flip();
+
+                return buffer;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Get the number of connected clients.
+     * 
+     * @return the client count.
+     */
+    public int getClientCount() {
+        return connections.size();
+    }
+
+    /**
+     * Get the port the server listens on.
+     * 
+     * @return the port.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of ticks run so far.
+     * 
+     * @return the tick count.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Get the number of bytes sent to all clients in the last tick.
+     * 
+     * @return the bytes sent in the last tick.
+     */
+    public int getLastTickBytes() {
+        return lastTickBytes;
+    }
+
+    /**
+     * Get the time the last tick took to simulate, encode and send.
+     * 
+     * @return the time, in nanoseconds.
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * Get the number of ticks per second.
+     * 
+     * @return the tick rate.
+     */
+    public double getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * Set the number of ticks per second. This method throws an
+     * IllegalArgumentException if the given rate is not a positive finite number.
+     * 
+     * @param tickRate the new tick rate.
+     */
+    public void setTickRate(double tickRate) {
+        if (!(tickRate > 0) || Double.isInfinite(tickRate)) {
+            throw new IllegalArgumentException("tickRate must be a positive finite number");
+        }
+
+        this.tickRate = tickRate;
+    }
+
+    /**
+     * Get the speed at which clients' input moves their bodies.
+     * 
+     * @return the speed, in pixels per second squared.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Set the speed at which clients' input moves their bodies.
+     * 
+     * @param speed the new speed, in pixels per second squared.
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Update the function that adds a body to the PhysicsWorld for each client
+     * that connects, and returns its id. The body is removed when the client
+     * disconnects.
+     * 
+     * @param spawner the new spawning function.
+     */
+    public void setSpawner(ToIntFunction<PhysicsWorld> spawner) {
+        if (spawner == null) {
+            throw new IllegalArgumentException("spawner must not be null");
+        }
+
+        this.spawner = spawner;
+    }
+
+    /**
+     * Run a headless server. The arguments are the port to listen on, the tick
+     * rate, and the path of a level file to load, all optional.
+     * 
+     * @param args the command line arguments.
+     * @throws IOException if the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+
+        Simulation simulation = new Simulation();
+        simulation.setTimestep(new FixedTimestep(120, 8));
+
+        if (args.length > 2)
+            LevelReader.load(Paths.get(args[2]), simulation.getWorld());
+
+        try (GameServer server = new GameServer(simulation, new InetSocketAddress(port), DEFAULT_BUFFER_SIZE)) {
+            if (args.length > 1)
+                server.setTickRate(Double.parseDouble(args[1]));
+
+            System.out.println("Listening on port " + server.getPort());
+            server.run();
+        }
+    }
+}
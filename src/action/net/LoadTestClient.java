@@ -0,0 +1,238 @@
+package action.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import action.physics.PlayerInput;
+import action.physics.RollingHistogram;
+
+/**
+ * A LoadTestClient opens many connections to a GameServer from a single thread,
+ * sends random input on each, and measures what the server sends back. It
+ * reports the bytes received per client per tick, the round trip time of PING
+ * messages, the time between consecutive ticks, and the time the server spends
+ * on each tick. Run it with
+ * 
+ * java action.net.LoadTestClient &lt;host&gt; &lt;port&gt; &lt;clients&gt;
+ * &lt;seconds&gt;
+ */
+public class LoadTestClient implements AutoCloseable {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int HISTOGRAM_SIZE = 1 << 16;
+
+    private static final long INPUT_INTERVAL = 100000000;
+    private static final long PING_INTERVAL = 1000000000;
+
+    private final Selector selector;
+    private final List<Client> clients = new ArrayList<>();
+    private final Random random = new Random();
+
+    private final RollingHistogram roundTrip = new RollingHistogram(HISTOGRAM_SIZE);
+    private final RollingHistogram tickInterval = new RollingHistogram(HISTOGRAM_SIZE);
+    private final RollingHistogram serverTick = new RollingHistogram(HISTOGRAM_SIZE);
+
+    private long states, stateBytes;
+
+    /**
+     * One simulated client and the state of its connection.
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1024);
+        final StateDecoder decoder = new StateDecoder();
+
+        int bodyId = -1;
+        int lastTick;
+        long lastStateTime;
+        long nextInput, nextPing;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Initialize a new LoadTestClient and connect the given number of clients to
+     * a GameServer.
+     * 
+     * @param address the address of the GameServer.
+     * @param count   the number of clients to connect.
+     * @throws IOException if a client cannot connect.
+     */
+    public LoadTestClient(InetSocketAddress address, int count) throws IOException {
+        selector = Selector.open();
+
+        for (int i = 0; i < count; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Client client = new Client(channel);
+            channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+        }
+    }
+
+    /**
+     * Run the clients for the given time.
+     * 
+     * @param seconds how long to run, in seconds.
+     * @throws IOException if a connection fails.
+     */
+    public void run(double seconds) throws IOException {
+        long end = System.nanoTime() + (long) (seconds * 1000000000);
+
+        while (System.nanoTime() < end) {
+            selector.select(1);
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (key.isValid() && key.isReadable())
+                    read((Client) key.attachment());
+            }
+
+            long now = System.nanoTime();
+
+            for (Client client : clients) {
+                send(client, now);
+            }
+        }
+    }
+
+    /**
+     * Close every connection.
+     * 
+     * @throws IOException if the Selector cannot be closed.
+     */
+    public void close() throws IOException {
+        for (Client client : clients) {
+            client.channel.close();
+        }
+
+        selector.close();
+    }
+
+    private void read(Client client) throws IOException {
+        ByteBuffer buffer = client.readBuffer;
+
+        if (client.channel.read(buffer) < 0)
+            throw new IOException("the server closed the connection");
+
+        buffer.flip();
+
+        while (buffer.remaining() >= NetProtocol.FRAME_HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+
+            if (length < 1 || length > buffer.capacity() - 4)
+                throw new IOException("frame of " + length + " bytes does not fit in the read buffer");
+
+            if (buffer.remaining() < 4 + length)
+                break;
+
+            int end = buffer.position() + 4 + length;
+            buffer.getInt();
+            byte type = buffer.get();
+            long now = System.nanoTime();
+
+            if (type == NetProtocol.WELCOME) {
+                buffer.getInt();
+                client.bodyId = buffer.getInt();
+            } else if (type == NetProtocol.STATE) {
+                client.lastTick = buffer.getInt();
+                boolean full = buffer.get() != 0;
+                serverTick.record(buffer.getInt());
+                client.decoder.apply(buffer, full);
+
+                if (client.lastStateTime != 0)
+                    tickInterval.record(now - client.lastStateTime);
+
+                client.lastStateTime = now;
+                states++;
+                stateBytes += 4 + length;
+            } else if (type == NetProtocol.PONG) {
+                roundTrip.record(now - buffer.getLong());
+            }
+
+            buffer.position(end);
+        }
+
+        buffer.compact();
+    }
+
+    private void send(Client client, long now) throws IOException {
+        ByteBuffer buffer = client.writeBuffer;
+
+        if (now >= client.nextInput) {
+            buffer.putInt(6);
+            buffer.put(NetProtocol.INPUT);
+            buffer.putInt(client.lastTick);
+            buffer.put((byte) random.nextInt(PlayerInput.ALL + 1));
+            client.nextInput = now + INPUT_INTERVAL;
+        }
+
+        if (now >= client.nextPing) {
+            buffer.putInt(9);
+            buffer.put(NetProtocol.PING);
+            buffer.putLong(now);
+            client.nextPing = now + PING_INTERVAL;
+        }
+
+        if (buffer.position() == 0)
+            return;
+
+        buffer.flip();
+        client.channel.write(buffer);
+        buffer.compact();
+    }
+
+    /**
+     * Print a summary of the measurements.
+     */
+    public void report() {
+        int connected = 0;
+
+        for (Client client : clients) {
+            if (client.bodyId >= 0)
+                connected++;
+        }
+
+        System.out.println("clients:         " + connected + " of " + clients.size() + " welcomed");
+        System.out.println("states received: " + states);
+        System.out.printf("bytes per tick:  %.1f per client%n", states == 0 ? 0.0 : (double) stateBytes / states);
+        System.out.printf("round trip:      p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                roundTrip.getPercentile(50) / 1e6, roundTrip.getPercentile(99) / 1e6, roundTrip.getMax() / 1e6);
+        System.out.printf("tick interval:   p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                tickInterval.getPercentile(50) / 1e6, tickInterval.getPercentile(99) / 1e6,
+                tickInterval.getMax() / 1e6);
+        System.out.printf("server tick:     p50 %d us, p99 %d us, max %d us%n", serverTick.getPercentile(50),
+                serverTick.getPercentile(99), serverTick.getMax());
+
+        if (!clients.isEmpty())
+            System.out.println("bodies seen:     " + clients.get(0).decoder.getCount());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+
+        try (LoadTestClient client = new LoadTestClient(new InetSocketAddress(host, port), count)) {
+            client.run(seconds);
+            client.report();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package action.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The NetProtocol class describes the messages sent between a GameServer and
+ * its clients over TCP. Every message is a frame made of its length as an int,
+ * which counts the type and the payload, its type as a byte, and its payload.
+ * All values are in big endian byte order.
+ * 
+ * A client sends INPUT messages, holding the number of the last tick it has
+ * received as an int and its held directions as a byte of PlayerInput bits,
+ * and PING messages, holding a time of its own choosing as a long.
+ * 
+ * The server sends a WELCOME message when a client connects, holding the
+ * protocol version as an int, the id of the client's body as an int, the tick
+ * rate as a double and the position quantum as a double. It answers each PING
+ * with a PONG holding the same time. Every tick, it sends a STATE message.
+ * 
+ * A STATE message holds the tick number as an int, a byte that is 1 if the
+ * state is full and 0 if it is a delta from the previous tick, the time the
+ * server took to simulate and encode the tick in microseconds as an int, and
+ * the number of entries as a var int. Each entry holds the difference between
+ * its body id and the previous entry's id as a var int, then a byte of field
+ * bits, then for each field bit that is set, the difference between the new
+ * and old quantised value of the field as a zig-zag var int. An entry with the
+ * REMOVED bit set means the body no longer exists. A full state replaces
+ * everything the client knew, and its values are differences from 0.
+ * 
+ * Positions and radii are quantised to multiples of POSITION_QUANTUM, so most
+ * bodies that moved take only a few bytes per field, and bodies that did not
+ * move are not sent at all.
+ */
+public final class NetProtocol {
+    public static final int VERSION = 1;
+
+    public static final int FRAME_HEADER_SIZE = 5;
+
+    // Client to server
+    public static final byte INPUT = 1;
+    public static final byte PING = 2;
+
+    // Server to client
+    public static final byte WELCOME = 16;
+    public static final byte STATE = 17;
+    public static final byte PONG = 18;
+
+    // The field bits of a STATE entry
+    public static final int FIELD_AX = 1;
+    public static final int FIELD_AY = 2;
+    public static final int FIELD_BX = 4;
+    public static final int FIELD_BY = 8;
+    public static final int FIELD_RADIUS = 16;
+    public static final int REMOVED = 32;
+
+    public static final double POSITION_QUANTUM = 1 / 16.0;
+
+    public static final int INPUT_SIZE = FRAME_HEADER_SIZE + 5;
+    public static final int PING_SIZE = FRAME_HEADER_SIZE + 8;
+
+    private NetProtocol() {
+    }
+
+    /**
+     * Quantise a position or radius.
+     * 
+     * @param value the value to quantise.
+     * @return the value as a whole number of quanta.
+     */
+    public static int quantise(double value) {
+        return (int) Math.round(value / POSITION_QUANTUM);
+    }
+
+    /**
+     * Turn a quantised position or radius back into a value.
+     * 
+     * @param quanta the value as a whole number of quanta.
+     * @return the value.
+     */
+    public static double dequantise(int quanta) {
+        return quanta * POSITION_QUANTUM;
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get() & 0xff;
+            value |= (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IllegalArgumentException("malformed var int");
+    }
+
+    static void putZigZag(ByteBuffer buffer, int value) {
+        putVarInt(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static int getZigZag(ByteBuffer buffer) {
+        int value = getVarInt(buffer);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
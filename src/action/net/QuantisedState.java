@@ -0,0 +1,38 @@
+package action.net;
+
+import java.util.Arrays;
+
+/**
+ * The quantised positions and radii of every body in a PhysicsWorld, in columns
+ * indexed by body id, as sent over the network.
+ */
+class QuantisedState {
+    int rows;
+    boolean[] alive = new boolean[16];
+    int[] ax = new int[16], ay = new int[16], bx = new int[16], by = new int[16];
+    int[] radius = new int[16];
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= alive.length)
+            return;
+
+        capacity = Math.max(capacity, alive.length * 2);
+
+        alive = Arrays.copyOf(alive, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        bx = Arrays.copyOf(bx, capacity);
+        by = Arrays.copyOf(by, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+    }
+
+    void clear() {
+        Arrays.fill(alive, 0, rows, false);
+        Arrays.fill(ax, 0, rows, 0);
+        Arrays.fill(ay, 0, rows, 0);
+        Arrays.fill(bx, 0, rows, 0);
+        Arrays.fill(by, 0, rows, 0);
+        Arrays.fill(radius, 0, rows, 0);
+        rows = 0;
+    }
+}
@@ -0,0 +1,145 @@
+package action.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A StateDecoder keeps a client's copy of the bodies on the server, by applying
+ * the entries of each STATE message it receives.
+ * 
+ * @see NetProtocol
+ */
+public class StateDecoder {
+    private final QuantisedState state = new QuantisedState();
+    private int count;
+
+    /**
+     * Apply the entries of a STATE message, starting at the entry count.
+     * 
+     * @param buffer the ByteBuffer holding the entries.
+     * @param full   true if the entries are a full state.
+     */
+    public void apply(ByteBuffer buffer, boolean full) {
+        if (full) {
+            state.clear();
+            count = 0;
+        }
+
+        int entries = NetProtocol.getVarInt(buffer);
+        int id = 0;
+
+        for (int i = 0; i < entries; i++) {
+            id += NetProtocol.getVarInt(buffer);
+            int fields = buffer.get();
+
+            state.ensureCapacity(id + 1);
+            state.rows = Math.max(state.rows, id + 1);
+
+            if ((fields & NetProtocol.REMOVED) != 0) {
+                if (state.alive[id])
+                    count--;
+
+                state.alive[id] = false;
+                continue;
+            }
+
+            if (!state.alive[id]) {
+                state.alive[id] = true;
+                state.ax[id] = 0;
+                state.ay[id] = 0;
+                state.bx[id] = 0;
+                state.by[id] = 0;
+                state.radius[id] = 0;
+                count++;
+            }
+
+            if ((fields & NetProtocol.FIELD_AX) != 0)
+                state.ax[id] += NetProtocol.getZigZag(buffer);
+            if ((fields & NetProtocol.FIELD_AY) != 0)
+                state.ay[id] += NetProtocol.getZigZag(buffer);
+            if ((fields & NetProtocol.FIELD_BX) != 0)
+                state.bx[id] += NetProtocol.getZigZag(buffer);
+            if ((fields & NetProtocol.FIELD_BY) != 0)
+                state.by[id] += NetProtocol.getZigZag(buffer);
+            if ((fields & NetProtocol.FIELD_RADIUS) != 0)
+                state.radius[id] += NetProtocol.getZigZag(buffer);
+        }
+    }
+
+    /**
+     * Check whether the given id refers to a body.
+     * 
+     * @param id the id to check.
+     * @return true if the id refers to a body.
+     */
+    public boolean isAlive(int id) {
+        return id >= 0 && id < state.rows && state.alive[id];
+    }
+
+    /**
+     * Get the number of bodies.
+     * 
+     * @return the number of bodies.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get one more than the highest id received.
+     * 
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return state.rows;
+    }
+
+    /**
+     * Get the x coordinate of a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the x coordinate.
+     */
+    public double getAX(int id) {
+        return NetProtocol.dequantise(state.ax[id]);
+    }
+
+    /**
+     * Get the y coordinate of a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the y coordinate.
+     */
+    public double getAY(int id) {
+        return NetProtocol.dequantise(state.ay[id]);
+    }
+
+    /**
+     * Get the x coordinate of a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the x coordinate.
+     */
+    public double getBX(int id) {
+        return NetProtocol.dequantise(state.bx[id]);
+    }
+
+    /**
+     * Get the y coordinate of a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the y coordinate.
+     */
+    public double getBY(int id) {
+        return NetProtocol.dequantise(state.by[id]);
+    }
+
+    /**
+     * Get a body's radius.
+     * 
+     * @param id the id of the body.
+     * @return the radius.
+     */
+    public double getRadius(int id) {
+        return NetProtocol.dequantise(state.radius[id]);
+    }
+}
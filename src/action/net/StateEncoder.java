@@ -0,0 +1,147 @@
+package action.net;
+
+import java.nio.ByteBuffer;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * A StateEncoder turns the state of a PhysicsWorld into STATE message entries,
+ * either in full or as the difference from the state captured before. Each
+ * tick, the state is captured once and the same encoded delta is sent to every
+ * client that received the previous tick.
+ * 
+ * @see NetProtocol
+ */
+public class StateEncoder {
+    private QuantisedState previous = new QuantisedState();
+    private QuantisedState current = new QuantisedState();
+
+    /**
+     * Capture the current state of a PhysicsWorld. The state captured before
+     * becomes the base of the next delta.
+     * 
+     * @param world the PhysicsWorld to capture.
+     */
+    public void capture(PhysicsWorld world) {
+        QuantisedState state = previous;
+        previous = current;
+        current = state;
+
+        int rows = world.getRows();
+        state.ensureCapacity(rows);
+
+        for (int id = 0; id < rows; id++) {
+            boolean alive = world.isAlive(id);
+            state.alive[id] = alive;
+
+            if (!alive)
+                continue;
+
+            state.ax[id] = NetProtocol.quantise(world.getAX(id));
+            state.ay[id] = NetProtocol.quantise(world.getAY(id));
+            state.bx[id] = NetProtocol.quantise(world.getBX(id));
+            state.by[id] = NetProtocol.quantise(world.getBY(id));
+            state.radius[id] = NetProtocol.quantise(world.getRadius(id));
+        }
+
+        // Rows beyond the world's are dead
+        for (int id = rows; id < state.rows; id++) {
+            state.alive[id] = false;
+        }
+
+        state.rows = rows;
+    }
+
+    /**
+     * Write the entries of the captured state as a delta from the state captured
+     * before it.
+     * 
+     * @param buffer the ByteBuffer to write to.
+     * @return the number of entries written.
+     */
+    public int writeDelta(ByteBuffer buffer) {
+        return write(buffer, previous, false);
+    }
+
+    /**
+     * Write the entries of the captured state in full.
+     * 
+     * @param buffer the ByteBuffer to write to.
+     * @return the number of entries written.
+     */
+    public int writeFull(ByteBuffer buffer) {
+        return write(buffer, previous, true);
+    }
+
+    /**
+     * Write the STATE message entries, preceded by their count. The count is
+     * written as a fixed five byte var int so that it can be filled in after the
+     * entries.
+     */
+    private int write(ByteBuffer buffer, QuantisedState base, boolean full) {
+        int countPosition = buffer.position();
+        buffer.position(countPosition + 5);
+
+        int count = 0;
+        int lastId = 0;
+        int rows = Math.max(current.rows, full ? 0 : base.rows);
+
+        for (int id = 0; id < rows; id++) {
+            boolean alive = id < current.rows && current.alive[id];
+            boolean wasAlive = !full && id < base.rows && base.alive[id];
+
+            if (!alive && !wasAlive)
+                continue;
+
+            int fields = 0;
+            int ax = 0, ay = 0, bx = 0, by = 0, radius = 0;
+
+            if (!alive) {
+                fields = NetProtocol.REMOVED;
+            } else {
+                if (wasAlive) {
+                    ax = base.ax[id];
+                    ay = base.ay[id];
+                    bx = base.bx[id];
+                    by = base.by[id];
+                    radius = base.radius[id];
+                }
+
+                fields |= current.ax[id] != ax ? NetProtocol.FIELD_AX : 0;
+                fields |= current.ay[id] != ay ? NetProtocol.FIELD_AY : 0;
+                fields |= current.bx[id] != bx ? NetProtocol.FIELD_BX : 0;
+                fields |= current.by[id] != by ? NetProtocol.FIELD_BY : 0;
+                fields |= current.radius[id] != radius ? NetProtocol.FIELD_RADIUS : 0;
+
+                // An unchanged body is left out, but a new one must always be sent
+                if (fields == 0 && wasAlive)
+                    continue;
+            }
+
+            NetProtocol.putVarInt(buffer, id - lastId);
+            buffer.put((byte) fields);
+            lastId = id;
+            count++;
+
+            if ((fields & NetProtocol.FIELD_AX) != 0)
+                NetProtocol.putZigZag(buffer, current.ax[id] - ax);
+            if ((fields & NetProtocol.FIELD_AY) != 0)
+                NetProtocol.putZigZag(buffer, current.ay[id] - ay);
+            if ((fields & NetProtocol.FIELD_BX) != 0)
+                NetProtocol.putZigZag(buffer, current.bx[id] - bx);
+            if ((fields & NetProtocol.FIELD_BY) != 0)
+                NetProtocol.putZigZag(buffer, current.by[id] - by);
+            if ((fields & NetProtocol.FIELD_RADIUS) != 0)
+                NetProtocol.putZigZag(buffer, current.radius[id] - radius);
+        }
+
+        // Fill in the count as a var int padded to five bytes
+        for (int i = 0; i < 4; i++) {
+            buffer.put(countPosition + i, (byte) (((count >>> (7 * i)) & 0x7f) | 0x80));
+        }
+
+        buffer.put(countPosition + 4, (byte) (count >>> 28));
+
+        return count;
+    }
+}
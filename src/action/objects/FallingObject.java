@@ -9,8 +9,6 @@ import javafx.geometry.Point2D;
  * objects.
  */
 public class FallingObject extends FloatingObject {
-    private Point2D acceleration;
-
     /**
      * Initialize a new FallingObject with the given endpoints, radius, and mass.
      * 
@@ -23,27 +21,13 @@ public class FallingObject extends FloatingObject {
         super(a, b, radius, mass);
     }
 
-    /**
-     * Adjust the current velocity by this FallingObject's acceleration, then move
-     * the object by its current velocity multiplied by the given amount of time in
-     * seconds.
-     * 
-     * @param deltaTime the amount of time by which to move the object, given in
-     *                  seconds.
-     */
-    @Override
-    public void applyVelocity(double deltaTime) {
-        setVelocity(getVelocity().add(acceleration.multiply(deltaTime)));
-        super.applyVelocity(deltaTime);
-    }
-
     /**
      * Access the current acceleration value.
      * 
      * @return the current acceleration.
      */
     public Point2D getAcceleration() {
-        return acceleration;
+        return new Point2D(getAccelerationX(), getAccelerationY());
     }
 
     /**
@@ -52,6 +36,6 @@ public class FallingObject extends FloatingObject {
      * @param acceleration the new acceleration value.
      */
     public void setAcceleration(Point2D acceleration) {
-        this.acceleration = acceleration;
+        setAcceleration(acceleration.getX(), acceleration.getY());
     }
 }
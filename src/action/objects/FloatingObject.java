@@ -2,7 +2,9 @@ package action.objects;
 
 import java.util.Collection;
 
-import action.geometry.LineSegment2D;
+import action.collision.ContactResult;
+import action.collision.Narrowphase;
+import action.physics.PhysicsWorld;
 import javafx.geometry.Point2D;
 
 /**
@@ -12,6 +14,10 @@ import javafx.geometry.Point2D;
  * very heavy object.
  */
 public class FloatingObject extends GameObject {
+    // The contact found by resolveCollision for a detached FloatingObject, one
+    // for each thread so that none is allocated per collision
+    private static final ThreadLocal<ContactResult> CONTACT = ThreadLocal.withInitial(ContactResult::new);
+
     /**
      * Initialize a new FloatingObject with the given endpoints, radius, and mass.
      * 
@@ -26,59 +32,67 @@ public class FloatingObject extends GameObject {
 
     public void resolveCollisions(Collection<GameObject> gameObjects) {
         for (GameObject other : gameObjects) {
-            if (other == this || other == null)
-                continue;
-
-            // Get the shortest line between the two game objects in the interaction
-            LineSegment2D shortestLine = getShortestLine(other);
-
-            // If they are not touching, do nothing
-            if (shortestLine.getLength() > getRadius() + other.getRadius())
-                continue;
-
-            // Compute the direction of force between the two interacting objects
-            Point2D forceDirection = shortestLine.getDirection();
-
-            // Compute the reletive speed of the two interacting objects in the direction
-            // of the collision
-            double relativeSpeed = getVelocity().subtract(other.getVelocity()).dotProduct(forceDirection);
-
-            // If the objects are moving apart already, do not apply any collision forces
-            if (relativeSpeed <= 0)
-                continue;
-
-            double thisMass = getMass();
-            double otherMass = other.getMass();
-
-            // Adjust to avoid errors if an object has infinite mass
-            if (thisMass == otherMass) {
-                thisMass = 1;
-                otherMass = 1;
-            } else if (thisMass == Double.POSITIVE_INFINITY) {
-                thisMass = 1;
-                otherMass = 0;
-            } else if (otherMass == Double.POSITIVE_INFINITY) {
-                thisMass = 0;
-                otherMass = 1;
-            }
-
-            double inverseTotalMass = 1 / (thisMass + otherMass);
-
-            // u1 and u2 are the initial velocities in the direction of the applied force
-            Point2D u1 = forceDirection.multiply(getVelocity().dotProduct(forceDirection));
-            Point2D u2 = forceDirection.multiply(other.getVelocity().dotProduct(forceDirection));
-
-            // v1 and v2 are the final velocities in the direction of the applied force
-            Point2D v1 = u1.multiply((thisMass - otherMass) * inverseTotalMass)
-                    .add(u2.multiply(2 * otherMass * inverseTotalMass));
-
-            Point2D v2 = u2.multiply((otherMass - thisMass) * inverseTotalMass)
-                    .add(u1.multiply(2 * thisMass * inverseTotalMass));
-
-            // The actual final velocity can be found by subtracting the initial velocity in
-            // the direction of force and adding the final velocity in the same direction
-            setVelocity(getVelocity().subtract(u1).add(v1));
-            other.setVelocity(other.getVelocity().subtract(u2).add(v2));
+            resolveCollision(other);
+        }
+    }
+
+    public void resolveCollision(GameObject other) {
+        if (other == this || other == null)
+            return;
+
+        if (!isDetached() && !other.isDetached()) {
+            PhysicsWorld.resolveContact(getWorld(), getId(), other.getWorld(), other.getId());
+            return;
         }
+
+        // Otherwise resolve the collision the same way through the object API
+        ContactResult contact = CONTACT.get();
+
+        // If they are not touching, do nothing
+        if (!Narrowphase.touching(getAX(), getAY(), getBX(), getBY(), other.getAX(), other.getAY(), other.getBX(),
+                other.getBY(), getRadius() + other.getRadius(), contact))
+            return;
+
+        double normalX = contact.getNormalX();
+        double normalY = contact.getNormalY();
+
+        // u1 and u2 are the initial speeds in the direction of the applied force
+        double u1 = getVelocityX() * normalX + getVelocityY() * normalY;
+        double u2 = other.getVelocityX() * normalX + other.getVelocityY() * normalY;
+
+        // If the objects are moving apart already, do not apply any collision forces
+        if (u1 - u2 <= 0)
+            return;
+
+        double thisMass = getMass();
+        double otherMass = other.getMass();
+
+        // Adjust to avoid errors if an object has infinite mass
+        if (thisMass == otherMass) {
+            thisMass = 1;
+            otherMass = 1;
+        } else if (thisMass == Double.POSITIVE_INFINITY) {
+            thisMass = 1;
+            otherMass = 0;
+        } else if (otherMass == Double.POSITIVE_INFINITY) {
+            thisMass = 0;
+            otherMass = 1;
+        }
+
+        double inverseTotalMass = 1 / (thisMass + otherMass);
+
+        // v1 and v2 are the final speeds in the direction of the applied force
+        double v1 = u1 * ((thisMass - otherMass) * inverseTotalMass) + u2 * (2 * otherMass * inverseTotalMass);
+        double v2 = u2 * ((otherMass - thisMass) * inverseTotalMass) + u1 * (2 * thisMass * inverseTotalMass);
+
+        // Replace the initial speed in the direction of force with the final speed.
+        // An object with infinite mass keeps its speed anyway, so it is left
+        // untouched.
+        if (otherMass != 0)
+            setVelocity(getVelocityX() + (v1 - u1) * normalX, getVelocityY() + (v1 - u1) * normalY);
+
+        if (thisMass != 0)
+            other.setVelocity(other.getVelocityX() + (v2 - u2) * normalX,
+                    other.getVelocityY() + (v2 - u2) * normalY);
     }
 }
@@ -1,6 +1,9 @@
 package action.objects;
 
+import action.collision.ContactResult;
+import action.collision.Narrowphase;
 import action.geometry.LineSegment2D;
+import action.physics.PhysicsWorld;
 import java.util.Collection;
 
 import javafx.geometry.Point2D;
@@ -12,11 +15,28 @@ import javafx.scene.shape.StrokeLineCap;
  * line segments between two points with a radius of 0 or greater. The radius
  * defines a distance from the line segment that is considered part of the
  * shape.
+ * 
+ * Once it is in a PhysicsWorld, a GameObject is a view over one row of it, so
+ * the same body can be driven through this object API or through the
+ * PhysicsWorld's primitive columns. A new GameObject is detached, and keeps its
+ * state in a few fields of its own until it is moved into a PhysicsWorld with
+ * setWorld. Its state is copied back out of the PhysicsWorld by detach.
  */
 public abstract class GameObject extends LineSegment2D {
+    // The PhysicsWorld that holds this GameObject's state, or null if it is
+    // detached
+    private PhysicsWorld world;
+    private int id = -1;
+
+    // The state of this GameObject while it is detached
+    private double ax, ay, bx, by;
+    private double velocityX, velocityY;
+    private double accelerationX, accelerationY;
     private double radius, mass;
+    private boolean isStatic, continuous;
 
-    private Point2D velocity;
+    // The GameObjectPool this GameObject goes back to when it is despawned
+    GameObjectPool<?> pool;
 
     /**
      * Given the context of all other GameObjects in the scene, apply the
@@ -26,6 +46,14 @@ public abstract class GameObject extends LineSegment2D {
      */
     public abstract void resolveCollisions(Collection<GameObject> gameObjects);
 
+    /**
+     * Resolve a possible collision between this GameObject and one other
+     * GameObject, applying the appropriate acceleration to both of them.
+     * 
+     * @param gameObject the other GameObject in the interaction.
+     */
+    public abstract void resolveCollision(GameObject gameObject);
+
     /**
      * Initialize a new GameObject with the given endpoints, radius, and mass.
      * 
@@ -35,10 +63,187 @@ public abstract class GameObject extends LineSegment2D {
      * @param mass   the mass of the GameObject.
      */
     public GameObject(Point2D a, Point2D b, double radius, double mass) {
-        super(a, b);
-        setRadius(radius);
-        setMass(mass);
-        setVelocity(Point2D.ZERO);
+        reset(a.getX(), a.getY(), b.getX(), b.getY(), radius, mass);
+    }
+
+    /**
+     * Access the PhysicsWorld that holds this GameObject's state.
+     * 
+     * @return the PhysicsWorld, or null if this GameObject is detached.
+     */
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Move this GameObject's state into a PhysicsWorld. The state is copied into a
+     * new row of the given PhysicsWorld and removed from the PhysicsWorld that
+     * held it before, if there was one.
+     * 
+     * @param world the PhysicsWorld that will hold this GameObject's state, or
+     *              null to detach this GameObject.
+     */
+    public void setWorld(PhysicsWorld world) {
+        if (world == this.world)
+            return;
+
+        detach();
+
+        if (world == null)
+            return;
+
+        int newId = world.add(ax, ay, bx, by, radius, mass);
+        world.setVelocity(newId, velocityX, velocityY);
+        world.setAcceleration(newId, accelerationX, accelerationY);
+        world.setStatic(newId, isStatic);
+        world.setContinuous(newId, continuous);
+
+        this.world = world;
+        id = newId;
+    }
+
+    /**
+     * Copy this GameObject's state out of the PhysicsWorld that holds it, and
+     * remove its row from that PhysicsWorld. This never allocates. Nothing
+     * happens if this GameObject is already detached.
+     */
+    public void detach() {
+        if (world == null)
+            return;
+
+        ax = world.getAX(id);
+        ay = world.getAY(id);
+        bx = world.getBX(id);
+        by = world.getBY(id);
+        velocityX = world.getVelocityX(id);
+        velocityY = world.getVelocityY(id);
+        accelerationX = world.getAccelerationX(id);
+        accelerationY = world.getAccelerationY(id);
+        radius = world.getRadius(id);
+        mass = world.getMass(id);
+        isStatic = world.isStatic(id);
+        continuous = world.isContinuous(id);
+
+        world.remove(id);
+
+        world = null;
+        id = -1;
+    }
+
+    /**
+     * Check whether this GameObject keeps its own state, rather than being in a
+     * PhysicsWorld.
+     * 
+     * @return true if this GameObject is detached.
+     */
+    public boolean isDetached() {
+        return world == null;
+    }
+
+    /**
+     * Put this GameObject back into the state of a new one, with the given
+     * endpoints, radius, and mass, no velocity or acceleration, and no flags set.
+     * This is how a GameObjectPool recycles GameObjects. This method throws an
+     * IllegalArgumentException if the given radius is less than 0 or the given
+     * mass is 0 or less.
+     * 
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the radius of the GameObject.
+     * @param mass   the mass of the GameObject.
+     */
+    public void reset(double ax, double ay, double bx, double by, double radius, double mass) {
+        if (world != null) {
+            world.reset(id, ax, ay, bx, by, radius, mass);
+            return;
+        }
+
+        checkRadius(radius);
+        checkMass(mass);
+
+        this.ax = ax;
+        this.ay = ay;
+        this.bx = bx;
+        this.by = by;
+        velocityX = 0;
+        velocityY = 0;
+        accelerationX = 0;
+        accelerationY = 0;
+        this.radius = radius;
+        this.mass = mass;
+        isStatic = false;
+        continuous = false;
+    }
+
+    /**
+     * Get the id of the row that holds this GameObject's state in its
+     * PhysicsWorld.
+     * 
+     * @return the id of this GameObject's row, or -1 if this GameObject is
+     *         detached.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Check whether this GameObject is static level geometry.
+     * 
+     * @return true if this GameObject is static.
+     */
+    public boolean isStatic() {
+        return world != null ? world.isStatic(id) : isStatic;
+    }
+
+    /**
+     * Make this GameObject static level geometry, or make it dynamic again. Static
+     * GameObjects never move, and are only tested against the GameObjects that
+     * do. Only a GameObject with infinite mass can be static.
+     * 
+     * @param isStatic true to make this GameObject static.
+     */
+    public void setStatic(boolean isStatic) {
+        if (world != null) {
+            world.setStatic(id, isStatic);
+        } else if (isStatic != this.isStatic) {
+            if (isStatic) {
+                if (mass != Double.POSITIVE_INFINITY) {
+                    throw new IllegalArgumentException("a static body must have infinite mass");
+                }
+
+                velocityX = 0;
+                velocityY = 0;
+                accelerationX = 0;
+                accelerationY = 0;
+            }
+
+            this.isStatic = isStatic;
+        }
+    }
+
+    /**
+     * Check whether this GameObject always uses continuous collision detection.
+     * 
+     * @return true if this GameObject always uses continuous collision detection.
+     */
+    public boolean isContinuous() {
+        return world != null ? world.isContinuous(id) : continuous;
+    }
+
+    /**
+     * Set whether this GameObject always uses continuous collision detection. A
+     * continuous GameObject is stopped at the first thing in its path in each
+     * step, instead of passing through thin GameObjects when it moves fast.
+     * 
+     * @param continuous true to always use continuous collision detection.
+     */
+    public void setContinuous(boolean continuous) {
+        if (world != null)
+            world.setContinuous(id, continuous);
+        else
+            this.continuous = continuous;
     }
 
     /**
@@ -49,11 +254,31 @@ public abstract class GameObject extends LineSegment2D {
      * @param context the GraphicsContext to draw to.
      */
     public void draw(GraphicsContext context) {
+        draw(context, 1);
+    }
+
+    /**
+     * Draw the GameObject onto the given GraphicsContext at a position
+     * interpolated between its previous and current positions. A detached
+     * GameObject is drawn at its current position. The current stroke settings
+     * are used except for line width and line cap, which are set just for this
+     * draw call.
+     * 
+     * @param context the GraphicsContext to draw to.
+     * @param alpha   how far to go from the previous position, from 0 to 1.
+     */
+    public void draw(GraphicsContext context, double alpha) {
         context.save();
 
-        context.setLineWidth(radius * 2);
+        context.setLineWidth(getRadius() * 2);
         context.setLineCap(StrokeLineCap.ROUND);
-        context.strokeLine(getA().getX(), getA().getY(), getB().getX(), getB().getY());
+
+        if (world != null) {
+            context.strokeLine(world.getInterpolatedAX(id, alpha), world.getInterpolatedAY(id, alpha),
+                    world.getInterpolatedBX(id, alpha), world.getInterpolatedBY(id, alpha));
+        } else {
+            context.strokeLine(ax, ay, bx, by);
+        }
 
         context.restore();
     }
@@ -88,26 +313,11 @@ public abstract class GameObject extends LineSegment2D {
      * @return a shortest line segment that touches each GameObject.
      */
     public LineSegment2D getShortestLine(GameObject gameObject) {
-        LineSegment2D aToOther = new LineSegment2D(getA(), gameObject.getNearestPoint(getA()));
-        LineSegment2D bToOther = new LineSegment2D(getB(), gameObject.getNearestPoint(getB()));
-        LineSegment2D toOtherA = new LineSegment2D(getNearestPoint(gameObject.getA()), gameObject.getA());
-        LineSegment2D toOtherB = new LineSegment2D(getNearestPoint(gameObject.getB()), gameObject.getB());
-
-        LineSegment2D shortestLine = aToOther;
+        ContactResult result = new ContactResult();
+        closestPoints(gameObject, result);
 
-        if (bToOther.getLength() < shortestLine.getLength()) {
-            shortestLine = bToOther;
-        }
-
-        if (toOtherA.getLength() < shortestLine.getLength()) {
-            shortestLine = toOtherA;
-        }
-
-        if (toOtherB.getLength() < shortestLine.getLength()) {
-            shortestLine = toOtherB;
-        }
-
-        return shortestLine;
+        return new LineSegment2D(new Point2D(result.getFirstX(), result.getFirstY()),
+                new Point2D(result.getSecondX(), result.getSecondY()));
     }
 
     /**
@@ -118,30 +328,49 @@ public abstract class GameObject extends LineSegment2D {
      * @return the shortest distance between the point and this GameObject.
      */
     public double getShortestDistance(Point2D point) {
-        return getNearestPoint(point).distance(point) - radius;
+        return getNearestPoint(point).distance(point) - getRadius();
     }
 
     /**
-     * Evaluate the shortest distance between two non-crossed GameObjects. If the
-     * lines defined by the GameObjects intersect, the distance will not be
-     * accurate.
+     * Evaluate the shortest distance between two GameObjects. If the GameObjects
+     * overlap, the distance will be negative.
      * 
      * @param gameObject the GameObject to evaluate the distance to.
      * @return the shortest distance between the two GameObjects.
      */
     public double getShortestDistance(GameObject gameObject) {
-        return getShortestLine(gameObject).getLength() - radius - gameObject.radius;
+        ContactResult result = new ContactResult();
+        closestPoints(gameObject, result);
+
+        return result.getDistance() - getRadius() - gameObject.getRadius();
+    }
+
+    private void closestPoints(GameObject gameObject, ContactResult result) {
+        Narrowphase.closestPoints(getAX(), getAY(), getBX(), getBY(), gameObject.getAX(), gameObject.getAY(),
+                gameObject.getBX(), gameObject.getBY(), result);
     }
 
     /**
-     * Move the object by its current velocity multiplied by the given amount of
-     * time in seconds.
+     * Adjust the current velocity by this GameObject's acceleration, then move the
+     * object by its current velocity multiplied by the given amount of time in
+     * seconds.
      * 
      * @param deltaTime the amount of time by which to move the object, given in
      *                  seconds.
      */
     public void applyVelocity(double deltaTime) {
-        move(getVelocity().multiply(deltaTime));
+        if (world != null) {
+            world.integrate(id, deltaTime);
+            return;
+        }
+
+        if (isStatic)
+            return;
+
+        velocityX += accelerationX * deltaTime;
+        velocityY += accelerationY * deltaTime;
+
+        translate(velocityX * deltaTime, velocityY * deltaTime);
     }
 
     /**
@@ -150,8 +379,93 @@ public abstract class GameObject extends LineSegment2D {
      * @param offset the offset to add to both of this GameObject's endpoints.
      */
     public void move(Point2D offset) {
-        setA(getA().add(offset));
-        setB(getB().add(offset));
+        if (world != null)
+            world.translate(id, offset.getX(), offset.getY());
+        else
+            translate(offset.getX(), offset.getY());
+    }
+
+    private void translate(double dx, double dy) {
+        ax += dx;
+        ay += dy;
+        bx += dx;
+        by += dy;
+    }
+
+    /**
+     * Get the x coordinate of the first endpoint.
+     * 
+     * @return the x coordinate.
+     */
+    public double getAX() {
+        return world != null ? world.getAX(id) : ax;
+    }
+
+    /**
+     * Get the y coordinate of the first endpoint.
+     * 
+     * @return the y coordinate.
+     */
+    public double getAY() {
+        return world != null ? world.getAY(id) : ay;
+    }
+
+    /**
+     * Get the x coordinate of the second endpoint.
+     * 
+     * @return the x coordinate.
+     */
+    public double getBX() {
+        return world != null ? world.getBX(id) : bx;
+    }
+
+    /**
+     * Get the y coordinate of the second endpoint.
+     * 
+     * @return the y coordinate.
+     */
+    public double getBY() {
+        return world != null ? world.getBY(id) : by;
+    }
+
+    @Override
+    public Point2D getA() {
+        return new Point2D(getAX(), getAY());
+    }
+
+    @Override
+    public void setA(Point2D a) {
+        if (world != null) {
+            world.setA(id, a.getX(), a.getY());
+        } else {
+            ax = a.getX();
+            ay = a.getY();
+        }
+    }
+
+    @Override
+    public Point2D getB() {
+        return new Point2D(getBX(), getBY());
+    }
+
+    @Override
+    public void setB(Point2D b) {
+        if (world != null) {
+            world.setB(id, b.getX(), b.getY());
+        } else {
+            bx = b.getX();
+            by = b.getY();
+        }
+    }
+
+    @Override
+    public double getLength() {
+        return Math.hypot(getBX() - getAX(), getBY() - getAY());
+    }
+
+    @Override
+    public Point2D getDirection() {
+        return getB().subtract(getA()).normalize();
     }
 
     /**
@@ -160,7 +474,7 @@ public abstract class GameObject extends LineSegment2D {
      * @return the radius of this GameObject.
      */
     public double getRadius() {
-        return radius;
+        return world != null ? world.getRadius(id) : radius;
     }
 
     /**
@@ -170,11 +484,12 @@ public abstract class GameObject extends LineSegment2D {
      * @param radius the new radius of this GameObject.
      */
     public void setRadius(double radius) {
-        if (radius < 0) {
-            throw new IllegalArgumentException("radius must greater than or equal to 0");
+        if (world != null) {
+            world.setRadius(id, radius);
+        } else {
+            checkRadius(radius);
+            this.radius = radius;
         }
-
-        this.radius = radius;
     }
 
     /**
@@ -183,7 +498,7 @@ public abstract class GameObject extends LineSegment2D {
      * @return the current mass of this GameObject.
      */
     public double getMass() {
-        return mass;
+        return world != null ? world.getMass(id) : mass;
     }
 
     /**
@@ -193,8 +508,15 @@ public abstract class GameObject extends LineSegment2D {
      * @param mass the new mass value.
      */
     public void setMass(double mass) {
-        if (mass <= 0) {
-            throw new IllegalArgumentException("mass must be greater than 0");
+        if (world != null) {
+            world.setMass(id, mass);
+            return;
+        }
+
+        checkMass(mass);
+
+        if (isStatic && mass != Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("a static body must have infinite mass");
         }
 
         this.mass = mass;
@@ -206,7 +528,7 @@ public abstract class GameObject extends LineSegment2D {
      * @return the current velocity of this GameObject.
      */
     public Point2D getVelocity() {
-        return velocity;
+        return new Point2D(getVelocityX(), getVelocityY());
     }
 
     /**
@@ -215,6 +537,68 @@ public abstract class GameObject extends LineSegment2D {
      * @param velocity the new velocity value.
      */
     public void setVelocity(Point2D velocity) {
-        this.velocity = velocity;
+        setVelocity(velocity.getX(), velocity.getY());
+    }
+
+    /**
+     * Get the x component of the current velocity.
+     * 
+     * @return the x component of the velocity.
+     */
+    public double getVelocityX() {
+        return world != null ? world.getVelocityX(id) : velocityX;
+    }
+
+    /**
+     * Get the y component of the current velocity.
+     * 
+     * @return the y component of the velocity.
+     */
+    public double getVelocityY() {
+        return world != null ? world.getVelocityY(id) : velocityY;
+    }
+
+    /**
+     * Set the velocity.
+     * 
+     * @param x the x component of the new velocity.
+     * @param y the y component of the new velocity.
+     */
+    public void setVelocity(double x, double y) {
+        if (world != null) {
+            world.setVelocity(id, x, y);
+        } else {
+            velocityX = x;
+            velocityY = y;
+        }
+    }
+
+    double getAccelerationX() {
+        return world != null ? world.getAccelerationX(id) : accelerationX;
+    }
+
+    double getAccelerationY() {
+        return world != null ? world.getAccelerationY(id) : accelerationY;
+    }
+
+    void setAcceleration(double x, double y) {
+        if (world != null) {
+            world.setAcceleration(id, x, y);
+        } else {
+            accelerationX = x;
+            accelerationY = y;
+        }
+    }
+
+    private static void checkRadius(double radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must greater than or equal to 0");
+        }
+    }
+
+    private static void checkMass(double mass) {
+        if (mass <= 0) {
+            throw new IllegalArgumentException("mass must be greater than 0");
+        }
     }
 }
@@ -0,0 +1,133 @@
+package action.objects;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * A GameObjectPool keeps GameObjects that are no longer in use, so that
+ * short-lived GameObjects such as projectiles and debris can be reused instead
+ * of being created and collected over and over.
+ * 
+ * GameObjects are taken from the pool with obtain, which resets them to the
+ * given shape, and go back to it when they are despawned through a SpawnBuffer.
+ * A GameObject in the pool is detached, so its state sits in its own fields,
+ * and taking it out and putting it back never allocates. New
+ * GameObjects are only created when the pool is empty, or ahead of time with
+ * fill.
+ * 
+ * A GameObjectPool can be used from several threads at once, so controllers
+ * that think in parallel can spawn from it.
+ * 
+ * @param <T> the type of GameObject kept.
+ */
+public class GameObjectPool<T extends GameObject> {
+    private final Supplier<T> factory;
+
+    private final ArrayList<T> free = new ArrayList<>();
+    private int created;
+
+    /**
+     * Initialize a new, empty GameObjectPool that creates GameObjects with the
+     * given factory when it runs out.
+     * 
+     * @param factory the Supplier that creates a new GameObject.
+     */
+    public GameObjectPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Take a GameObject from this pool, or create one if the pool is empty, and
+     * reset it to the given endpoints, radius, and mass. The GameObject is
+     * detached until it is spawned. This method throws an
+     * IllegalArgumentException if the given radius is less than 0 or the given
+     * mass is 0 or less.
+     * 
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the radius of the GameObject.
+     * @param mass   the mass of the GameObject.
+     * @return the GameObject.
+     */
+    public T obtain(double ax, double ay, double bx, double by, double radius, double mass) {
+        T gameObject;
+
+        synchronized (this) {
+            gameObject = free.isEmpty() ? create() : free.remove(free.size() - 1);
+        }
+
+        gameObject.reset(ax, ay, bx, by, radius, mass);
+
+        return gameObject;
+    }
+
+    /**
+     * Put a GameObject back into this pool, detaching it first if it is still in
+     * a shared PhysicsWorld. This is done by a SpawnBuffer when a GameObject from
+     * this pool is despawned, and must only be done between steps. This method
+     * throws an IllegalArgumentException if the GameObject was not created by
+     * this pool.
+     * 
+     * @param gameObject the GameObject to put back.
+     */
+    public void free(T gameObject) {
+        recycle(gameObject);
+    }
+
+    // Put back any GameObject created by this pool, whatever type it is seen as
+    @SuppressWarnings("unchecked")
+    void recycle(GameObject gameObject) {
+        if (gameObject.pool != this) {
+            throw new IllegalArgumentException("gameObject was not created by this pool");
+        }
+
+        gameObject.detach();
+
+        synchronized (this) {
+            free.add((T) gameObject);
+        }
+    }
+
+    /**
+     * Create GameObjects until this pool holds at least the given number, so that
+     * a burst of spawns does not need to create any.
+     * 
+     * @param count the number of GameObjects to hold.
+     */
+    public synchronized void fill(int count) {
+        free.ensureCapacity(count);
+
+        while (free.size() < count) {
+            free.add(create());
+        }
+    }
+
+    /**
+     * Get the number of GameObjects waiting in this pool.
+     * 
+     * @return the number of free GameObjects.
+     */
+    public synchronized int getFreeCount() {
+        return free.size();
+    }
+
+    /**
+     * Get the number of GameObjects this pool has created, whether they are in
+     * use or not.
+     * 
+     * @return the number of GameObjects created.
+     */
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    private T create() {
+        T gameObject = factory.get();
+        gameObject.pool = this;
+        created++;
+
+        return gameObject;
+    }
+}
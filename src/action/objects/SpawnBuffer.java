@@ -0,0 +1,127 @@
+package action.objects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * A SpawnBuffer records GameObjects to spawn and despawn while a step is
+ * running, and applies them all at once between steps. This lets controllers,
+ * step listeners and collision handlers add and remove GameObjects without
+ * changing the Collection of GameObjects or the PhysicsWorld in the middle of a
+ * step.
+ * 
+ * Spawns and despawns can be recorded from any thread. They are kept in two
+ * sets of lists that are swapped when the buffer is applied, so recording only
+ * allocates while the lists grow. When the buffer is applied, the spawned
+ * GameObjects are added first and the despawned ones are removed after, so a
+ * GameObject spawned and despawned within one step ends up gone. A despawned
+ * GameObject from a GameObjectPool goes back to its pool.
+ */
+public class SpawnBuffer {
+    private ArrayList<GameObject> spawned = new ArrayList<>();
+    private ArrayList<GameObject> despawned = new ArrayList<>();
+
+    // The lists being applied, swapped with the recording ones under the lock
+    private ArrayList<GameObject> applyingSpawned = new ArrayList<>();
+    private ArrayList<GameObject> applyingDespawned = new ArrayList<>();
+
+    // The GameObjects being removed, reused for every apply
+    private final Set<GameObject> removing = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Predicate<GameObject> isRemoving = removing::contains;
+
+    /**
+     * Record a GameObject to be spawned the next time this buffer is applied. The
+     * GameObject should be detached until then.
+     * 
+     * @param gameObject the GameObject to spawn.
+     */
+    public synchronized void spawn(GameObject gameObject) {
+        spawned.add(gameObject);
+    }
+
+    /**
+     * Record a GameObject to be despawned the next time this buffer is applied.
+     * Despawning a GameObject more than once before then has the same effect as
+     * despawning it once.
+     * 
+     * @param gameObject the GameObject to despawn.
+     */
+    public synchronized void despawn(GameObject gameObject) {
+        despawned.add(gameObject);
+    }
+
+    /**
+     * Check whether any spawns or despawns are waiting to be applied.
+     * 
+     * @return true if the next apply has anything to do.
+     */
+    public synchronized boolean isEmpty() {
+        return spawned.isEmpty() && despawned.isEmpty();
+    }
+
+    /**
+     * Apply every spawn and despawn recorded since the last call. Spawned
+     * GameObjects are moved into the given PhysicsWorld and added to the given
+     * Collection, then despawned GameObjects are removed from the Collection,
+     * detached, and put back into their GameObjectPool if they have one. This must
+     * be called between steps, on the thread that runs them.
+     * 
+     * @param gameObjects the Collection of GameObjects in the scene.
+     * @param world       the PhysicsWorld the scene is simulated in.
+     * @return true if anything was spawned or despawned.
+     */
+    public boolean apply(Collection<GameObject> gameObjects, PhysicsWorld world) {
+        synchronized (this) {
+            if (spawned.isEmpty() && despawned.isEmpty())
+                return false;
+
+            ArrayList<GameObject> swap = spawned;
+            spawned = applyingSpawned;
+            applyingSpawned = swap;
+
+            swap = despawned;
+            despawned = applyingDespawned;
+            applyingDespawned = swap;
+        }
+
+        for (int i = 0; i < applyingSpawned.size(); i++) {
+            GameObject gameObject = applyingSpawned.get(i);
+
+            gameObject.setWorld(world);
+            gameObjects.add(gameObject);
+        }
+
+        for (int i = 0; i < applyingDespawned.size(); i++) {
+            removing.add(applyingDespawned.get(i));
+        }
+
+        // Remove every despawned GameObject in a single pass over the Collection
+        if (!removing.isEmpty())
+            gameObjects.removeIf(isRemoving);
+
+        // Each GameObject leaves the set as it is handled, so one despawned twice is
+        // only put back into its pool once
+        for (int i = 0; i < applyingDespawned.size(); i++) {
+            GameObject gameObject = applyingDespawned.get(i);
+
+            if (!removing.remove(gameObject))
+                continue;
+
+            if (gameObject.pool != null)
+                gameObject.pool.recycle(gameObject);
+            else
+                gameObject.detach();
+        }
+
+        applyingSpawned.clear();
+        applyingDespawned.clear();
+
+        return true;
+    }
+}
@@ -0,0 +1,391 @@
+package action.physics;
+
+import java.util.Arrays;
+
+/**
+ * A ContactCache remembers what happened between pairs of bodies from one step
+ * to the next, keyed by the ids of the two bodies. Given to a ContactSolver, it
+ * is used in two ways.
+ * 
+ * For a pair that was touching, it holds the contact normal and the impulse
+ * the solver built up for the contact. When the pair is still touching in the
+ * next step with a similar normal, the solver starts from that impulse instead
+ * of from nothing, so a resting stack only needs a correction each step rather
+ * than a full solve, and settles in far fewer iterations.
+ * 
+ * For a pair that the broadphase reported but that was not touching, it holds
+ * the gap between the two bodies and how far each body had travelled when the
+ * gap was measured. The gap can only close by as much as the bodies travel, so
+ * while their travel since then is less than the gap, the pair is known to be
+ * separated without testing it again.
+ * 
+ * Each entry also holds the generations of its two bodies, as given by
+ * PhysicsWorld.getGeneration. A body that is added, removed, reset, or moved
+ * other than by a step gets a new generation, so only the entries of that body
+ * are ignored from then on, and a body that reuses a removed body's id starts
+ * from nothing.
+ * 
+ * Entries live in an open addressing hash table. An entry that was not used in
+ * the last step is dropped the next time the table is rebuilt, so contacts that
+ * end and pairs that drift apart are forgotten without being removed one by
+ * one.
+ * 
+ * When its PhysicsWorld is restored from a snapshot, the cache would hold
+ * impulses from steps that the restore undid, so it forgets every entry the
+ * next time contacts are found. For a rollback that simulates the same steps
+ * again and must get the same result, save and restore the cache together with
+ * the PhysicsWorld, with PhysicsWorld.save(WorldSnapshot, ContactCache) and
+ * PhysicsWorld.restore(WorldSnapshot, ContactCache) or their DeltaSnapshot
+ * forms.
+ */
+public class ContactCache {
+    /**
+     * The lowest cosine of the angle between a contact's old and new normals for
+     * its old impulse to be reused.
+     */
+    public static final double NORMAL_TOLERANCE = 0.95;
+
+    // The doubles of each entry, in this order
+    private static final int NORMAL_X = 0, NORMAL_Y = 1, IMPULSE = 2, GAP = 3, FIRST_TRAVEL = 4,
+            SECOND_TRAVEL = 5;
+    private static final int DOUBLES_PER_ENTRY = 6;
+
+    // The ints of each entry, in this order, with the generation of the body with
+    // the lower id first
+    private static final int STAMP = 0, FIRST_GENERATION = 1, SECOND_GENERATION = 2;
+    private static final int INTS_PER_ENTRY = 3;
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private double[] doubleValues;
+    private int[] intValues;
+    private int used;
+
+    // The table swapped in by each rebuild, kept so it does not need to be
+    // reallocated
+    private long[] spareKeys;
+    private double[] spareDoubleValues;
+    private int[] spareIntValues;
+
+    private int step = 1;
+
+    // The PhysicsWorld the entries were found in, and its restore version then
+    private PhysicsWorld world;
+    private int restoreVersion;
+
+    /**
+     * Initialize a new, empty ContactCache.
+     */
+    public ContactCache() {
+        keys = new long[64];
+        doubleValues = new double[64 * DOUBLES_PER_ENTRY];
+        intValues = new int[64 * INTS_PER_ENTRY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Start the next step. Entries written in the step that just ended can be read
+     * in the new one, and entries from before it are forgotten.
+     */
+    public void nextStep() {
+        step++;
+    }
+
+    /**
+     * Forget every entry.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        used = 0;
+    }
+
+    /**
+     * Forget every entry if they were found in another PhysicsWorld, or in this
+     * one before it was last restored.
+     */
+    void follow(PhysicsWorld world, int restoreVersion) {
+        if (world != this.world || restoreVersion != this.restoreVersion) {
+            clear();
+            attach(world, restoreVersion);
+        }
+    }
+
+    /**
+     * Mark the entries as belonging to the current state of a PhysicsWorld.
+     */
+    void attach(PhysicsWorld world, int restoreVersion) {
+        this.world = world;
+        this.restoreVersion = restoreVersion;
+    }
+
+    /**
+     * Make this cache hold the same entries as another, for saving it with a
+     * snapshot and putting it back.
+     */
+    void copy(ContactCache source) {
+        if (keys.length != source.keys.length) {
+            keys = new long[source.keys.length];
+            doubleValues = new double[source.doubleValues.length];
+            intValues = new int[source.intValues.length];
+        }
+
+        System.arraycopy(source.keys, 0, keys, 0, keys.length);
+        System.arraycopy(source.doubleValues, 0, doubleValues, 0, doubleValues.length);
+        System.arraycopy(source.intValues, 0, intValues, 0, intValues.length);
+
+        used = source.used;
+        step = source.step;
+    }
+
+    /**
+     * Get the number of entries that were written or read in this step or the
+     * last one.
+     * 
+     * @return the number of entries.
+     */
+    public int getSize() {
+        int size = 0;
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && isCurrent(slot))
+                size++;
+        }
+
+        return size;
+    }
+
+    /**
+     * Get the impulse built up last step by the contact between two bodies, if
+     * they are still the same bodies and still touching along a similar normal.
+     * 
+     * @param i                the id of the first body.
+     * @param j                the id of the second body.
+     * @param firstGeneration  the generation of the first body's id.
+     * @param secondGeneration the generation of the second body's id.
+     * @param normalX          the x component of the new unit contact normal,
+     *                         pointing from the first body towards the second.
+     * @param normalY          the y component of the new unit contact normal.
+     * @return the impulse, or 0 if the bodies were not touching last step, either
+     *         body's generation changed since, or their normal turned too far.
+     */
+    public double getImpulse(int i, int j, int firstGeneration, int secondGeneration, double normalX,
+            double normalY) {
+        int slot = find(i, j);
+
+        if (slot < 0 || intValues[slot * INTS_PER_ENTRY + STAMP] != step - 1
+                || !isSameBodies(slot, i, j, firstGeneration, secondGeneration))
+            return 0;
+
+        int d = slot * DOUBLES_PER_ENTRY;
+        double sign = i < j ? 1 : -1;
+        double cosine = (doubleValues[d + NORMAL_X] * normalX + doubleValues[d + NORMAL_Y] * normalY) * sign;
+
+        return cosine >= NORMAL_TOLERANCE ? doubleValues[d + IMPULSE] : 0;
+    }
+
+    /**
+     * Store the normal and impulse of the contact between two touching bodies in
+     * this step. The impulse is measured as the change it made to the bodies'
+     * relative speed along the normal.
+     * 
+     * @param i                the id of the first body.
+     * @param j                the id of the second body.
+     * @param firstGeneration  the generation of the first body's id.
+     * @param secondGeneration the generation of the second body's id.
+     * @param normalX          the x component of the unit contact normal, pointing
+     *                         from the first body towards the second.
+     * @param normalY          the y component of the unit contact normal.
+     * @param impulse          the impulse built up for the contact.
+     */
+    public void putContact(int i, int j, int firstGeneration, int secondGeneration, double normalX,
+            double normalY, double impulse) {
+        int slot = insert(i, j);
+        putGenerations(slot, i, j, firstGeneration, secondGeneration);
+        int d = slot * DOUBLES_PER_ENTRY;
+
+        // Normals are kept pointing from the lower id to the higher one
+        double sign = i < j ? 1 : -1;
+
+        doubleValues[d + NORMAL_X] = normalX * sign;
+        doubleValues[d + NORMAL_Y] = normalY * sign;
+        doubleValues[d + IMPULSE] = impulse;
+        doubleValues[d + GAP] = Double.NEGATIVE_INFINITY;
+        intValues[slot * INTS_PER_ENTRY + STAMP] = step;
+    }
+
+    /**
+     * Find whether two bodies are known to be separated, given their generations
+     * and how far each has travelled in total. A pair found separated is kept in
+     * the cache for another step.
+     */
+    boolean isSeparated(int i, int j, int firstGeneration, int secondGeneration, double firstTravel,
+            double secondTravel) {
+        int slot = find(i, j);
+
+        if (slot < 0 || !isCurrent(slot) || !isSameBodies(slot, i, j, firstGeneration, secondGeneration))
+            return false;
+
+        int d = slot * DOUBLES_PER_ENTRY;
+
+        if (i > j) {
+            double travel = firstTravel;
+            firstTravel = secondTravel;
+            secondTravel = travel;
+        }
+
+        double travelled = (firstTravel - doubleValues[d + FIRST_TRAVEL])
+                + (secondTravel - doubleValues[d + SECOND_TRAVEL]);
+
+        if (travelled >= doubleValues[d + GAP])
+            return false;
+
+        intValues[slot * INTS_PER_ENTRY + STAMP] = step;
+
+        return true;
+    }
+
+    /**
+     * Store the gap between two bodies that are not touching, along with how far
+     * each had travelled in total when the gap was measured.
+     */
+    void putSeparation(int i, int j, int firstGeneration, int secondGeneration, double gap, double firstTravel,
+            double secondTravel) {
+        int slot = insert(i, j);
+        int d = slot * DOUBLES_PER_ENTRY;
+
+        putGenerations(slot, i, j, firstGeneration, secondGeneration);
+
+        if (i > j) {
+            double travel = firstTravel;
+            firstTravel = secondTravel;
+            secondTravel = travel;
+        }
+
+        doubleValues[d + IMPULSE] = 0;
+        doubleValues[d + GAP] = gap;
+        doubleValues[d + FIRST_TRAVEL] = firstTravel;
+        doubleValues[d + SECOND_TRAVEL] = secondTravel;
+        intValues[slot * INTS_PER_ENTRY + STAMP] = step;
+    }
+
+    private boolean isSameBodies(int slot, int i, int j, int firstGeneration, int secondGeneration) {
+        int n = slot * INTS_PER_ENTRY;
+
+        if (i > j) {
+            int generation = firstGeneration;
+            firstGeneration = secondGeneration;
+            secondGeneration = generation;
+        }
+
+        return intValues[n + FIRST_GENERATION] == firstGeneration
+                && intValues[n + SECOND_GENERATION] == secondGeneration;
+    }
+
+    private void putGenerations(int slot, int i, int j, int firstGeneration, int secondGeneration) {
+        int n = slot * INTS_PER_ENTRY;
+
+        intValues[n + FIRST_GENERATION] = i < j ? firstGeneration : secondGeneration;
+        intValues[n + SECOND_GENERATION] = i < j ? secondGeneration : firstGeneration;
+    }
+
+    private boolean isCurrent(int slot) {
+        return intValues[slot * INTS_PER_ENTRY + STAMP] >= step - 1;
+    }
+
+    private int find(int i, int j) {
+        long key = key(i, j);
+        int mask = keys.length - 1;
+
+        for (int slot = hash(key, mask);; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return slot;
+
+            if (keys[slot] == EMPTY)
+                return -1;
+        }
+    }
+
+    private int insert(int i, int j) {
+        long key = key(i, j);
+        int mask = keys.length - 1;
+        int slot = hash(key, mask);
+
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key)
+                return slot;
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Keep the table at most half full, so probe runs stay short
+        if ((used + 1) * 2 > keys.length) {
+            rebuild();
+            return insert(i, j);
+        }
+
+        keys[slot] = key;
+        used++;
+
+        return slot;
+    }
+
+    // Move the current entries into a fresh table, leaving the old ones behind
+    private void rebuild() {
+        int live = getSize();
+        int capacity = keys.length;
+
+        while ((live + 1) * 4 > capacity) {
+            capacity *= 2;
+        }
+
+        if (spareKeys == null || spareKeys.length != capacity) {
+            spareKeys = new long[capacity];
+            spareDoubleValues = new double[capacity * DOUBLES_PER_ENTRY];
+            spareIntValues = new int[capacity * INTS_PER_ENTRY];
+        }
+
+        Arrays.fill(spareKeys, EMPTY);
+        int mask = capacity - 1;
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY || !isCurrent(slot))
+                continue;
+
+            int target = hash(keys[slot], mask);
+
+            while (spareKeys[target] != EMPTY) {
+                target = (target + 1) & mask;
+            }
+
+            spareKeys[target] = keys[slot];
+            System.arraycopy(doubleValues, slot * DOUBLES_PER_ENTRY, spareDoubleValues, target * DOUBLES_PER_ENTRY,
+                    DOUBLES_PER_ENTRY);
+            System.arraycopy(intValues, slot * INTS_PER_ENTRY, spareIntValues, target * INTS_PER_ENTRY,
+                    INTS_PER_ENTRY);
+        }
+
+        long[] oldKeys = keys;
+        double[] oldDoubleValues = doubleValues;
+        int[] oldIntValues = intValues;
+
+        keys = spareKeys;
+        doubleValues = spareDoubleValues;
+        intValues = spareIntValues;
+        used = live;
+
+        spareKeys = oldKeys;
+        spareDoubleValues = oldDoubleValues;
+        spareIntValues = oldIntValues;
+    }
+
+    // The lower id goes in the high half, so both orders of a pair share a key
+    private static long key(int i, int j) {
+        return i < j ? (long) i << 32 | j : (long) j << 32 | i;
+    }
+
+    private static int hash(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ mixed >>> 32) & mask;
+    }
+}
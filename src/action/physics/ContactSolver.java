@@ -0,0 +1,541 @@
+package action.physics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A ContactSolver holds the contacts found in one step and applies the
+ * collision response for each of them, either one after another or in
+ * parallel on a ForkJoinPool.
+ * 
+ * To solve in parallel, the contacts are split into batches so that no body
+ * written by a contact in a batch is read or written by any other contact in
+ * the same batch. Each contact is placed in the first batch after every earlier
+ * contact it depends on, so contacts that share a body always run in the order
+ * they were added. Contacts that share no body do not affect each other, so the
+ * parallel result is bit for bit the same as solving the contacts one after
+ * another in the order they were added.
+ * 
+ * A body with infinite mass is only read by a contact with a finite body. This
+ * keeps the many contacts against static walls from all landing in separate
+ * batches.
+ * 
+ * By default each contact gets a single, perfectly elastic response, as given
+ * by PhysicsWorld.solveContact. Setting more than one iteration, a restitution
+ * below 1, or a ContactCache switches to an iterative solver. It builds up an
+ * impulse for each contact that never pulls the bodies together, and passes
+ * over every contact as many times as there are iterations, so that contacts
+ * sharing a body, as in a stack, settle on velocities that satisfy all of them
+ * at once. With a ContactCache, each contact starts from the impulse it ended
+ * the last step with, and pairs that are known to still be apart are skipped by
+ * PhysicsWorld.findContacts without an exact test.
+ */
+public class ContactSolver {
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+    public static final int DEFAULT_ITERATIONS = 1;
+    public static final double DEFAULT_RESTITUTION = 1;
+
+    private int[] first = new int[64], second = new int[64];
+    private double[] normalX = new double[64], normalY = new double[64];
+    private int count;
+
+    // The impulse built up for each contact by the iterative solver, and the
+    // speed its bodies should separate at once the step's accelerations are added
+    private double[] impulse = new double[64], target = new double[64];
+
+    private ContactCache cache;
+    private int iterations = DEFAULT_ITERATIONS;
+    private double restitution = DEFAULT_RESTITUTION;
+
+    private ForkJoinPool pool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    // The last batch that wrote or read each body, kept between steps so they do
+    // not need to be reallocated
+    private int[] lastWrite = new int[0], lastRead = new int[0];
+
+    // The contacts sorted by batch, and where each batch starts
+    private int[] batchOf = new int[64], sorted = new int[64];
+    private int[] batchStart = new int[16];
+    private int batchCount;
+
+    // Reused for every parallel solve
+    private final SolveTask rootTask = new SolveTask();
+    private SolveTask[] chunkTasks = new SolveTask[0];
+    private PhysicsWorld solvingWorld;
+
+    /**
+     * Initialize a new ContactSolver that solves contacts one after another.
+     */
+    public ContactSolver() {
+    }
+
+    /**
+     * Initialize a new ContactSolver that solves large sets of contacts in
+     * parallel on the given ForkJoinPool.
+     * 
+     * @param pool the ForkJoinPool to run on, or null to always solve one contact
+     *             after another.
+     */
+    public ContactSolver(ForkJoinPool pool) {
+        setPool(pool);
+    }
+
+    /**
+     * Remove all contacts. If there is a ContactCache, this also starts its next
+     * step, so it should be called once per step, as PhysicsWorld.findContacts
+     * does.
+     */
+    public void clear() {
+        count = 0;
+
+        if (cache != null)
+            cache.nextStep();
+    }
+
+    /**
+     * Add a contact between two touching bodies.
+     * 
+     * @param i       the id of the first body.
+     * @param j       the id of the second body.
+     * @param normalX the x component of the unit contact normal, pointing from the
+     *                first body towards the second.
+     * @param normalY the y component of the unit contact normal.
+     */
+    public void add(int i, int j, double normalX, double normalY) {
+        if (count == first.length) {
+            int capacity = count * 2;
+
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+            this.normalX = Arrays.copyOf(this.normalX, capacity);
+            this.normalY = Arrays.copyOf(this.normalY, capacity);
+            impulse = Arrays.copyOf(impulse, capacity);
+            target = Arrays.copyOf(target, capacity);
+        }
+
+        first[count] = i;
+        second[count] = j;
+        this.normalX[count] = normalX;
+        this.normalY[count] = normalY;
+        count++;
+    }
+
+    /**
+     * Get the id of the first body in a contact.
+     * 
+     * @param contact the index of the contact.
+     * @return the id of the first body.
+     */
+    public int getFirst(int contact) {
+        return first[contact];
+    }
+
+    /**
+     * Get the id of the second body in a contact.
+     * 
+     * @param contact the index of the contact.
+     * @return the id of the second body.
+     */
+    public int getSecond(int contact) {
+        return second[contact];
+    }
+
+    /**
+     * Get the number of contacts.
+     * 
+     * @return the number of contacts.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Apply the collision response for every contact to the bodies in the given
+     * PhysicsWorld.
+     * 
+     * @param world the PhysicsWorld holding the bodies.
+     */
+    public void solve(PhysicsWorld world) {
+        solve(world, 0);
+    }
+
+    /**
+     * Apply the collision response for every contact to the bodies in the given
+     * PhysicsWorld, ahead of a step of the given length. The iterative solver
+     * aims for the velocities the bodies will have once their accelerations are
+     * applied by the step, so a body resting on another under gravity stays put
+     * instead of sinking into it a little every step.
+     * 
+     * @param world     the PhysicsWorld holding the bodies.
+     * @param deltaTime the length of the coming step, in seconds, or 0 to only
+     *                  look at the current velocities.
+     */
+    public void solve(PhysicsWorld world, double deltaTime) {
+        if (isIterative())
+            prepare(world, deltaTime);
+
+        if (pool == null || count < parallelThreshold) {
+            for (int pass = 0; pass < iterations; pass++) {
+                for (int c = 0; c < count; c++) {
+                    solveContact(world, c);
+                }
+            }
+
+            finish(world);
+            return;
+        }
+
+        buildBatches(world);
+
+        solvingWorld = world;
+        rootTask.reinitialize();
+        pool.invoke(rootTask);
+        solvingWorld = null;
+
+        finish(world);
+    }
+
+    private boolean isIterative() {
+        return iterations > 1 || restitution != 1 || cache != null;
+    }
+
+    // Work out what each contact aims for before any of them are solved, then
+    // apply the impulses carried over from the last step
+    private void prepare(PhysicsWorld world, double deltaTime) {
+        for (int c = 0; c < count; c++) {
+            int i = first[c];
+            int j = second[c];
+
+            // Bounce back from the current approach, and leave room for the speed the
+            // accelerations will add to it during the step
+            target[c] = restitution * Math.max(0, world.getApproachSpeed(i, j, normalX[c], normalY[c]))
+                    + world.getApproachAcceleration(i, j, normalX[c], normalY[c]) * deltaTime;
+            impulse[c] = cache == null ? 0
+                    : cache.getImpulse(i, j, world.getGeneration(i), world.getGeneration(j), normalX[c], normalY[c]);
+
+            if (impulse[c] > 0)
+                world.applyImpulse(i, j, normalX[c], normalY[c], impulse[c]);
+        }
+    }
+
+    private void finish(PhysicsWorld world) {
+        if (cache == null)
+            return;
+
+        for (int c = 0; c < count; c++) {
+            int i = first[c];
+            int j = second[c];
+
+            cache.putContact(i, j, world.getGeneration(i), world.getGeneration(j), normalX[c], normalY[c],
+                    impulse[c]);
+        }
+    }
+
+    private void solveContact(PhysicsWorld world, int c) {
+        if (isIterative())
+            impulse[c] = world.solveContact(first[c], second[c], normalX[c], normalY[c], target[c], impulse[c]);
+        else
+            world.solveContact(first[c], second[c], normalX[c], normalY[c]);
+    }
+
+    /**
+     * Get the number of batches the contacts were split into by the last parallel
+     * solve.
+     * 
+     * @return the number of batches.
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    private void buildBatches(PhysicsWorld world) {
+        int rows = world.getRows();
+
+        if (lastWrite.length < rows) {
+            lastWrite = new int[rows];
+            lastRead = new int[rows];
+            Arrays.fill(lastWrite, -1);
+            Arrays.fill(lastRead, -1);
+        }
+
+        if (batchOf.length < count) {
+            batchOf = new int[first.length];
+            sorted = new int[first.length];
+        }
+
+        batchCount = 0;
+
+        for (int c = 0; c < count; c++) {
+            int i = first[c];
+            int j = second[c];
+            boolean writesFirst = writes(world, i, j);
+            boolean writesSecond = writes(world, j, i);
+
+            // A body that is written must wait for every earlier read and write of it,
+            // and a body that is only read must wait for every earlier write of it
+            int batch = Math.max(writesFirst ? Math.max(lastWrite[i], lastRead[i]) : lastWrite[i],
+                    writesSecond ? Math.max(lastWrite[j], lastRead[j]) : lastWrite[j]) + 1;
+
+            if (writesFirst)
+                lastWrite[i] = batch;
+            else
+                lastRead[i] = Math.max(lastRead[i], batch);
+
+            if (writesSecond)
+                lastWrite[j] = batch;
+            else
+                lastRead[j] = Math.max(lastRead[j], batch);
+
+            batchOf[c] = batch;
+            batchCount = Math.max(batchCount, batch + 1);
+        }
+
+        // Reset only the bodies that were touched, ready for the next step
+        for (int c = 0; c < count; c++) {
+            lastWrite[first[c]] = -1;
+            lastRead[first[c]] = -1;
+            lastWrite[second[c]] = -1;
+            lastRead[second[c]] = -1;
+        }
+
+        // Counting sort the contacts by batch, keeping their order within each batch
+        if (batchStart.length < batchCount + 1)
+            batchStart = new int[Math.max(batchCount + 1, batchStart.length * 2)];
+
+        Arrays.fill(batchStart, 0, batchCount + 1, 0);
+
+        for (int c = 0; c < count; c++) {
+            batchStart[batchOf[c] + 1]++;
+        }
+
+        for (int b = 0; b < batchCount; b++) {
+            batchStart[b + 1] += batchStart[b];
+        }
+
+        for (int c = 0; c < count; c++) {
+            sorted[batchStart[batchOf[c]]++] = c;
+        }
+
+        // The placement loop moved each start to the end of its batch, so shift back
+        for (int b = batchCount; b > 0; b--) {
+            batchStart[b] = batchStart[b - 1];
+        }
+
+        batchStart[0] = 0;
+    }
+
+    private static boolean writes(PhysicsWorld world, int body, int other) {
+        return world.getMass(body) != Double.POSITIVE_INFINITY
+                || world.getMass(other) == Double.POSITIVE_INFINITY;
+    }
+
+    private void solveRange(int from, int to) {
+        PhysicsWorld world = solvingWorld;
+
+        for (int n = from; n < to; n++) {
+            solveContact(world, sorted[n]);
+        }
+    }
+
+    private void solveBatches() {
+        for (int pass = 0; pass < iterations; pass++) {
+            for (int b = 0; b < batchCount; b++) {
+                solveBatch(b);
+            }
+        }
+    }
+
+    private void solveBatch(int b) {
+        int from = batchStart[b];
+        int to = batchStart[b + 1];
+        int chunks = (to - from + chunkSize - 1) / chunkSize;
+
+        if (chunks <= 1) {
+            solveRange(from, to);
+            return;
+        }
+
+        if (chunkTasks.length < chunks) {
+            int length = chunkTasks.length;
+            chunkTasks = Arrays.copyOf(chunkTasks, chunks);
+
+            for (int t = length; t < chunks; t++) {
+                chunkTasks[t] = new SolveTask();
+            }
+        }
+
+        // Fork all but the first chunk, solve the first here, then wait for the rest
+        for (int t = 1; t < chunks; t++) {
+            SolveTask task = chunkTasks[t];
+            task.reinitialize();
+            task.from = from + t * chunkSize;
+            task.to = Math.min(to, task.from + chunkSize);
+            task.fork();
+        }
+
+        solveRange(from, Math.min(to, from + chunkSize));
+
+        for (int t = chunks - 1; t > 0; t--) {
+            chunkTasks[t].join();
+        }
+    }
+
+    /**
+     * Access the ForkJoinPool used to solve contacts in parallel.
+     * 
+     * @return the ForkJoinPool, or null if contacts are always solved one after
+     *         another.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Update the ForkJoinPool used to solve contacts in parallel.
+     * 
+     * @param pool the new ForkJoinPool, or null to always solve one contact after
+     *             another.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get the lowest number of contacts that are solved in parallel. Smaller sets
+     * are solved one after another, since splitting them costs more than it saves.
+     * 
+     * @return the parallel threshold.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Set the lowest number of contacts that are solved in parallel.
+     * 
+     * @param parallelThreshold the new parallel threshold.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Get the number of contacts in a batch that are handed to one thread at a
+     * time.
+     * 
+     * @return the chunk size.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of contacts in a batch that are handed to one thread at a
+     * time. This method throws an IllegalArgumentException if the given size is
+     * less than 1.
+     * 
+     * @param chunkSize the new chunk size.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Access the ContactCache that carries impulses and separated pairs over
+     * between steps.
+     * 
+     * @return the ContactCache, or null if every step starts from nothing.
+     */
+    public ContactCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Update the ContactCache that carries impulses and separated pairs over
+     * between steps. A cache should only be used by one ContactSolver, for one
+     * PhysicsWorld.
+     * 
+     * @param cache the new ContactCache, or null to start every step from nothing.
+     */
+    public void setCache(ContactCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the number of times the iterative solver passes over every contact in a
+     * step.
+     * 
+     * @return the number of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the number of times the iterative solver passes over every contact in a
+     * step. More iterations let stacks and piles settle within fewer steps. This
+     * method throws an IllegalArgumentException if the given number is less than
+     * 1.
+     * 
+     * @param iterations the new number of iterations.
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1");
+        }
+
+        this.iterations = iterations;
+    }
+
+    /**
+     * Get how bouncy contacts are, as the fraction of the speed the bodies meet at
+     * that they separate at.
+     * 
+     * @return the restitution.
+     */
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /**
+     * Set how bouncy contacts are, as the fraction of the speed the bodies meet at
+     * that they separate at. A restitution of 0 lets bodies come to rest on each
+     * other. This method throws an IllegalArgumentException if the given
+     * restitution is not between 0 and 1.
+     * 
+     * @param restitution the new restitution.
+     */
+    public void setRestitution(double restitution) {
+        if (!(restitution >= 0 && restitution <= 1)) {
+            throw new IllegalArgumentException("restitution must be between 0 and 1");
+        }
+
+        this.restitution = restitution;
+    }
+
+    /**
+     * A reusable task that either solves every batch in order, or solves one chunk
+     * of a batch.
+     */
+    private class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from = -1, to = -1;
+
+        @Override
+        protected void compute() {
+            if (from < 0)
+                solveBatches();
+            else
+                solveRange(from, to);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package action.physics;
+
+import java.util.Arrays;
+
+/**
+ * A DeltaSnapshot holds the state of a PhysicsWorld as the difference from a
+ * keyframe WorldSnapshot of the same PhysicsWorld. Only the rows that changed
+ * since the keyframe are stored, so a DeltaSnapshot of a world where most
+ * bodies are at rest or static is much smaller than a full WorldSnapshot.
+ * Deltas are taken with PhysicsWorld.save and put back with
+ * PhysicsWorld.restore.
+ * 
+ * A DeltaSnapshot keeps a reference to its keyframe, which must not be saved
+ * over while the delta is still needed. Like a WorldSnapshot, a DeltaSnapshot
+ * is meant to be reused, and only allocates when more rows change than ever
+ * before. A ContactCache saved with a delta is copied whole, since its entries
+ * change every step.
+ */
+public class DeltaSnapshot {
+    // The number of double and int values stored for each changed row
+    static final int DOUBLES_PER_ROW = 15;
+    static final int INTS_PER_ROW = 3;
+
+    // The keyframe this delta was taken against, or null if nothing was saved yet
+    WorldSnapshot keyframe;
+
+    int rows, count;
+    int staticVersion;
+
+    // A copy of the ContactCache saved with the state, which is kept when a later
+    // save has none so that its table can be reused
+    ContactCache contacts;
+    boolean hasContacts;
+
+    // The ids of the rows that changed, and their values, row after row
+    int[] changedIds = new int[16];
+    int changedCount;
+    double[] doubleValues = new double[16 * DOUBLES_PER_ROW];
+    int[] intValues = new int[16 * INTS_PER_ROW];
+
+    int[] freeIds = new int[16];
+    int freeCount;
+
+    /**
+     * Check whether anything has been saved into this DeltaSnapshot yet.
+     * 
+     * @return true if this DeltaSnapshot holds no state.
+     */
+    public boolean isEmpty() {
+        return keyframe == null;
+    }
+
+    /**
+     * Access the keyframe this DeltaSnapshot was taken against.
+     * 
+     * @return the keyframe, or null if nothing was saved yet.
+     */
+    public WorldSnapshot getKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * Get the number of rows that changed since the keyframe.
+     * 
+     * @return the number of changed rows.
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Get the number of bodies in the saved state.
+     * 
+     * @return the number of bodies.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Add a changed row, and get the index of its values among the changed rows.
+     */
+    int addChanged(int id) {
+        if (changedCount == changedIds.length) {
+            int capacity = changedCount * 2;
+
+            changedIds = Arrays.copyOf(changedIds, capacity);
+            doubleValues = Arrays.copyOf(doubleValues, capacity * DOUBLES_PER_ROW);
+            intValues = Arrays.copyOf(intValues, capacity * INTS_PER_ROW);
+        }
+
+        changedIds[changedCount] = id;
+
+        return changedCount++;
+    }
+
+    void ensureFreeCapacity(int capacity) {
+        if (capacity > freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, Math.max(capacity, freeIds.length * 2));
+    }
+}
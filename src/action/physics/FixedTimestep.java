@@ -0,0 +1,124 @@
+package action.physics;
+
+/**
+ * A FixedTimestep turns the varying amount of time between frames into a whole
+ * number of simulation steps of equal length. Time that is left over is kept
+ * for the next frame, and the fraction of a step it represents can be used to
+ * interpolate between the last two simulated states when drawing.
+ * 
+ * The number of steps per frame is capped. Without a cap, a slow frame leads to
+ * more steps in the next frame, which makes that frame slower too, until the
+ * simulation can never catch up. Time beyond the cap is dropped, so the
+ * simulation runs slower than real time instead.
+ */
+public class FixedTimestep {
+    private double stepLength;
+    private int maxSteps;
+
+    private double accumulator;
+
+    /**
+     * Initialize a new FixedTimestep with the given step rate and cap on steps per
+     * frame.
+     * 
+     * @param stepsPerSecond the number of simulation steps per second.
+     * @param maxSteps       the highest number of steps run in a single frame.
+     */
+    public FixedTimestep(double stepsPerSecond, int maxSteps) {
+        setStepsPerSecond(stepsPerSecond);
+        setMaxSteps(maxSteps);
+    }
+
+    /**
+     * Add the time that has passed since the last frame, and find how many steps
+     * should be simulated to catch up.
+     * 
+     * @param deltaTime the time since the last frame, in seconds.
+     * @return the number of steps to simulate.
+     */
+    public int advance(double deltaTime) {
+        accumulator += Math.max(0, deltaTime);
+
+        int steps = (int) Math.min(maxSteps, Math.floor(accumulator / stepLength));
+        accumulator -= steps * stepLength;
+
+        // Drop the time that the capped number of steps could not cover
+        if (accumulator >= stepLength)
+            accumulator %= stepLength;
+
+        return steps;
+    }
+
+    /**
+     * Get how far the time left over after the last call to advance is towards
+     * the next step. This is 0 right after a step and approaches 1 just before the
+     * next one.
+     * 
+     * @return the interpolation factor between the previous and current state.
+     */
+    public double getAlpha() {
+        return accumulator / stepLength;
+    }
+
+    /**
+     * Discard any time left over from previous frames.
+     */
+    public void reset() {
+        accumulator = 0;
+    }
+
+    /**
+     * Get the length of each step.
+     * 
+     * @return the step length, in seconds.
+     */
+    public double getStepLength() {
+        return stepLength;
+    }
+
+    /**
+     * Get the number of steps per second.
+     * 
+     * @return the step rate.
+     */
+    public double getStepsPerSecond() {
+        return 1 / stepLength;
+    }
+
+    /**
+     * Set the number of steps per second. This method throws an
+     * IllegalArgumentException if the given rate is not a positive finite number.
+     * 
+     * @param stepsPerSecond the new step rate.
+     */
+    public void setStepsPerSecond(double stepsPerSecond) {
+        if (!(stepsPerSecond > 0) || Double.isInfinite(stepsPerSecond)) {
+            throw new IllegalArgumentException("stepsPerSecond must be a positive finite number");
+        }
+
+        stepLength = 1 / stepsPerSecond;
+    }
+
+    /**
+     * Get the highest number of steps run in a single frame.
+     * 
+     * @return the cap on steps per frame.
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Set the highest number of steps run in a single frame. This method throws an
+     * IllegalArgumentException if the given cap is less than 1.
+     * 
+     * @param maxSteps the new cap on steps per frame.
+     */
+    public void setMaxSteps(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be at least 1");
+        }
+
+        this.maxSteps = maxSteps;
+    }
+}
@@ -0,0 +1,163 @@
+package action.physics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A FrameProfiler measures how long each phase of a frame takes, and counts the
+ * collision work done in each step. Every measurement goes into a
+ * RollingHistogram so that the median, the 99th percentile and the maximum over
+ * recent frames can be read at any time.
+ * 
+ * Timings use System.nanoTime and are recorded without allocating, so the
+ * profiler can stay on in production. The simulation phases are recorded once
+ * per step, and the other phases once per frame.
+ */
+public class FrameProfiler {
+    public static final int DEFAULT_WINDOW = 240;
+
+    /**
+     * The phases of a frame that are timed. SYNC covers bringing the
+     * PhysicsWorld up to date with the GameObjects and streamed chunks, or with
+     * a simulation thread, which hands over the latest state. CONTROLLERS to
+     * INTEGRATE are the phases of each step. CLEAR covers restoring the canvas
+     * to the static background, and DRAW covers drawing the dynamic bodies over
+     * it.
+     */
+    public enum Phase {
+        SYNC, CONTROLLERS, CONTACTS, SOLVE, INTEGRATE, CLEAR, DRAW, FRAME
+    }
+
+    /**
+     * The amounts of work that are counted in each step.
+     */
+    public enum Counter {
+        PAIR_TESTS, CONTACTS
+    }
+
+    private final RollingHistogram[] phases = new RollingHistogram[Phase.values().length];
+    private final RollingHistogram[] counters = new RollingHistogram[Counter.values().length];
+
+    /**
+     * Initialize a new FrameProfiler that keeps the default number of recent
+     * samples.
+     */
+    public FrameProfiler() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Initialize a new FrameProfiler that keeps the given number of recent
+     * samples for each phase and counter.
+     * 
+     * @param window the number of recent samples to keep.
+     */
+    public FrameProfiler(int window) {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new RollingHistogram(window);
+        }
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new RollingHistogram(window);
+        }
+    }
+
+    /**
+     * Get the current time, to be passed to the first call to record.
+     * 
+     * @return the current time, in nanoseconds.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time since the given start as the duration of a phase. The
+     * current time is returned so that consecutive phases can be chained.
+     * 
+     * @param phase the phase that just finished.
+     * @param start the time the phase started, in nanoseconds.
+     * @return the current time, in nanoseconds.
+     */
+    public long record(Phase phase, long start) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].record(now - start);
+
+        return now;
+    }
+
+    /**
+     * Record the value of a counter for the current step.
+     * 
+     * @param counter the counter.
+     * @param value   the amount of work done.
+     */
+    public void count(Counter counter, long value) {
+        counters[counter.ordinal()].record(value);
+    }
+
+    /**
+     * Access the RollingHistogram of a phase's durations, in nanoseconds.
+     * 
+     * @param phase the phase.
+     * @return the phase's RollingHistogram.
+     */
+    public RollingHistogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * Access the RollingHistogram of a counter's values.
+     * 
+     * @param counter the counter.
+     * @return the counter's RollingHistogram.
+     */
+    public RollingHistogram getHistogram(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * Discard every recorded sample.
+     */
+    public void clear() {
+        for (RollingHistogram histogram : phases) {
+            histogram.clear();
+        }
+
+        for (RollingHistogram histogram : counters) {
+            histogram.clear();
+        }
+    }
+
+    /**
+     * Export the current statistics as a map from metric name to value, for
+     * monitoring to scrape. Phase durations are in nanoseconds and are named like
+     * "phase.contacts.p99". Counters are named like "counter.pair_tests.p50",
+     * and also have a running total.
+     * 
+     * @return the current statistics, in a stable order.
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+
+        for (Phase phase : Phase.values()) {
+            export(metrics, "phase." + phase.name().toLowerCase(), getHistogram(phase));
+        }
+
+        for (Counter counter : Counter.values()) {
+            String name = "counter." + counter.name().toLowerCase();
+            RollingHistogram histogram = getHistogram(counter);
+
+            export(metrics, name, histogram);
+            metrics.put(name + ".total", histogram.getTotal());
+        }
+
+        return metrics;
+    }
+
+    private static void export(Map<String, Long> metrics, String name, RollingHistogram histogram) {
+        metrics.put(name + ".p50", histogram.getPercentile(50));
+        metrics.put(name + ".p99", histogram.getPercentile(99));
+        metrics.put(name + ".max", histogram.getMax());
+    }
+}
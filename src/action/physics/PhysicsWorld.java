@@ -0,0 +1,2307 @@
+package action.physics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import action.collision.BoundingVolumeHierarchy;
+import action.collision.Bounds;
+import action.collision.Broadphase;
+import action.collision.ContactResult;
+import action.collision.Narrowphase;
+import action.collision.NearestCallback;
+import action.collision.PairCallback;
+import action.collision.QueryCallback;
+import action.collision.RayCallback;
+
+/**
+ * A PhysicsWorld stores the state of many capsule shaped bodies in contiguous
+ * columns of primitives, with one row per body. Bodies are identified by the
+ * index of their row, which stays the same for as long as the body exists.
+ * 
+ * Keeping the state in primitive arrays instead of objects means that moving
+ * bodies and resolving their collisions never allocates, and that the loops
+ * which do so walk memory in order.
+ * 
+ * When sleeping is enabled, bodies that come to rest are put to sleep and skip
+ * most of the work in each step. Moving a body, or changing its velocity or
+ * acceleration, through the methods of this class wakes it up again.
+ * 
+ * Static bodies are level geometry that never moves. They are kept out of the
+ * Broadphase and go into a BoundingVolumeHierarchy instead, which is only
+ * rebuilt when a static body is added, removed, moved or resized. Each moving
+ * body queries the tree for the static bodies near it, and pairs of static
+ * bodies are never tested at all.
+ * 
+ * Fast bodies can use continuous collision detection so that they do not pass
+ * through thin bodies between steps. When findContacts is given the length of
+ * the step, the box of each such body covers its whole movement in the step,
+ * and pairs that are not touching yet are swept to find their time of impact.
+ * The contact is solved with the normal at that time, and integrate moves the
+ * body to the point of impact before moving it on with its new velocity.
+ * 
+ * The spatial queries, raycast, queryPoint, queryBox, findNearest and
+ * findStatic, keep their state in this PhysicsWorld and share the traversal
+ * stacks of its trees, so only one query can run at a time. A query started
+ * while another is running, on another thread or from inside the other's
+ * callback, throws an IllegalStateException. Controllers that think in
+ * parallel should not query in think, and should instead cast their rays
+ * together with the batch raycast in applyMovement.
+ */
+public class PhysicsWorld {
+    /**
+     * Flag set on every row that holds a body.
+     */
+    public static final int ALIVE = 1;
+
+    /**
+     * Flag set on bodies that are asleep, which are not moved and are not tested
+     * against other sleeping bodies.
+     */
+    public static final int SLEEPING = 2;
+
+    /**
+     * Flag set on static bodies, which have infinite mass and are never moved by
+     * integrate.
+     */
+    public static final int STATIC = 4;
+
+    /**
+     * Flag set on bodies that always use continuous collision detection.
+     */
+    public static final int CONTINUOUS = 8;
+
+    // Flag set on bodies whose movement was swept by the last call to findContacts
+    private static final int SWEPT = 16;
+
+    public static final double DEFAULT_SLEEP_SPEED = 5;
+    public static final double DEFAULT_SLEEP_DELAY = 0.5;
+
+    private double[] pointAX, pointAY, pointBX, pointBY;
+    private double[] previousAX, previousAY, previousBX, previousBY;
+    private double[] velocityX, velocityY, accelerationX, accelerationY;
+    private double[] radius, mass;
+    private int[] flags;
+
+    // How long each body has been slow enough to sleep, and a circular linked list
+    // through the members of each sleeping island
+    private double[] sleepTimer;
+    private int[] islandNext;
+
+    // The movement predicted for each swept body in the current step, and the
+    // earliest time of impact found for it, as a fraction of the step
+    private double[] sweepX, sweepY, impactTime;
+
+    // How far each body has been moved by integrate in total, and a generation for
+    // each id that changes whenever its body is moved or resized in any other
+    // way, added or removed. Together they tell a ContactCache how far a pair
+    // could have closed, and whether its entries still belong to the same bodies.
+    private double[] travel;
+    private int[] generation;
+
+    // Changes whenever any body is moved, resized, added or removed other than by
+    // integrate, which tells the dynamic tree to rebuild
+    private int moveVersion;
+
+    // Changes whenever the bodies are put back into a saved state, which tells a
+    // ContactCache that the impulses it holds are from steps that are undone
+    private int restoreVersion;
+
+    // Rows at or above this index have never been used
+    private int rows;
+    private int count;
+
+    // Rows below the high water mark that were freed and can be reused
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    // Reused by findContacts so that finding collision pairs does not allocate
+    private final Bounds bounds = new Bounds();
+    private int[] boundsIds = new int[16];
+    private final PairCallback addContact = (i, j) -> addContact(boundsIds[i], boundsIds[j]);
+    private final ContactResult contact = new ContactResult();
+    private final ContactSolver defaultSolver = new ContactSolver();
+    private ContactSolver contactSolver;
+    private int pairTests;
+
+    // The static bodies, kept in their own tree and rebuilt only when they change
+    private final Bounds staticBounds = new Bounds();
+    private final BoundingVolumeHierarchy staticTree = new BoundingVolumeHierarchy();
+    private int[] staticIds = new int[16];
+    private int staticVersion = 1, builtStaticVersion;
+
+    // The PhysicsWorld and static version last restored from, and the static
+    // version it was given here, so that restoring copies of the same static
+    // bodies over and over does not rebuild the tree each time
+    private PhysicsWorld restoredSource;
+    private int restoredSourceVersion, restoredVersion;
+    private int queryId;
+    private final QueryCallback addStaticContact = index -> addContact(queryId, staticIds[index]);
+    private QueryCallback staticCallback;
+    private final QueryCallback findStaticId = index -> staticCallback.found(staticIds[index]);
+
+    // The tree over the dynamic bodies used by the spatial queries, rebuilt by the
+    // first query after any body moved, and the versions it was built at
+    private final Bounds dynamicBounds = new Bounds();
+    private final BoundingVolumeHierarchy dynamicTree = new BoundingVolumeHierarchy();
+    private int[] dynamicIds = new int[16];
+    private int positionVersion;
+    private int builtPositionVersion = -1, builtMoveVersion, builtDynamicStaticVersion;
+
+    // The state of the spatial query being run, and the callbacks that turn the
+    // trees' indices into body ids. Set while a query runs, so that a second one
+    // fails instead of overwriting its state.
+    private final AtomicBoolean querying = new AtomicBoolean();
+    private final ContactResult queryResult = new ContactResult();
+    private double queryAX, queryAY, queryBX, queryBY;
+    private double queryMaxX, queryMaxY;
+    private int queryIgnoreId;
+    private RayHit queryHit;
+    private QueryCallback queryCallback;
+    private int[] nearestIds;
+    private double[] nearestDistances;
+    private int nearestCount, nearestLimit;
+    private double nearestMaxDistance;
+    private final RayCallback staticRay = (index, maxFraction) -> rayBody(staticIds[index], maxFraction);
+    private final RayCallback dynamicRay = (index, maxFraction) -> rayBody(dynamicIds[index], maxFraction);
+    private final QueryCallback staticPoint = index -> pointBody(staticIds[index]);
+    private final QueryCallback dynamicPoint = index -> pointBody(dynamicIds[index]);
+    private final QueryCallback staticBox = index -> boxBody(staticIds[index]);
+    private final QueryCallback dynamicBox = index -> boxBody(dynamicIds[index]);
+    private final NearestCallback staticNearest = (index, maxDistance) -> nearestBody(staticIds[index]);
+    private final NearestCallback dynamicNearest = (index, maxDistance) -> nearestBody(dynamicIds[index]);
+
+    private boolean sleepingEnabled;
+    private double sleepSpeed = DEFAULT_SLEEP_SPEED;
+    private double sleepDelay = DEFAULT_SLEEP_DELAY;
+
+    private double continuousSpeed = Double.POSITIVE_INFINITY;
+    private double sweepTime;
+
+    // Reused by updateSleep to find islands with a union-find
+    private int[] islandParent = new int[0];
+    private double[] islandTimer = new double[0];
+
+    /**
+     * Initialize a new, empty PhysicsWorld with a small default capacity.
+     */
+    public PhysicsWorld() {
+        this(16);
+    }
+
+    /**
+     * Initialize a new, empty PhysicsWorld with room for the given number of
+     * bodies before it needs to grow.
+     * 
+     * @param capacity the initial capacity.
+     */
+    public PhysicsWorld(int capacity) {
+        capacity = Math.max(1, capacity);
+
+        pointAX = new double[capacity];
+        pointAY = new double[capacity];
+        pointBX = new double[capacity];
+        pointBY = new double[capacity];
+        previousAX = new double[capacity];
+        previousAY = new double[capacity];
+        previousBX = new double[capacity];
+        previousBY = new double[capacity];
+        velocityX = new double[capacity];
+        velocityY = new double[capacity];
+        accelerationX = new double[capacity];
+        accelerationY = new double[capacity];
+        radius = new double[capacity];
+        mass = new double[capacity];
+        flags = new int[capacity];
+        sleepTimer = new double[capacity];
+        islandNext = new int[capacity];
+        sweepX = new double[capacity];
+        sweepY = new double[capacity];
+        impactTime = new double[capacity];
+        travel = new double[capacity];
+        generation = new int[capacity];
+    }
+
+    /**
+     * Add a new body with the given endpoints, radius, and mass. The body starts
+     * with no velocity or acceleration.
+     * 
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the radius of the body.
+     * @param mass   the mass of the body.
+     * @return the id of the new body.
+     */
+    public int add(double ax, double ay, double bx, double by, double radius, double mass) {
+        checkRadius(radius);
+        checkMass(mass);
+
+        int id;
+
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (rows == flags.length)
+                grow(rows * 2);
+
+            id = rows++;
+        }
+
+        count++;
+        initRow(id, ax, ay, bx, by, radius, mass);
+
+        return id;
+    }
+
+    /**
+     * Put a body back into the state of a newly added one, with the given
+     * endpoints, radius, and mass, no velocity or acceleration, and no flags but
+     * ALIVE, while keeping its id. This lets a body be recycled for a new purpose
+     * without going through the free ids. This method throws an
+     * IllegalArgumentException if the given radius is less than 0 or the given
+     * mass is 0 or less.
+     * 
+     * @param id     the id of the body.
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the new radius of the body.
+     * @param mass   the new mass of the body.
+     */
+    public void reset(int id, double ax, double ay, double bx, double by, double radius, double mass) {
+        checkId(id);
+        checkRadius(radius);
+        checkMass(mass);
+        wake(id);
+        moveStatic(id);
+
+        initRow(id, ax, ay, bx, by, radius, mass);
+    }
+
+    private void initRow(int id, double ax, double ay, double bx, double by, double radius, double mass) {
+        pointAX[id] = ax;
+        pointAY[id] = ay;
+        pointBX[id] = bx;
+        pointBY[id] = by;
+        previousAX[id] = ax;
+        previousAY[id] = ay;
+        previousBX[id] = bx;
+        previousBY[id] = by;
+        velocityX[id] = 0;
+        velocityY[id] = 0;
+        accelerationX[id] = 0;
+        accelerationY[id] = 0;
+        this.radius[id] = radius;
+        this.mass[id] = mass;
+        flags[id] = ALIVE;
+        sleepTimer[id] = 0;
+        islandNext[id] = id;
+        generation[id]++;
+
+        moveVersion++;
+    }
+
+    /**
+     * Add a new body with the given endpoints, radius, and mass. The body starts
+     * with no velocity or acceleration.
+     * 
+     * @param a      the first endpoint.
+     * @param b      the second endpoint.
+     * @param radius the radius of the body.
+     * @param mass   the mass of the body.
+     * @return the id of the new body.
+     */
+    public int add(Vector2D a, Vector2D b, double radius, double mass) {
+        return add(a.getX(), a.getY(), b.getX(), b.getY(), radius, mass);
+    }
+
+    /**
+     * Add a new static body with the given endpoints and radius. The body has
+     * infinite mass and never moves.
+     * 
+     * @param ax     the x coordinate of the first endpoint.
+     * @param ay     the y coordinate of the first endpoint.
+     * @param bx     the x coordinate of the second endpoint.
+     * @param by     the y coordinate of the second endpoint.
+     * @param radius the radius of the body.
+     * @return the id of the new body.
+     */
+    public int addStatic(double ax, double ay, double bx, double by, double radius) {
+        int id = add(ax, ay, bx, by, radius, Double.POSITIVE_INFINITY);
+        setStatic(id, true);
+
+        return id;
+    }
+
+    /**
+     * Add a copy of a body from another PhysicsWorld, including its velocity and
+     * acceleration.
+     * 
+     * @param source the PhysicsWorld holding the body to copy.
+     * @param id     the id of the body in the source PhysicsWorld.
+     * @return the id of the new body in this PhysicsWorld.
+     */
+    public int addCopy(PhysicsWorld source, int id) {
+        source.checkId(id);
+
+        int copy = add(source.pointAX[id], source.pointAY[id], source.pointBX[id], source.pointBY[id],
+                source.radius[id], source.mass[id]);
+
+        previousAX[copy] = source.previousAX[id];
+        previousAY[copy] = source.previousAY[id];
+        previousBX[copy] = source.previousBX[id];
+        previousBY[copy] = source.previousBY[id];
+        velocityX[copy] = source.velocityX[id];
+        velocityY[copy] = source.velocityY[id];
+        accelerationX[copy] = source.accelerationX[id];
+        accelerationY[copy] = source.accelerationY[id];
+
+        if (source.isStatic(id))
+            setStatic(copy, true);
+
+        if (source.isContinuous(id))
+            flags[copy] |= CONTINUOUS;
+
+        return copy;
+    }
+
+    /**
+     * Remove a body. Its id may be reused by a body added later.
+     * 
+     * @param id the id of the body to remove.
+     */
+    public void remove(int id) {
+        checkId(id);
+        wake(id);
+
+        if ((flags[id] & STATIC) != 0)
+            staticVersion++;
+
+        flags[id] = 0;
+        count--;
+        generation[id]++;
+        moveVersion++;
+
+        if (freeCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Check whether the given id refers to a body in this PhysicsWorld.
+     * 
+     * @param id the id to check.
+     * @return true if the id refers to a body.
+     */
+    public boolean isAlive(int id) {
+        return id >= 0 && id < rows && (flags[id] & ALIVE) != 0;
+    }
+
+    /**
+     * Get the generation of an id, which changes whenever a body is added with
+     * the id, reset, removed, or moved or resized other than by integrate. A
+     * ContactCache stores the generations of both bodies of a pair, so that its
+     * entries are dropped when either body changes that way, and a body that
+     * reuses the id of a removed one never inherits its entries.
+     * 
+     * @param id the id of the body.
+     * @return the generation of the id.
+     */
+    public int getGeneration(int id) {
+        return generation[id];
+    }
+
+    /**
+     * Get the number of bodies in this PhysicsWorld.
+     * 
+     * @return the number of bodies.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get one more than the highest id that has ever been used. Every body's id is
+     * lower than this value, so it can be used to loop over all of the rows.
+     * 
+     * @return the number of rows in use.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get a hash of the state of every body, in order of their ids: its
+     * position, velocity, acceleration, radius, mass and flags. Two PhysicsWorlds
+     * that have the same hash are almost certainly in exactly the same state, so
+     * this can be used to check that a simulation was reproduced bit for bit.
+     * 
+     * The ids themselves are left out, so a PhysicsWorld with freed rows hashes
+     * the same as a copy of it with the bodies packed together, such as one
+     * written by a LevelWriter and loaded back.
+     * 
+     * @return the hash of every body's state.
+     */
+    public long getStateHash() {
+        long hash = 0xcbf29ce484222325L;
+        int index = 0;
+
+        for (int id = 0; id < rows; id++) {
+            if ((flags[id] & ALIVE) == 0)
+                continue;
+
+            hash = mix(hash, index++);
+            hash = mix(hash, flags[id] & (ALIVE | SLEEPING | STATIC | CONTINUOUS));
+            hash = mix(hash, Double.doubleToLongBits(pointAX[id]));
+            hash = mix(hash, Double.doubleToLongBits(pointAY[id]));
+            hash = mix(hash, Double.doubleToLongBits(pointBX[id]));
+            hash = mix(hash, Double.doubleToLongBits(pointBY[id]));
+            hash = mix(hash, Double.doubleToLongBits(velocityX[id]));
+            hash = mix(hash, Double.doubleToLongBits(velocityY[id]));
+            hash = mix(hash, Double.doubleToLongBits(accelerationX[id]));
+            hash = mix(hash, Double.doubleToLongBits(accelerationY[id]));
+            hash = mix(hash, Double.doubleToLongBits(radius[id]));
+            hash = mix(hash, Double.doubleToLongBits(mass[id]));
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Save the complete state of this PhysicsWorld into a WorldSnapshot, replacing
+     * whatever it held before.
+     * 
+     * @param snapshot the WorldSnapshot to save into.
+     */
+    public void save(WorldSnapshot snapshot) {
+        snapshot.ensureCapacity(rows);
+        snapshot.ensureFreeCapacity(freeCount);
+
+        System.arraycopy(pointAX, 0, snapshot.pointAX, 0, rows);
+        System.arraycopy(pointAY, 0, snapshot.pointAY, 0, rows);
+        System.arraycopy(pointBX, 0, snapshot.pointBX, 0, rows);
+        System.arraycopy(pointBY, 0, snapshot.pointBY, 0, rows);
+        System.arraycopy(previousAX, 0, snapshot.previousAX, 0, rows);
+        System.arraycopy(previousAY, 0, snapshot.previousAY, 0, rows);
+        System.arraycopy(previousBX, 0, snapshot.previousBX, 0, rows);
+        System.arraycopy(previousBY, 0, snapshot.previousBY, 0, rows);
+        System.arraycopy(velocityX, 0, snapshot.velocityX, 0, rows);
+        System.arraycopy(velocityY, 0, snapshot.velocityY, 0, rows);
+        System.arraycopy(accelerationX, 0, snapshot.accelerationX, 0, rows);
+        System.arraycopy(accelerationY, 0, snapshot.accelerationY, 0, rows);
+        System.arraycopy(radius, 0, snapshot.radius, 0, rows);
+        System.arraycopy(mass, 0, snapshot.mass, 0, rows);
+        System.arraycopy(sleepTimer, 0, snapshot.sleepTimer, 0, rows);
+        System.arraycopy(flags, 0, snapshot.flags, 0, rows);
+        System.arraycopy(islandNext, 0, snapshot.islandNext, 0, rows);
+        System.arraycopy(generation, 0, snapshot.generation, 0, rows);
+        System.arraycopy(freeIds, 0, snapshot.freeIds, 0, freeCount);
+
+        snapshot.world = this;
+        snapshot.rows = rows;
+        snapshot.count = count;
+        snapshot.freeCount = freeCount;
+        snapshot.staticVersion = staticVersion;
+        snapshot.hasContacts = false;
+    }
+
+    /**
+     * Save the complete state of this PhysicsWorld into a WorldSnapshot, along
+     * with a copy of the ContactCache used to simulate it. Restoring both with
+     * restore(WorldSnapshot, ContactCache) lets the steps after the snapshot be
+     * simulated again exactly as they were the first time.
+     * 
+     * @param snapshot the WorldSnapshot to save into.
+     * @param cache    the ContactCache to save, or null to save none.
+     */
+    public void save(WorldSnapshot snapshot, ContactCache cache) {
+        save(snapshot);
+
+        if (cache != null)
+            snapshot.contacts = saveContacts(cache, snapshot.contacts);
+
+        snapshot.hasContacts = cache != null;
+    }
+
+    /**
+     * Put this PhysicsWorld back into the state saved in a WorldSnapshot. The
+     * snapshot may have been taken from another PhysicsWorld, in which case this
+     * PhysicsWorld becomes a copy of it. This method throws an
+     * IllegalArgumentException if the snapshot is empty.
+     * 
+     * The impulses that a ContactCache holds for this PhysicsWorld are from steps
+     * after the snapshot, so the cache forgets them in the next call to
+     * findContacts, and the steps that follow start every contact from nothing.
+     * Use restore(WorldSnapshot, ContactCache) to put the cache back as well.
+     * 
+     * @param snapshot the WorldSnapshot to restore.
+     */
+    public void restore(WorldSnapshot snapshot) {
+        if (snapshot.isEmpty()) {
+            throw new IllegalArgumentException("snapshot is empty");
+        }
+
+        restoreColumns(snapshot);
+        restoreStaticVersion(snapshot.world, snapshot.staticVersion);
+    }
+
+    /**
+     * Put this PhysicsWorld back into the state saved in a WorldSnapshot, and the
+     * given ContactCache back into the state saved with it. If no ContactCache was
+     * saved in the snapshot, the given one is cleared. This method throws an
+     * IllegalArgumentException if the snapshot is empty.
+     * 
+     * @param snapshot the WorldSnapshot to restore.
+     * @param cache    the ContactCache used to simulate this PhysicsWorld.
+     */
+    public void restore(WorldSnapshot snapshot, ContactCache cache) {
+        restore(snapshot);
+        restoreContacts(cache, snapshot.hasContacts ? snapshot.contacts : null);
+    }
+
+    /**
+     * Save the state of this PhysicsWorld into a DeltaSnapshot, as the difference
+     * from a keyframe taken from this PhysicsWorld earlier. This method throws an
+     * IllegalArgumentException if the keyframe was not taken from this
+     * PhysicsWorld.
+     * 
+     * @param delta    the DeltaSnapshot to save into.
+     * @param keyframe the WorldSnapshot to compare against.
+     */
+    public void save(DeltaSnapshot delta, WorldSnapshot keyframe) {
+        if (keyframe.world != this) {
+            throw new IllegalArgumentException("keyframe must be a snapshot of this world");
+        }
+
+        delta.changedCount = 0;
+
+        for (int id = 0; id < rows; id++) {
+            if (id < keyframe.rows && !changedSince(keyframe, id))
+                continue;
+
+            int index = delta.addChanged(id);
+            double[] values = delta.doubleValues;
+            int i = index * DeltaSnapshot.DOUBLES_PER_ROW;
+
+            values[i] = pointAX[id];
+            values[i + 1] = pointAY[id];
+            values[i + 2] = pointBX[id];
+            values[i + 3] = pointBY[id];
+            values[i + 4] = previousAX[id];
+            values[i + 5] = previousAY[id];
+            values[i + 6] = previousBX[id];
+            values[i + 7] = previousBY[id];
+            values[i + 8] = velocityX[id];
+            values[i + 9] = velocityY[id];
+            values[i + 10] = accelerationX[id];
+            values[i + 11] = accelerationY[id];
+            values[i + 12] = radius[id];
+            values[i + 13] = mass[id];
+            values[i + 14] = sleepTimer[id];
+
+            delta.intValues[index * DeltaSnapshot.INTS_PER_ROW] = flags[id];
+            delta.intValues[index * DeltaSnapshot.INTS_PER_ROW + 1] = islandNext[id];
+            delta.intValues[index * DeltaSnapshot.INTS_PER_ROW + 2] = generation[id];
+        }
+
+        delta.ensureFreeCapacity(freeCount);
+        System.arraycopy(freeIds, 0, delta.freeIds, 0, freeCount);
+
+        delta.keyframe = keyframe;
+        delta.rows = rows;
+        delta.count = count;
+        delta.freeCount = freeCount;
+        delta.staticVersion = staticVersion;
+        delta.hasContacts = false;
+    }
+
+    /**
+     * Save the state of this PhysicsWorld into a DeltaSnapshot, as the difference
+     * from a keyframe taken from this PhysicsWorld earlier, along with a full copy
+     * of the ContactCache used to simulate it. This method throws an
+     * IllegalArgumentException if the keyframe was not taken from this
+     * PhysicsWorld.
+     * 
+     * @param delta    the DeltaSnapshot to save into.
+     * @param keyframe the WorldSnapshot to compare against.
+     * @param cache    the ContactCache to save, or null to save none.
+     */
+    public void save(DeltaSnapshot delta, WorldSnapshot keyframe, ContactCache cache) {
+        save(delta, keyframe);
+
+        if (cache != null)
+            delta.contacts = saveContacts(cache, delta.contacts);
+
+        delta.hasContacts = cache != null;
+    }
+
+    /**
+     * Put this PhysicsWorld back into the state saved in a DeltaSnapshot. The
+     * delta's keyframe is restored first, then the rows that changed since it.
+     * This method throws an IllegalArgumentException if the delta is empty.
+     * 
+     * As with a WorldSnapshot, a ContactCache used with this PhysicsWorld forgets
+     * its impulses. Use restore(DeltaSnapshot, ContactCache) to put the cache back
+     * as well.
+     * 
+     * @param delta the DeltaSnapshot to restore.
+     */
+    public void restore(DeltaSnapshot delta) {
+        if (delta.isEmpty()) {
+            throw new IllegalArgumentException("delta is empty");
+        }
+
+        restoreColumns(delta.keyframe);
+        ensureCapacity(delta.rows);
+
+        for (int index = 0; index < delta.changedCount; index++) {
+            int id = delta.changedIds[index];
+            double[] values = delta.doubleValues;
+            int i = index * DeltaSnapshot.DOUBLES_PER_ROW;
+
+            pointAX[id] = values[i];
+            pointAY[id] = values[i + 1];
+            pointBX[id] = values[i + 2];
+            pointBY[id] = values[i + 3];
+            previousAX[id] = values[i + 4];
+            previousAY[id] = values[i + 5];
+            previousBX[id] = values[i + 6];
+            previousBY[id] = values[i + 7];
+            velocityX[id] = values[i + 8];
+            velocityY[id] = values[i + 9];
+            accelerationX[id] = values[i + 10];
+            accelerationY[id] = values[i + 11];
+            radius[id] = values[i + 12];
+            mass[id] = values[i + 13];
+            sleepTimer[id] = values[i + 14];
+
+            flags[id] = delta.intValues[index * DeltaSnapshot.INTS_PER_ROW];
+            islandNext[id] = delta.intValues[index * DeltaSnapshot.INTS_PER_ROW + 1];
+            generation[id] = delta.intValues[index * DeltaSnapshot.INTS_PER_ROW + 2];
+        }
+
+        if (delta.freeCount > freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, delta.freeCount);
+
+        System.arraycopy(delta.freeIds, 0, freeIds, 0, delta.freeCount);
+
+        rows = delta.rows;
+        count = delta.count;
+        freeCount = delta.freeCount;
+
+        restoreStaticVersion(delta.keyframe.world, delta.staticVersion);
+    }
+
+    /**
+     * Put this PhysicsWorld back into the state saved in a DeltaSnapshot, and the
+     * given ContactCache back into the state saved with it. If no ContactCache was
+     * saved in the delta, the given one is cleared. This method throws an
+     * IllegalArgumentException if the delta is empty.
+     * 
+     * @param delta the DeltaSnapshot to restore.
+     * @param cache the ContactCache used to simulate this PhysicsWorld.
+     */
+    public void restore(DeltaSnapshot delta, ContactCache cache) {
+        restore(delta);
+        restoreContacts(cache, delta.hasContacts ? delta.contacts : null);
+    }
+
+    private static ContactCache saveContacts(ContactCache cache, ContactCache copy) {
+        if (copy == null)
+            copy = new ContactCache();
+
+        copy.copy(cache);
+
+        return copy;
+    }
+
+    private void restoreContacts(ContactCache cache, ContactCache saved) {
+        if (cache == null)
+            return;
+
+        if (saved != null)
+            cache.copy(saved);
+        else
+            cache.clear();
+
+        // The restored impulses belong to the restored state, so they are kept
+        cache.attach(this, restoreVersion);
+    }
+
+    private void restoreColumns(WorldSnapshot snapshot) {
+        int rows = snapshot.rows;
+
+        ensureCapacity(rows);
+        moveVersion++;
+        restoreVersion++;
+
+        System.arraycopy(snapshot.pointAX, 0, pointAX, 0, rows);
+        System.arraycopy(snapshot.pointAY, 0, pointAY, 0, rows);
+        System.arraycopy(snapshot.pointBX, 0, pointBX, 0, rows);
+        System.arraycopy(snapshot.pointBY, 0, pointBY, 0, rows);
+        System.arraycopy(snapshot.previousAX, 0, previousAX, 0, rows);
+        System.arraycopy(snapshot.previousAY, 0, previousAY, 0, rows);
+        System.arraycopy(snapshot.previousBX, 0, previousBX, 0, rows);
+        System.arraycopy(snapshot.previousBY, 0, previousBY, 0, rows);
+        System.arraycopy(snapshot.velocityX, 0, velocityX, 0, rows);
+        System.arraycopy(snapshot.velocityY, 0, velocityY, 0, rows);
+        System.arraycopy(snapshot.accelerationX, 0, accelerationX, 0, rows);
+        System.arraycopy(snapshot.accelerationY, 0, accelerationY, 0, rows);
+        System.arraycopy(snapshot.radius, 0, radius, 0, rows);
+        System.arraycopy(snapshot.mass, 0, mass, 0, rows);
+        System.arraycopy(snapshot.sleepTimer, 0, sleepTimer, 0, rows);
+        System.arraycopy(snapshot.flags, 0, flags, 0, rows);
+        System.arraycopy(snapshot.islandNext, 0, islandNext, 0, rows);
+        System.arraycopy(snapshot.generation, 0, generation, 0, rows);
+
+        if (snapshot.freeCount > freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, snapshot.freeCount);
+
+        System.arraycopy(snapshot.freeIds, 0, freeIds, 0, snapshot.freeCount);
+
+        this.rows = rows;
+        count = snapshot.count;
+        freeCount = snapshot.freeCount;
+    }
+
+    /**
+     * Rebuild the static tree after a restore unless the static bodies are known
+     * to be the same as before it. The version only ever grows, so an equal
+     * version from this same PhysicsWorld means nothing changed, and so does an
+     * equal version from the same source as the last restore if nothing changed
+     * here since.
+     */
+    private void restoreStaticVersion(PhysicsWorld source, int savedVersion) {
+        if (source == this && savedVersion == staticVersion)
+            return;
+
+        if (source == restoredSource && savedVersion == restoredSourceVersion && staticVersion == restoredVersion)
+            return;
+
+        staticVersion++;
+
+        restoredSource = source;
+        restoredSourceVersion = savedVersion;
+        restoredVersion = staticVersion;
+    }
+
+    private boolean changedSince(WorldSnapshot keyframe, int id) {
+        // Rows that were dead then and are dead now hold nothing worth keeping
+        if (flags[id] != keyframe.flags[id] || generation[id] != keyframe.generation[id])
+            return true;
+
+        if ((flags[id] & ALIVE) == 0)
+            return false;
+
+        return islandNext[id] != keyframe.islandNext[id] || differs(pointAX, keyframe.pointAX, id)
+                || differs(pointAY, keyframe.pointAY, id) || differs(pointBX, keyframe.pointBX, id)
+                || differs(pointBY, keyframe.pointBY, id) || differs(previousAX, keyframe.previousAX, id)
+                || differs(previousAY, keyframe.previousAY, id) || differs(previousBX, keyframe.previousBX, id)
+                || differs(previousBY, keyframe.previousBY, id) || differs(velocityX, keyframe.velocityX, id)
+                || differs(velocityY, keyframe.velocityY, id) || differs(accelerationX, keyframe.accelerationX, id)
+                || differs(accelerationY, keyframe.accelerationY, id) || differs(radius, keyframe.radius, id)
+                || differs(mass, keyframe.mass, id) || differs(sleepTimer, keyframe.sleepTimer, id);
+    }
+
+    private static boolean differs(double[] current, double[] saved, int id) {
+        return Double.doubleToRawLongBits(current[id]) != Double.doubleToRawLongBits(saved[id]);
+    }
+
+    /**
+     * Make sure this PhysicsWorld has room for the given number of rows without
+     * growing again, so that a known number of bodies can be added without
+     * copying the columns more than once.
+     * 
+     * @param capacity the number of rows needed.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > flags.length)
+            grow(capacity);
+    }
+
+    /**
+     * Remember the current position of every body as its previous position. This
+     * is done at the start of each step so that drawing can interpolate between
+     * the last two steps.
+     * 
+     * @see #getInterpolatedAX(int, double)
+     */
+    public void storePreviousPositions() {
+        System.arraycopy(pointAX, 0, previousAX, 0, rows);
+        System.arraycopy(pointAY, 0, previousAY, 0, rows);
+        System.arraycopy(pointBX, 0, previousBX, 0, rows);
+        System.arraycopy(pointBY, 0, previousBY, 0, rows);
+    }
+
+    /**
+     * Move every body by its velocity multiplied by the given amount of time in
+     * seconds, after first adjusting the velocity by the body's acceleration.
+     * 
+     * @param deltaTime the amount of time by which to move the bodies, given in
+     *                  seconds.
+     */
+    public void integrate(double deltaTime) {
+        positionVersion++;
+
+        for (int id = 0; id < rows; id++) {
+            if ((flags[id] & (ALIVE | SLEEPING | STATIC)) == ALIVE)
+                integrateRow(id, deltaTime);
+        }
+    }
+
+    /**
+     * Move a single body by its velocity multiplied by the given amount of time in
+     * seconds, after first adjusting the velocity by the body's acceleration.
+     * Static bodies are not moved.
+     * 
+     * @param id        the id of the body to move.
+     * @param deltaTime the amount of time by which to move the body, given in
+     *                  seconds.
+     */
+    public void integrate(int id, double deltaTime) {
+        checkId(id);
+
+        if ((flags[id] & STATIC) != 0)
+            return;
+
+        wake(id);
+        positionVersion++;
+        integrateRow(id, deltaTime);
+    }
+
+    private void integrateRow(int id, double deltaTime) {
+        velocityX[id] += accelerationX[id] * deltaTime;
+        velocityY[id] += accelerationY[id] * deltaTime;
+
+        double dx = velocityX[id] * deltaTime;
+        double dy = velocityY[id] * deltaTime;
+
+        // Move a swept body to its first impact along the predicted path, then on
+        // with the velocity it has after the impact
+        if ((flags[id] & SWEPT) != 0) {
+            double t = impactTime[id];
+
+            if (t < 1) {
+                dx = sweepX[id] * t + dx * (1 - t);
+                dy = sweepY[id] * t + dy * (1 - t);
+            }
+
+            flags[id] &= ~SWEPT;
+        }
+
+        pointAX[id] += dx;
+        pointAY[id] += dy;
+        pointBX[id] += dx;
+        pointBY[id] += dy;
+
+        // The taxicab length is never shorter than the real one
+        travel[id] += Math.abs(dx) + Math.abs(dy);
+    }
+
+    /**
+     * Resolve the collisions between all bodies. The given Broadphase picks the
+     * pairs that are close enough to need an exact test.
+     * 
+     * @param broadphase the Broadphase used to find candidate pairs.
+     */
+    public void collide(Broadphase broadphase) {
+        findContacts(broadphase, defaultSolver);
+        defaultSolver.solve(this);
+    }
+
+    /**
+     * Find every pair of touching bodies and add it to the given ContactSolver,
+     * without changing any velocities yet. The contacts between moving bodies are
+     * added in the order the Broadphase reports them, followed by the contacts
+     * with static bodies, after clearing any contacts left in the solver.
+     * 
+     * @param broadphase the Broadphase used to find candidate pairs.
+     * @param solver     the ContactSolver to add the contacts to.
+     */
+    public void findContacts(Broadphase broadphase, ContactSolver solver) {
+        findContacts(broadphase, solver, 0);
+    }
+
+    /**
+     * Find every pair of touching bodies and add it to the given ContactSolver,
+     * along with the pairs that will touch during a step of the given length if
+     * either body uses continuous collision detection. The contacts between moving
+     * bodies are added in the order the Broadphase reports them, followed by the
+     * contacts with static bodies, after clearing any contacts left in the solver.
+     * 
+     * The swept bodies are moved to their first impact by the next call to
+     * integrate, which should be given the same step length.
+     * 
+     * @param broadphase the Broadphase used to find candidate pairs.
+     * @param solver     the ContactSolver to add the contacts to.
+     * @param deltaTime  the length of the step, in seconds, or 0 to only find the
+     *                   pairs that are touching now.
+     */
+    public void findContacts(Broadphase broadphase, ContactSolver solver, double deltaTime) {
+        bounds.clear();
+
+        // Forget the impulses from steps undone by a restore, before they can be used
+        if (solver.getCache() != null)
+            solver.getCache().follow(this, restoreVersion);
+
+        solver.clear();
+        contactSolver = solver;
+        pairTests = 0;
+
+        if (boundsIds.length < count)
+            boundsIds = new int[Math.max(count, boundsIds.length * 2)];
+
+        if (builtStaticVersion != staticVersion)
+            buildStaticTree();
+
+        sweepTime = deltaTime;
+
+        for (int id = 0; id < rows; id++) {
+            if ((flags[id] & (ALIVE | STATIC)) != ALIVE)
+                continue;
+
+            flags[id] &= ~SWEPT;
+
+            if (deltaTime > 0 && needsSweep(id)) {
+                boundsIds[addSweep(id)] = id;
+                continue;
+            }
+
+            boundsIds[bounds.addCapsule(pointAX[id], pointAY[id], pointBX[id], pointBY[id], radius[id])] = id;
+        }
+
+        broadphase.findPairs(bounds, addContact);
+
+        // Sleeping bodies cannot start a collision with a static body
+        if (staticTree.size() > 0) {
+            for (int b = 0; b < bounds.size(); b++) {
+                queryId = boundsIds[b];
+
+                if ((flags[queryId] & SLEEPING) == 0)
+                    staticTree.query(bounds.getMinX(b), bounds.getMinY(b), bounds.getMaxX(b), bounds.getMaxY(b),
+                            addStaticContact);
+            }
+        }
+
+        contactSolver = null;
+    }
+
+    /**
+     * Get the number of candidate pairs that the Broadphase or the static tree
+     * reported, and that were tested exactly, in the last call to findContacts.
+     * Pairs that the ContactSolver's ContactCache knew to be apart are not
+     * tested, so they are not counted.
+     * 
+     * @return the number of pair tests.
+     */
+    public int getPairTestCount() {
+        return pairTests;
+    }
+
+    private boolean needsSweep(int id) {
+        if ((flags[id] & SLEEPING) != 0)
+            return false;
+
+        if ((flags[id] & CONTINUOUS) != 0)
+            return true;
+
+        double speedSquared = velocityX[id] * velocityX[id] + velocityY[id] * velocityY[id];
+
+        return speedSquared > continuousSpeed * continuousSpeed;
+    }
+
+    // Add the box that covers a body's whole movement in the coming step
+    private int addSweep(int id) {
+        double dx = predictMoveX(id);
+        double dy = predictMoveY(id);
+
+        sweepX[id] = dx;
+        sweepY[id] = dy;
+        impactTime[id] = 1;
+        flags[id] |= SWEPT;
+
+        double r = radius[id];
+        double minX = Math.min(pointAX[id], pointBX[id]), maxX = Math.max(pointAX[id], pointBX[id]);
+        double minY = Math.min(pointAY[id], pointBY[id]), maxY = Math.max(pointAY[id], pointBY[id]);
+
+        return bounds.add(Math.min(minX, minX + dx) - r, Math.min(minY, minY + dy) - r, Math.max(maxX, maxX + dx) + r,
+                Math.max(maxY, maxY + dy) + r);
+    }
+
+    private void addContact(int i, int j) {
+        // Two bodies that are both at rest cannot start a collision
+        if (!isMoving(i) && !isMoving(j))
+            return;
+
+        ContactCache cache = contactSolver.getCache();
+        boolean swept = ((flags[i] | flags[j]) & SWEPT) != 0;
+
+        if (cache != null && !swept && cache.isSeparated(i, j, generation[i], generation[j], travel[i], travel[j]))
+            return;
+
+        pairTests++;
+
+        boolean touching = Narrowphase.touching(pointAX[i], pointAY[i], pointBX[i], pointBY[i], pointAX[j],
+                pointAY[j], pointBX[j], pointBY[j], radius[i] + radius[j], contact);
+
+        // Remember how far apart the pair is, so it need not be tested again until
+        // the bodies could have closed the gap
+        if (!touching && !swept && cache != null)
+            cache.putSeparation(i, j, generation[i], generation[j],
+                    Math.sqrt(contact.getDistanceSquared()) - radius[i] - radius[j], travel[i], travel[j]);
+
+        if (!touching && !sweepContact(i, j))
+            return;
+
+        // A moving body that touches a sleeping one wakes its whole island
+        wake(i);
+        wake(j);
+
+        contactSolver.add(i, j, contact.getNormalX(), contact.getNormalY());
+    }
+
+    /**
+     * Find every static body whose bounding box overlaps the given box. The
+     * static tree is rebuilt first if the static bodies have changed.
+     * 
+     * @param minX     the lowest x coordinate of the box.
+     * @param minY     the lowest y coordinate of the box.
+     * @param maxX     the highest x coordinate of the box.
+     * @param maxY     the highest y coordinate of the box.
+     * @param callback the QueryCallback that receives the id of each static body
+     *                 found.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public void findStatic(double minX, double minY, double maxX, double maxY, QueryCallback callback) {
+        beginQuery();
+
+        try {
+            if (builtStaticVersion != staticVersion)
+                buildStaticTree();
+
+            staticCallback = callback;
+            staticTree.query(minX, minY, maxX, maxY, findStaticId);
+        } finally {
+            staticCallback = null;
+            querying.set(false);
+        }
+    }
+
+    /**
+     * Cast a ray, the segment from one point to another, through this
+     * PhysicsWorld and find the first body it hits. A body that the ray starts
+     * inside is hit at once.
+     * 
+     * @param ax  the x coordinate of the start of the ray.
+     * @param ay  the y coordinate of the start of the ray.
+     * @param bx  the x coordinate of the end of the ray.
+     * @param by  the y coordinate of the end of the ray.
+     * @param hit the RayHit to write the first hit to.
+     * @return true if the ray hit a body.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public boolean raycast(double ax, double ay, double bx, double by, RayHit hit) {
+        return raycast(ax, ay, bx, by, -1, hit);
+    }
+
+    /**
+     * Cast a ray, the segment from one point to another, through this
+     * PhysicsWorld and find the first body it hits, other than the given one. This
+     * lets a ray start inside the body that casts it, as for line of sight.
+     * 
+     * @param ax       the x coordinate of the start of the ray.
+     * @param ay       the y coordinate of the start of the ray.
+     * @param bx       the x coordinate of the end of the ray.
+     * @param by       the y coordinate of the end of the ray.
+     * @param ignoreId the id of a body the ray passes through, or -1 for none.
+     * @param hit      the RayHit to write the first hit to.
+     * @return true if the ray hit a body.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public boolean raycast(double ax, double ay, double bx, double by, int ignoreId, RayHit hit) {
+        beginQuery();
+
+        try {
+            prepareQueries();
+            return castRay(ax, ay, bx, by, ignoreId, hit);
+        } finally {
+            querying.set(false);
+        }
+    }
+
+    /**
+     * Cast many rays through this PhysicsWorld at once, finding the first body
+     * each one hits, other than the given one. The rays are given as the start and
+     * end coordinates of each in turn, as ax, ay, bx, by. Casting rays together
+     * only brings the trees up to date once, which suits the many rays of AI
+     * vision cast from one body.
+     * 
+     * @param rays     the start and end coordinates of every ray.
+     * @param count    the number of rays.
+     * @param ignoreId the id of a body the rays pass through, or -1 for none.
+     * @param hits     the RayHits to write the first hit of each ray to, in the
+     *                 same order as the rays. A ray that hits nothing leaves its
+     *                 RayHit with an id of -1.
+     * @return the number of rays that hit a body.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public int raycast(double[] rays, int count, int ignoreId, RayHit[] hits) {
+        beginQuery();
+
+        try {
+            prepareQueries();
+
+            int hitCount = 0;
+
+            for (int r = 0; r < count; r++) {
+                int i = r * 4;
+
+                if (castRay(rays[i], rays[i + 1], rays[i + 2], rays[i + 3], ignoreId, hits[r]))
+                    hitCount++;
+            }
+
+            return hitCount;
+        } finally {
+            querying.set(false);
+        }
+    }
+
+    /**
+     * Find every body that holds the given point. A point on a body's surface
+     * counts as inside.
+     * 
+     * @param x        the x coordinate of the point.
+     * @param y        the y coordinate of the point.
+     * @param callback the QueryCallback that receives the id of each body found.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public void queryPoint(double x, double y, QueryCallback callback) {
+        beginQuery();
+
+        try {
+            prepareQueries();
+
+            queryAX = x;
+            queryAY = y;
+            queryCallback = callback;
+
+            dynamicTree.query(x, y, x, y, dynamicPoint);
+            staticTree.query(x, y, x, y, staticPoint);
+        } finally {
+            queryCallback = null;
+            querying.set(false);
+        }
+    }
+
+    /**
+     * Find every body that overlaps the given box. A body that only touches the
+     * box counts as overlapping.
+     * 
+     * @param minX     the lowest x coordinate of the box.
+     * @param minY     the lowest y coordinate of the box.
+     * @param maxX     the highest x coordinate of the box.
+     * @param maxY     the highest y coordinate of the box.
+     * @param callback the QueryCallback that receives the id of each body found.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public void queryBox(double minX, double minY, double maxX, double maxY, QueryCallback callback) {
+        beginQuery();
+
+        try {
+            prepareQueries();
+
+            queryAX = minX;
+            queryAY = minY;
+            queryMaxX = maxX;
+            queryMaxY = maxY;
+            queryCallback = callback;
+
+            dynamicTree.query(minX, minY, maxX, maxY, dynamicBox);
+            staticTree.query(minX, minY, maxX, maxY, staticBox);
+        } finally {
+            queryCallback = null;
+            querying.set(false);
+        }
+    }
+
+    /**
+     * Find the bodies nearest to a point, measured to their surfaces, up to the
+     * length of the given arrays. The distance to a body that holds the point is
+     * negative. The bodies are written in order of distance, nearest first.
+     * 
+     * @param x           the x coordinate of the point.
+     * @param y           the y coordinate of the point.
+     * @param maxDistance the furthest a body's surface can be from the point to be
+     *                    found.
+     * @param ids         the array to write the id of each body found to. Its
+     *                    length is the most bodies found.
+     * @param distances   the array to write the distance to each body found to, at
+     *                    least as long as the array of ids.
+     * @return the number of bodies found.
+     * @throws IllegalStateException if another query on this PhysicsWorld is
+     *                               running.
+     */
+    public int findNearest(double x, double y, double maxDistance, int[] ids, double[] distances) {
+        if (distances.length < ids.length) {
+            throw new IllegalArgumentException("distances must be at least as long as ids");
+        }
+
+        beginQuery();
+
+        try {
+            prepareQueries();
+
+            queryAX = x;
+            queryAY = y;
+            nearestIds = ids;
+            nearestDistances = distances;
+            nearestCount = 0;
+            nearestLimit = ids.length;
+            nearestMaxDistance = maxDistance;
+
+            if (nearestLimit > 0) {
+                dynamicTree.nearest(x, y, maxDistance, dynamicNearest);
+                staticTree.nearest(x, y, nearestBound(), staticNearest);
+            }
+
+            return nearestCount;
+        } finally {
+            nearestIds = null;
+            nearestDistances = null;
+            querying.set(false);
+        }
+    }
+
+    // Claim the query state, or fail if another query holds it
+    private void beginQuery() {
+        if (!querying.compareAndSet(false, true)) {
+            throw new IllegalStateException(
+                    "another query on this PhysicsWorld is running, and queries must not run at the same time");
+        }
+    }
+
+    // Bring both trees up to date with the bodies before a query
+    private void prepareQueries() {
+        if (builtStaticVersion != staticVersion)
+            buildStaticTree();
+
+        if (builtPositionVersion == positionVersion && builtMoveVersion == moveVersion
+                && builtDynamicStaticVersion == staticVersion)
+            return;
+
+        dynamicBounds.clear();
+
+        for (int id = 0; id < rows; id++) {
+            if ((flags[id] & (ALIVE | STATIC)) != ALIVE)
+                continue;
+
+            int index = dynamicBounds.addCapsule(pointAX[id], pointAY[id], pointBX[id], pointBY[id], radius[id]);
+
+            if (index == dynamicIds.length)
+                dynamicIds = Arrays.copyOf(dynamicIds, index * 2);
+
+            dynamicIds[index] = id;
+        }
+
+        dynamicTree.build(dynamicBounds);
+
+        builtPositionVersion = positionVersion;
+        builtMoveVersion = moveVersion;
+        builtDynamicStaticVersion = staticVersion;
+    }
+
+    private boolean castRay(double ax, double ay, double bx, double by, int ignoreId, RayHit hit) {
+        queryAX = ax;
+        queryAY = ay;
+        queryBX = bx;
+        queryBY = by;
+        queryIgnoreId = ignoreId;
+        queryHit = hit;
+        hit.id = -1;
+
+        dynamicTree.raycast(ax, ay, bx, by, dynamicRay);
+        staticTree.raycast(ax, ay, bx, by, staticRay);
+
+        queryHit = null;
+
+        return hit.id >= 0;
+    }
+
+    // Keep the hit if it is the closest so far, and only search the ray up to the
+    // closest hit from then on
+    private double rayBody(int id, double maxFraction) {
+        RayHit hit = queryHit;
+
+        if (id == queryIgnoreId)
+            return maxFraction;
+
+        double fraction = Narrowphase.raycast(queryAX, queryAY, queryBX, queryBY, pointAX[id], pointAY[id],
+                pointBX[id], pointBY[id], radius[id], queryResult);
+
+        if (fraction >= 0 && (hit.id < 0 || fraction < hit.fraction)) {
+            hit.id = id;
+            hit.fraction = fraction;
+            hit.x = queryResult.getFirstX();
+            hit.y = queryResult.getFirstY();
+            hit.normalX = queryResult.getNormalX();
+            hit.normalY = queryResult.getNormalY();
+        }
+
+        return hit.id < 0 ? maxFraction : hit.fraction;
+    }
+
+    private void pointBody(int id) {
+        if (Narrowphase.contains(queryAX, queryAY, pointAX[id], pointAY[id], pointBX[id], pointBY[id], radius[id]))
+            queryCallback.found(id);
+    }
+
+    private void boxBody(int id) {
+        if (Narrowphase.overlapsBox(pointAX[id], pointAY[id], pointBX[id], pointBY[id], radius[id], queryAX, queryAY,
+                queryMaxX, queryMaxY))
+            queryCallback.found(id);
+    }
+
+    // Insert a body into the sorted results if it is near enough, and narrow the
+    // search to the furthest result once there are enough
+    private double nearestBody(int id) {
+        double distance = Narrowphase.distance(queryAX, queryAY, pointAX[id], pointAY[id], pointBX[id], pointBY[id],
+                radius[id]);
+
+        if (distance <= nearestMaxDistance && (nearestCount < nearestLimit
+                || distance < nearestDistances[nearestCount - 1])) {
+            int i = Math.min(nearestCount, nearestLimit - 1);
+
+            while (i > 0 && nearestDistances[i - 1] > distance) {
+                nearestIds[i] = nearestIds[i - 1];
+                nearestDistances[i] = nearestDistances[i - 1];
+                i--;
+            }
+
+            nearestIds[i] = id;
+            nearestDistances[i] = distance;
+            nearestCount = Math.min(nearestCount + 1, nearestLimit);
+        }
+
+        return nearestBound();
+    }
+
+    // A box at a distance of 0 may still hold a body that is further inside than
+    // the results so far, so the search never narrows below 0
+    private double nearestBound() {
+        if (nearestCount < nearestLimit)
+            return nearestMaxDistance;
+
+        return Math.max(0, nearestDistances[nearestCount - 1]);
+    }
+
+    private void buildStaticTree() {
+        staticBounds.clear();
+
+        for (int id = 0; id < rows; id++) {
+            if ((flags[id] & (ALIVE | STATIC)) != (ALIVE | STATIC))
+                continue;
+
+            int index = staticBounds.addCapsule(pointAX[id], pointAY[id], pointBX[id], pointBY[id], radius[id]);
+
+            if (index == staticIds.length)
+                staticIds = Arrays.copyOf(staticIds, index * 2);
+
+            staticIds[index] = id;
+        }
+
+        staticTree.build(staticBounds);
+        builtStaticVersion = staticVersion;
+    }
+
+    // Find whether two bodies that are not touching yet will touch during the
+    // step, if either of them is swept
+    private boolean sweepContact(int i, int j) {
+        if (((flags[i] | flags[j]) & SWEPT) == 0)
+            return false;
+
+        double moveX = predictMoveX(i) - predictMoveX(j);
+        double moveY = predictMoveY(i) - predictMoveY(j);
+
+        double t = Narrowphase.timeOfImpact(pointAX[i], pointAY[i], pointBX[i], pointBY[i], pointAX[j], pointAY[j],
+                pointBX[j], pointBY[j], moveX, moveY, radius[i] + radius[j], contact);
+
+        if (t < 0)
+            return false;
+
+        if ((flags[i] & SWEPT) != 0)
+            impactTime[i] = Math.min(impactTime[i], t);
+
+        if ((flags[j] & SWEPT) != 0)
+            impactTime[j] = Math.min(impactTime[j], t);
+
+        return true;
+    }
+
+    // The distance a body will move in the coming step, if nothing stops it
+    private double predictMoveX(int id) {
+        if ((flags[id] & (SLEEPING | STATIC)) != 0)
+            return 0;
+
+        return (velocityX[id] + accelerationX[id] * sweepTime) * sweepTime;
+    }
+
+    private double predictMoveY(int id) {
+        if ((flags[id] & (SLEEPING | STATIC)) != 0)
+            return 0;
+
+        return (velocityY[id] + accelerationY[id] * sweepTime) * sweepTime;
+    }
+
+    private boolean isMoving(int id) {
+        if ((flags[id] & SLEEPING) != 0)
+            return false;
+
+        return mass[id] != Double.POSITIVE_INFINITY || velocityX[id] != 0 || velocityY[id] != 0;
+    }
+
+    /**
+     * Put islands of bodies that have been slow for long enough to sleep. An
+     * island is a group of finite-mass bodies connected through the contacts in
+     * the given ContactSolver. All bodies in an island fall asleep together once
+     * every one of them has stayed below the sleep speed for the sleep delay, and
+     * wake together when any one of them is hit or moved.
+     * 
+     * Sleeping bodies are not moved by integrate, and pairs of bodies that are
+     * both asleep or static are not tested for collisions. This method does
+     * nothing unless sleeping is enabled.
+     * 
+     * @param deltaTime the length of the step that just finished, in seconds.
+     * @param solver    the ContactSolver holding the contacts from the step.
+     */
+    public void updateSleep(double deltaTime, ContactSolver solver) {
+        if (!sleepingEnabled)
+            return;
+
+        if (islandParent.length < rows) {
+            islandParent = new int[flags.length];
+            islandTimer = new double[flags.length];
+        }
+
+        double sleepSpeedSquared = sleepSpeed * sleepSpeed;
+
+        // Update how long each awake body has been slow, and start each one in an
+        // island of its own
+        for (int id = 0; id < rows; id++) {
+            islandParent[id] = -1;
+
+            if (!canSleep(id))
+                continue;
+
+            double speedSquared = velocityX[id] * velocityX[id] + velocityY[id] * velocityY[id];
+            sleepTimer[id] = speedSquared < sleepSpeedSquared ? sleepTimer[id] + deltaTime : 0;
+
+            islandParent[id] = id;
+            islandTimer[id] = Double.POSITIVE_INFINITY;
+        }
+
+        // Join the islands of bodies that touch. A body pushed by a moving
+        // infinite-mass body must stay awake.
+        for (int c = 0; c < solver.getCount(); c++) {
+            int i = solver.getFirst(c);
+            int j = solver.getSecond(c);
+
+            if (islandParent[i] >= 0 && islandParent[j] >= 0) {
+                islandParent[findIsland(i)] = findIsland(j);
+            } else if (islandParent[i] >= 0 && isMoving(j)) {
+                sleepTimer[i] = 0;
+            } else if (islandParent[j] >= 0 && isMoving(i)) {
+                sleepTimer[j] = 0;
+            }
+        }
+
+        // Each island can sleep once its most recently active body can
+        for (int id = 0; id < rows; id++) {
+            if (islandParent[id] >= 0) {
+                int root = findIsland(id);
+                islandTimer[root] = Math.min(islandTimer[root], sleepTimer[id]);
+            }
+        }
+
+        for (int id = 0; id < rows; id++) {
+            if (islandParent[id] < 0)
+                continue;
+
+            int root = findIsland(id);
+
+            if (islandTimer[root] < sleepDelay)
+                continue;
+
+            flags[id] |= SLEEPING;
+            velocityX[id] = 0;
+            velocityY[id] = 0;
+
+            // Link the body into its island's circular list so it can be woken with it
+            if (id != root) {
+                islandNext[id] = islandNext[root];
+                islandNext[root] = id;
+            }
+        }
+    }
+
+    private boolean canSleep(int id) {
+        return (flags[id] & (ALIVE | SLEEPING)) == ALIVE && mass[id] != Double.POSITIVE_INFINITY;
+    }
+
+    private int findIsland(int id) {
+        while (islandParent[id] != id) {
+            islandParent[id] = islandParent[islandParent[id]];
+            id = islandParent[id];
+        }
+
+        return id;
+    }
+
+    /**
+     * Check whether a body is static.
+     * 
+     * @param id the id of the body.
+     * @return true if the body is static.
+     */
+    public boolean isStatic(int id) {
+        return (flags[id] & STATIC) != 0;
+    }
+
+    /**
+     * Make a body static or dynamic. A static body must have infinite mass, and
+     * this method throws an IllegalArgumentException if it does not. Making a body
+     * static stops it, so its velocity and acceleration are set to 0.
+     * 
+     * @param id       the id of the body.
+     * @param isStatic true to make the body static.
+     */
+    public void setStatic(int id, boolean isStatic) {
+        checkId(id);
+
+        if (isStatic == isStatic(id))
+            return;
+
+        if (isStatic) {
+            if (mass[id] != Double.POSITIVE_INFINITY) {
+                throw new IllegalArgumentException("a static body must have infinite mass");
+            }
+
+            wake(id);
+
+            velocityX[id] = 0;
+            velocityY[id] = 0;
+            accelerationX[id] = 0;
+            accelerationY[id] = 0;
+            flags[id] |= STATIC;
+        } else {
+            flags[id] &= ~STATIC;
+        }
+
+        staticVersion++;
+    }
+
+    /**
+     * Check whether a body always uses continuous collision detection.
+     * 
+     * @param id the id of the body.
+     * @return true if the body always uses continuous collision detection.
+     */
+    public boolean isContinuous(int id) {
+        return (flags[id] & CONTINUOUS) != 0;
+    }
+
+    /**
+     * Set whether a body always uses continuous collision detection, however slow
+     * it is moving. Bodies faster than the continuous speed use it anyway.
+     * 
+     * @param id         the id of the body.
+     * @param continuous true to always use continuous collision detection.
+     */
+    public void setContinuous(int id, boolean continuous) {
+        checkId(id);
+
+        if (continuous)
+            flags[id] |= CONTINUOUS;
+        else
+            flags[id] &= ~CONTINUOUS;
+    }
+
+    /**
+     * Get the speed above which every body uses continuous collision detection.
+     * 
+     * @return the continuous speed, in pixels per second.
+     */
+    public double getContinuousSpeed() {
+        return continuousSpeed;
+    }
+
+    /**
+     * Set the speed above which every body uses continuous collision detection.
+     * The default is infinite, so that only bodies marked as continuous use it.
+     * 
+     * @param continuousSpeed the new continuous speed, in pixels per second.
+     */
+    public void setContinuousSpeed(double continuousSpeed) {
+        this.continuousSpeed = continuousSpeed;
+    }
+
+    /**
+     * Get a number that changes whenever a static body is added, removed, moved or
+     * resized, so that anything built from the static bodies can tell when it
+     * needs rebuilding.
+     * 
+     * @return the current version of the static bodies.
+     */
+    public int getStaticVersion() {
+        return staticVersion;
+    }
+
+    /**
+     * Wake a sleeping body, along with every other body in its island. Nothing
+     * happens if the body is awake.
+     * 
+     * @param id the id of the body.
+     */
+    public void wake(int id) {
+        if ((flags[id] & SLEEPING) == 0)
+            return;
+
+        int member = id;
+
+        do {
+            int next = islandNext[member];
+
+            flags[member] &= ~SLEEPING;
+            sleepTimer[member] = 0;
+            islandNext[member] = member;
+
+            member = next;
+        } while (member != id);
+    }
+
+    /**
+     * Wake every body and forget how long each has been resting, which puts the
+     * bodies in the same sleep state as those just loaded from a level file.
+     */
+    public void resetSleep() {
+        for (int id = 0; id < rows; id++) {
+            wake(id);
+            sleepTimer[id] = 0;
+        }
+    }
+
+    /**
+     * Check whether a body is asleep.
+     * 
+     * @param id the id of the body.
+     * @return true if the body is asleep.
+     */
+    public boolean isSleeping(int id) {
+        return (flags[id] & SLEEPING) != 0;
+    }
+
+    /**
+     * Check whether bodies are allowed to fall asleep.
+     * 
+     * @return true if sleeping is enabled.
+     */
+    public boolean isSleepingEnabled() {
+        return sleepingEnabled;
+    }
+
+    /**
+     * Allow or stop bodies from falling asleep. Disabling sleeping wakes every
+     * sleeping body.
+     * 
+     * @param sleepingEnabled true to enable sleeping.
+     */
+    public void setSleepingEnabled(boolean sleepingEnabled) {
+        this.sleepingEnabled = sleepingEnabled;
+
+        if (!sleepingEnabled) {
+            for (int id = 0; id < rows; id++) {
+                wake(id);
+            }
+        }
+    }
+
+    /**
+     * Get the speed below which a body counts as resting.
+     * 
+     * @return the sleep speed, in pixels per second.
+     */
+    public double getSleepSpeed() {
+        return sleepSpeed;
+    }
+
+    /**
+     * Set the speed below which a body counts as resting.
+     * 
+     * @param sleepSpeed the new sleep speed, in pixels per second.
+     */
+    public void setSleepSpeed(double sleepSpeed) {
+        this.sleepSpeed = sleepSpeed;
+    }
+
+    /**
+     * Get how long every body in an island must rest before the island sleeps.
+     * 
+     * @return the sleep delay, in seconds.
+     */
+    public double getSleepDelay() {
+        return sleepDelay;
+    }
+
+    /**
+     * Set how long every body in an island must rest before the island sleeps.
+     * 
+     * @param sleepDelay the new sleep delay, in seconds.
+     */
+    public void setSleepDelay(double sleepDelay) {
+        this.sleepDelay = sleepDelay;
+    }
+
+    /**
+     * Resolve a possible collision between two bodies in this PhysicsWorld.
+     * 
+     * @param i the id of the first body.
+     * @param j the id of the second body.
+     * @return true if the bodies were touching and moving together, so their
+     *         velocities were changed.
+     */
+    public boolean resolveContact(int i, int j) {
+        return resolveContact(this, i, this, j);
+    }
+
+    /**
+     * Resolve a possible collision between two bodies that may belong to different
+     * PhysicsWorlds.
+     * 
+     * @param first  the PhysicsWorld holding the first body.
+     * @param i      the id of the first body.
+     * @param second the PhysicsWorld holding the second body.
+     * @param j      the id of the second body.
+     * @return true if the bodies were touching and moving together, so their
+     *         velocities were changed.
+     * @see #solveContact(int, int, double, double)
+     */
+    public static boolean resolveContact(PhysicsWorld first, int i, PhysicsWorld second, int j) {
+        if (first == second && i == j)
+            return false;
+
+        ContactResult contact = first.contact;
+
+        // If they are not touching, do nothing
+        if (!Narrowphase.touching(first.pointAX[i], first.pointAY[i], first.pointBX[i], first.pointBY[i],
+                second.pointAX[j], second.pointAY[j], second.pointBX[j], second.pointBY[j],
+                first.radius[i] + second.radius[j], contact))
+            return false;
+
+        return solveContact(first, i, second, j, contact.getNormalX(), contact.getNormalY());
+    }
+
+    /**
+     * Apply the collision response between two touching bodies in this
+     * PhysicsWorld. Both bodies are treated as perfectly elastic, and a body with
+     * infinite mass behaves like a very very heavy body.
+     * 
+     * Only the velocities of the two bodies are read and written, and the velocity
+     * of a body with infinite mass is never written unless the other body's mass
+     * is infinite too. This is what lets a ContactSolver run contacts that share
+     * no written body at the same time.
+     * 
+     * @param i       the id of the first body.
+     * @param j       the id of the second body.
+     * @param normalX the x component of the unit contact normal, pointing from the
+     *                first body towards the second.
+     * @param normalY the y component of the unit contact normal.
+     * @return true if the bodies were moving together, so their velocities were
+     *         changed.
+     */
+    public boolean solveContact(int i, int j, double normalX, double normalY) {
+        return solveContact(this, i, this, j, normalX, normalY);
+    }
+
+    private static boolean solveContact(PhysicsWorld first, int i, PhysicsWorld second, int j, double normalX,
+            double normalY) {
+        double u1 = first.velocityX[i] * normalX + first.velocityY[i] * normalY;
+        double u2 = second.velocityX[j] * normalX + second.velocityY[j] * normalY;
+
+        // If the bodies are moving apart already, do not apply any collision forces
+        if (u1 - u2 <= 0)
+            return false;
+
+        double firstMass = first.mass[i];
+        double secondMass = second.mass[j];
+
+        // Adjust to avoid errors if a body has infinite mass
+        if (firstMass == secondMass) {
+            firstMass = 1;
+            secondMass = 1;
+        } else if (firstMass == Double.POSITIVE_INFINITY) {
+            firstMass = 1;
+            secondMass = 0;
+        } else if (secondMass == Double.POSITIVE_INFINITY) {
+            firstMass = 0;
+            secondMass = 1;
+        }
+
+        double inverseTotalMass = 1 / (firstMass + secondMass);
+
+        // v1 and v2 are the final speeds in the direction of the applied force
+        double v1 = u1 * ((firstMass - secondMass) * inverseTotalMass) + u2 * (2 * secondMass * inverseTotalMass);
+        double v2 = u2 * ((secondMass - firstMass) * inverseTotalMass) + u1 * (2 * firstMass * inverseTotalMass);
+
+        // Replace the initial speed in the direction of force with the final speed.
+        // A body with infinite mass keeps its speed anyway, so it is left untouched.
+        if (secondMass != 0) {
+            first.velocityX[i] += (v1 - u1) * normalX;
+            first.velocityY[i] += (v1 - u1) * normalY;
+        }
+
+        if (firstMass != 0) {
+            second.velocityX[j] += (v2 - u2) * normalX;
+            second.velocityY[j] += (v2 - u2) * normalY;
+        }
+
+        return true;
+    }
+
+    // How fast two bodies are moving towards each other along a contact normal
+    double getApproachSpeed(int i, int j, double normalX, double normalY) {
+        return (velocityX[i] - velocityX[j]) * normalX + (velocityY[i] - velocityY[j]) * normalY;
+    }
+
+    // How fast two bodies are speeding up towards each other along a contact
+    // normal
+    double getApproachAcceleration(int i, int j, double normalX, double normalY) {
+        return (accelerationX[i] - accelerationX[j]) * normalX + (accelerationY[i] - accelerationY[j]) * normalY;
+    }
+
+    // Push two bodies apart along a contact normal, changing their relative speed
+    // along it by the given impulse. The impulse is shared between the bodies the
+    // same way as in solveContact, and a body that takes no share is not written.
+    void applyImpulse(int i, int j, double normalX, double normalY, double impulse) {
+        double firstShare = share(mass[i], mass[j]);
+        double secondShare = share(mass[j], mass[i]);
+
+        if (firstShare != 0) {
+            velocityX[i] -= impulse * firstShare * normalX;
+            velocityY[i] -= impulse * firstShare * normalY;
+        }
+
+        if (secondShare != 0) {
+            velocityX[j] += impulse * secondShare * normalX;
+            velocityY[j] += impulse * secondShare * normalY;
+        }
+    }
+
+    // Make two bodies separate along a contact normal at the target speed, without
+    // the impulse built up for the contact so far going below 0, and return the
+    // new total impulse
+    double solveContact(int i, int j, double normalX, double normalY, double target, double impulse) {
+        double total = Math.max(0, impulse + getApproachSpeed(i, j, normalX, normalY) + target);
+
+        if (total != impulse)
+            applyImpulse(i, j, normalX, normalY, total - impulse);
+
+        return total;
+    }
+
+    // The part of a change in relative speed taken by a body, which matches the
+    // elastic response in solveContact: a body with infinite mass takes none of
+    // it against a finite body, and bodies of equal mass split it evenly
+    private static double share(double mass, double otherMass) {
+        if (mass == otherMass)
+            return 0.5;
+
+        if (mass == Double.POSITIVE_INFINITY)
+            return 0;
+
+        if (otherMass == Double.POSITIVE_INFINITY)
+            return 1;
+
+        return otherMass / (mass + otherMass);
+    }
+
+    /**
+     * Get a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the first endpoint.
+     */
+    public Vector2D getA(int id) {
+        return new Vector2D(pointAX[id], pointAY[id]);
+    }
+
+    /**
+     * Get a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the second endpoint.
+     */
+    public Vector2D getB(int id) {
+        return new Vector2D(pointBX[id], pointBY[id]);
+    }
+
+    /**
+     * Get a body's velocity.
+     * 
+     * @param id the id of the body.
+     * @return the velocity.
+     */
+    public Vector2D getVelocity(int id) {
+        return new Vector2D(velocityX[id], velocityY[id]);
+    }
+
+    /**
+     * Set a body's velocity.
+     * 
+     * @param id       the id of the body.
+     * @param velocity the new velocity.
+     */
+    public void setVelocity(int id, Vector2D velocity) {
+        setVelocity(id, velocity.getX(), velocity.getY());
+    }
+
+    /**
+     * Get a body's acceleration.
+     * 
+     * @param id the id of the body.
+     * @return the acceleration.
+     */
+    public Vector2D getAcceleration(int id) {
+        return new Vector2D(accelerationX[id], accelerationY[id]);
+    }
+
+    /**
+     * Set a body's acceleration.
+     * 
+     * @param id           the id of the body.
+     * @param acceleration the new acceleration.
+     */
+    public void setAcceleration(int id, Vector2D acceleration) {
+        setAcceleration(id, acceleration.getX(), acceleration.getY());
+    }
+
+    /**
+     * Get the x coordinate of a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the x coordinate of the first endpoint.
+     */
+    public double getAX(int id) {
+        return pointAX[id];
+    }
+
+    /**
+     * Get the y coordinate of a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the y coordinate of the first endpoint.
+     */
+    public double getAY(int id) {
+        return pointAY[id];
+    }
+
+    /**
+     * Set a body's first endpoint.
+     * 
+     * @param id the id of the body.
+     * @param x  the new x coordinate.
+     * @param y  the new y coordinate.
+     */
+    public void setA(int id, double x, double y) {
+        wake(id);
+        moveStatic(id);
+
+        pointAX[id] = x;
+        pointAY[id] = y;
+    }
+
+    /**
+     * Get the x coordinate of a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the x coordinate of the second endpoint.
+     */
+    public double getBX(int id) {
+        return pointBX[id];
+    }
+
+    /**
+     * Get the y coordinate of a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @return the y coordinate of the second endpoint.
+     */
+    public double getBY(int id) {
+        return pointBY[id];
+    }
+
+    /**
+     * Set a body's second endpoint.
+     * 
+     * @param id the id of the body.
+     * @param x  the new x coordinate.
+     * @param y  the new y coordinate.
+     */
+    public void setB(int id, double x, double y) {
+        wake(id);
+        moveStatic(id);
+
+        pointBX[id] = x;
+        pointBY[id] = y;
+    }
+
+    /**
+     * Get the x coordinate of a body's first endpoint, interpolated between its
+     * previous and current positions.
+     * 
+     * @param id    the id of the body.
+     * @param alpha how far to go from the previous position, from 0 to 1.
+     * @return the interpolated x coordinate of the first endpoint.
+     */
+    public double getInterpolatedAX(int id, double alpha) {
+        return previousAX[id] + (pointAX[id] - previousAX[id]) * alpha;
+    }
+
+    /**
+     * Get the y coordinate of a body's first endpoint, interpolated between its
+     * previous and current positions.
+     * 
+     * @param id    the id of the body.
+     * @param alpha how far to go from the previous position, from 0 to 1.
+     * @return the interpolated y coordinate of the first endpoint.
+     */
+    public double getInterpolatedAY(int id, double alpha) {
+        return previousAY[id] + (pointAY[id] - previousAY[id]) * alpha;
+    }
+
+    /**
+     * Get the x coordinate of a body's second endpoint, interpolated between its
+     * previous and current positions.
+     * 
+     * @param id    the id of the body.
+     * @param alpha how far to go from the previous position, from 0 to 1.
+     * @return the interpolated x coordinate of the second endpoint.
+     */
+    public double getInterpolatedBX(int id, double alpha) {
+        return previousBX[id] + (pointBX[id] - previousBX[id]) * alpha;
+    }
+
+    /**
+     * Get the y coordinate of a body's second endpoint, interpolated between its
+     * previous and current positions.
+     * 
+     * @param id    the id of the body.
+     * @param alpha how far to go from the previous position, from 0 to 1.
+     * @return the interpolated y coordinate of the second endpoint.
+     */
+    public double getInterpolatedBY(int id, double alpha) {
+        return previousBY[id] + (pointBY[id] - previousBY[id]) * alpha;
+    }
+
+    /**
+     * Shift both of a body's endpoints by the given offset.
+     * 
+     * @param id the id of the body.
+     * @param dx the offset along the x axis.
+     * @param dy the offset along the y axis.
+     */
+    public void translate(int id, double dx, double dy) {
+        wake(id);
+        moveStatic(id);
+
+        pointAX[id] += dx;
+        pointAY[id] += dy;
+        pointBX[id] += dx;
+        pointBY[id] += dy;
+    }
+
+    /**
+     * Get the x component of a body's velocity.
+     * 
+     * @param id the id of the body.
+     * @return the x component of the velocity.
+     */
+    public double getVelocityX(int id) {
+        return velocityX[id];
+    }
+
+    /**
+     * Get the y component of a body's velocity.
+     * 
+     * @param id the id of the body.
+     * @return the y component of the velocity.
+     */
+    public double getVelocityY(int id) {
+        return velocityY[id];
+    }
+
+    /**
+     * Set a body's velocity.
+     * 
+     * @param id the id of the body.
+     * @param x  the new x component.
+     * @param y  the new y component.
+     */
+    public void setVelocity(int id, double x, double y) {
+        if (x != velocityX[id] || y != velocityY[id])
+            wake(id);
+
+        velocityX[id] = x;
+        velocityY[id] = y;
+    }
+
+    /**
+     * Get the x component of a body's acceleration.
+     * 
+     * @param id the id of the body.
+     * @return the x component of the acceleration.
+     */
+    public double getAccelerationX(int id) {
+        return accelerationX[id];
+    }
+
+    /**
+     * Get the y component of a body's acceleration.
+     * 
+     * @param id the id of the body.
+     * @return the y component of the acceleration.
+     */
+    public double getAccelerationY(int id) {
+        return accelerationY[id];
+    }
+
+    /**
+     * Set a body's acceleration.
+     * 
+     * @param id the id of the body.
+     * @param x  the new x component.
+     * @param y  the new y component.
+     */
+    public void setAcceleration(int id, double x, double y) {
+        if (x != accelerationX[id] || y != accelerationY[id])
+            wake(id);
+
+        accelerationX[id] = x;
+        accelerationY[id] = y;
+    }
+
+    /**
+     * Get a body's radius.
+     * 
+     * @param id the id of the body.
+     * @return the radius.
+     */
+    public double getRadius(int id) {
+        return radius[id];
+    }
+
+    /**
+     * Set a body's radius. This method throws an IllegalArgumentException if the
+     * given radius is less than 0.
+     * 
+     * @param id     the id of the body.
+     * @param radius the new radius.
+     */
+    public void setRadius(int id, double radius) {
+        checkRadius(radius);
+        moveStatic(id);
+        this.radius[id] = radius;
+    }
+
+    /**
+     * Get a body's mass.
+     * 
+     * @param id the id of the body.
+     * @return the mass.
+     */
+    public double getMass(int id) {
+        return mass[id];
+    }
+
+    /**
+     * Set a body's mass. This method throws an IllegalArgumentException if the
+     * given mass is 0 or less, or if the body is static and the given mass is not
+     * infinite.
+     * 
+     * @param id   the id of the body.
+     * @param mass the new mass.
+     */
+    public void setMass(int id, double mass) {
+        checkMass(mass);
+
+        if ((flags[id] & STATIC) != 0 && mass != Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("a static body must have infinite mass");
+        }
+
+        this.mass[id] = mass;
+    }
+
+    // The static tree must be rebuilt before the next step if a static body
+    // moves, and no pair with the body can be known to be apart any more
+    private void moveStatic(int id) {
+        if ((flags[id] & STATIC) != 0)
+            staticVersion++;
+
+        generation[id]++;
+        moveVersion++;
+    }
+
+    private void grow(int capacity) {
+        pointAX = Arrays.copyOf(pointAX, capacity);
+        pointAY = Arrays.copyOf(pointAY, capacity);
+        pointBX = Arrays.copyOf(pointBX, capacity);
+        pointBY = Arrays.copyOf(pointBY, capacity);
+        previousAX = Arrays.copyOf(previousAX, capacity);
+        previousAY = Arrays.copyOf(previousAY, capacity);
+        previousBX = Arrays.copyOf(previousBX, capacity);
+        previousBY = Arrays.copyOf(previousBY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        accelerationX = Arrays.copyOf(accelerationX, capacity);
+        accelerationY = Arrays.copyOf(accelerationY, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        sleepTimer = Arrays.copyOf(sleepTimer, capacity);
+        islandNext = Arrays.copyOf(islandNext, capacity);
+        sweepX = Arrays.copyOf(sweepX, capacity);
+        sweepY = Arrays.copyOf(sweepY, capacity);
+        impactTime = Arrays.copyOf(impactTime, capacity);
+        travel = Arrays.copyOf(travel, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+    }
+
+    private void checkId(int id) {
+        if (!isAlive(id)) {
+            throw new IllegalArgumentException("no body with id " + id);
+        }
+    }
+
+    private static void checkRadius(double radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must greater than or equal to 0");
+        }
+    }
+
+    private static void checkMass(double mass) {
+        if (mass <= 0) {
+            throw new IllegalArgumentException("mass must be greater than 0");
+        }
+    }
+}
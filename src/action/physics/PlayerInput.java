@@ -0,0 +1,84 @@
+package action.physics;
+
+/**
+ * The PlayerInput class holds the movement rule for player input, so that the
+ * same input moves a body the same way whether it comes from the keyboard, a
+ * replay, or a network client. Input is a set of bits, one for each direction
+ * held.
+ */
+public final class PlayerInput {
+    /**
+     * The input bit set while moving up.
+     */
+    public static final int UP = 1;
+
+    /**
+     * The input bit set while moving down.
+     */
+    public static final int DOWN = 2;
+
+    /**
+     * The input bit set while moving left.
+     */
+    public static final int LEFT = 4;
+
+    /**
+     * The input bit set while moving right.
+     */
+    public static final int RIGHT = 8;
+
+    /**
+     * Every input bit.
+     */
+    public static final int ALL = UP | DOWN | LEFT | RIGHT;
+
+    private PlayerInput() {
+    }
+
+    /**
+     * Apply the movement for the given input to a body in a PhysicsWorld.
+     * 
+     * @param world     the PhysicsWorld holding the body.
+     * @param id        the id of the body.
+     * @param input     the held directions, as a combination of UP, DOWN, LEFT and
+     *                  RIGHT.
+     * @param speed     the speed of the movement, in pixels per second squared.
+     * @param deltaTime the length of the current step, in seconds.
+     */
+    public static void apply(PhysicsWorld world, int id, int input, double speed, double deltaTime) {
+        world.setVelocity(id, world.getVelocityX(id) + getVelocityChangeX(input, speed, deltaTime),
+                world.getVelocityY(id) + getVelocityChangeY(input, speed, deltaTime));
+    }
+
+    /**
+     * Get the change in the x component of a body's velocity made by the given
+     * input in one step.
+     * 
+     * @param input     the held directions, as a combination of UP, DOWN, LEFT and
+     *                  RIGHT.
+     * @param speed     the speed of the movement, in pixels per second squared.
+     * @param deltaTime the length of the current step, in seconds.
+     * @return the change in the x component of the velocity.
+     */
+    public static double getVelocityChangeX(int input, double speed, double deltaTime) {
+        return (((input & RIGHT) != 0 ? 1 : 0) - ((input & LEFT) != 0 ? 1 : 0)) * speed * deltaTime;
+    }
+
+    /**
+     * Get the change in the y component of a body's velocity made by the given
+     * input in one step.
+     * 
+     * @param input     the held directions, as a combination of UP, DOWN, LEFT and
+     *                  RIGHT.
+     * @param speed     the speed of the movement, in pixels per second squared.
+     * @param deltaTime the length of the current step, in seconds.
+     * @return the change in the y component of the velocity.
+     */
+    public static double getVelocityChangeY(int input, double speed, double deltaTime) {
+        double totalUp = (((input & UP) != 0 ? 1 : 0) - ((input & DOWN) != 0 ? 1 : 0)) * speed * deltaTime;
+
+        // totalUp must be negated because lower y coordinates appear higher on the
+        // screen
+        return -totalUp;
+    }
+}
@@ -0,0 +1,68 @@
+package action.physics;
+
+/**
+ * A RayHit holds the first body hit by a ray cast through a PhysicsWorld. It is
+ * meant to be created once and reused for every cast, so that casting rays
+ * never allocates.
+ */
+public class RayHit {
+    int id = -1;
+    double fraction;
+    double x, y;
+    double normalX, normalY;
+
+    /**
+     * Get the id of the body hit.
+     * 
+     * @return the id of the body, or -1 if nothing was hit.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get how far along the ray the hit is.
+     * 
+     * @return the fraction of the ray travelled before the hit, from 0 to 1.
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    /**
+     * Get the x coordinate of the point where the ray hit the body's surface.
+     * 
+     * @return the x coordinate of the hit.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get the y coordinate of the point where the ray hit the body's surface.
+     * 
+     * @return the y coordinate of the hit.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Get the x component of the unit surface normal where the ray hit, pointing
+     * out of the body.
+     * 
+     * @return the x component of the normal.
+     */
+    public double getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Get the y component of the unit surface normal where the ray hit.
+     * 
+     * @return the y component of the normal.
+     */
+    public double getNormalY() {
+        return normalY;
+    }
+}
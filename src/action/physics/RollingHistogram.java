@@ -0,0 +1,117 @@
+package action.physics;
+
+import java.util.Arrays;
+
+/**
+ * A RollingHistogram keeps the most recent samples of some measurement, such
+ * as the time a phase of the frame takes, and reports percentiles over them.
+ * Older samples are overwritten as new ones arrive, so the statistics follow
+ * recent behaviour.
+ * 
+ * Recording a sample is cheap and never allocates. The percentiles are
+ * computed when asked for, by sorting a reused copy of the samples.
+ */
+public class RollingHistogram {
+    private final long[] samples;
+    private final long[] sorted;
+    private int size, next;
+    private boolean sortedValid;
+
+    private long total;
+
+    /**
+     * Initialize a new RollingHistogram that keeps the given number of samples.
+     * 
+     * @param capacity the number of recent samples to keep.
+     */
+    public RollingHistogram(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+
+        samples = new long[capacity];
+        sorted = new long[capacity];
+    }
+
+    /**
+     * Record a new sample, replacing the oldest one if the histogram is full.
+     * 
+     * @param value the sample.
+     */
+    public synchronized void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        sortedValid = false;
+
+        total += value;
+    }
+
+    /**
+     * Get a percentile of the recent samples, using the nearest sample at or above
+     * the given rank.
+     * 
+     * @param percentile the percentile, from 0 to 100.
+     * @return the percentile, or 0 if there are no samples.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0)
+            return 0;
+
+        if (!sortedValid) {
+            System.arraycopy(samples, 0, sorted, 0, size);
+            Arrays.sort(sorted, 0, size);
+            sortedValid = true;
+        }
+
+        int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+
+        return sorted[Math.min(size - 1, Math.max(0, rank))];
+    }
+
+    /**
+     * Get the highest of the recent samples.
+     * 
+     * @return the maximum, or 0 if there are no samples.
+     */
+    public long getMax() {
+        return getPercentile(100);
+    }
+
+    /**
+     * Get the most recent sample.
+     * 
+     * @return the latest sample, or 0 if there are no samples.
+     */
+    public synchronized long getLatest() {
+        return size == 0 ? 0 : samples[(next + samples.length - 1) % samples.length];
+    }
+
+    /**
+     * Get the sum of every sample ever recorded, including those no longer kept.
+     * 
+     * @return the running total.
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of recent samples kept.
+     * 
+     * @return the number of samples.
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Discard every sample and reset the running total.
+     */
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+        total = 0;
+        sortedValid = false;
+    }
+}
@@ -0,0 +1,248 @@
+package action.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import action.collision.Broadphase;
+import action.collision.SpatialHashGrid;
+import action.physics.FrameProfiler.Counter;
+import action.physics.FrameProfiler.Phase;
+
+/**
+ * A Simulation advances a PhysicsWorld through time. It has no dependency on
+ * JavaFX, so it can run on a server, in a batch job, or in a benchmark just as
+ * well as behind the game window.
+ * 
+ * Each step notifies the StepListeners, finds the contacts between the pairs
+ * reported by the Broadphase, including those that fast bodies will reach
+ * during the step, solves them with the ContactSolver, then moves every body.
+ * Steps can be run one at a time with step, or by elapsed time with advance,
+ * which uses the FixedTimestep if there is one.
+ */
+public class Simulation {
+    public static final double DEFAULT_CELL_SIZE = 128;
+
+    private PhysicsWorld world;
+    private Broadphase broadphase;
+    private FixedTimestep timestep;
+    private ContactSolver contactSolver = new ContactSolver();
+    private FrameProfiler profiler;
+
+    private final List<StepListener> stepListeners = new ArrayList<>();
+
+    private long stepCount;
+
+    /**
+     * Initialize a new Simulation with an empty PhysicsWorld and a SpatialHashGrid
+     * broadphase.
+     */
+    public Simulation() {
+        this(new PhysicsWorld());
+    }
+
+    /**
+     * Initialize a new Simulation of the given PhysicsWorld with a SpatialHashGrid
+     * broadphase.
+     * 
+     * @param world the PhysicsWorld to simulate.
+     */
+    public Simulation(PhysicsWorld world) {
+        setWorld(world);
+        setBroadphase(new SpatialHashGrid(DEFAULT_CELL_SIZE));
+    }
+
+    /**
+     * Advance the simulation by a single step.
+     * 
+     * @param deltaTime the length of the step, in seconds.
+     */
+    public void step(double deltaTime) {
+        FrameProfiler profiler = this.profiler;
+        long time = profiler == null ? 0 : profiler.start();
+
+        world.storePreviousPositions();
+
+        for (int i = 0; i < stepListeners.size(); i++) {
+            stepListeners.get(i).beforeStep(deltaTime);
+        }
+
+        if (profiler != null)
+            time = profiler.record(Phase.CONTROLLERS, time);
+
+        world.findContacts(broadphase, contactSolver, deltaTime);
+
+        if (profiler != null)
+            time = profiler.record(Phase.CONTACTS, time);
+
+        contactSolver.solve(world, deltaTime);
+
+        if (profiler != null)
+            time = profiler.record(Phase.SOLVE, time);
+
+        world.integrate(deltaTime);
+        world.updateSleep(deltaTime, contactSolver);
+
+        if (profiler != null) {
+            profiler.record(Phase.INTEGRATE, time);
+            profiler.count(Counter.PAIR_TESTS, world.getPairTestCount());
+            profiler.count(Counter.CONTACTS, contactSolver.getCount());
+        }
+
+        stepCount++;
+    }
+
+    /**
+     * Advance the simulation by the given amount of elapsed time. With a
+     * FixedTimestep, this runs as many fixed steps as the FixedTimestep allows.
+     * Without one, it runs a single step as long as the elapsed time.
+     * 
+     * @param deltaTime the elapsed time, in seconds.
+     * @return how far between the previous and current state the elapsed time
+     *         reaches, from 0 to 1, for interpolating when drawing.
+     */
+    public double advance(double deltaTime) {
+        if (timestep == null) {
+            step(deltaTime);
+            return 1;
+        }
+
+        int steps = timestep.advance(deltaTime);
+
+        for (int i = 0; i < steps; i++) {
+            step(timestep.getStepLength());
+        }
+
+        return timestep.getAlpha();
+    }
+
+    /**
+     * Add a StepListener to be notified at the start of every step. Listeners are
+     * notified in the order they were added.
+     * 
+     * @param listener the StepListener to add.
+     */
+    public void addStepListener(StepListener listener) {
+        stepListeners.add(listener);
+    }
+
+    /**
+     * Remove a StepListener.
+     * 
+     * @param listener the StepListener to remove.
+     */
+    public void removeStepListener(StepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    /**
+     * Get the number of steps simulated so far.
+     * 
+     * @return the step count.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Access the PhysicsWorld being simulated.
+     * 
+     * @return the PhysicsWorld.
+     */
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Update the PhysicsWorld being simulated.
+     * 
+     * @param world the new PhysicsWorld.
+     */
+    public void setWorld(PhysicsWorld world) {
+        if (world == null) {
+            throw new IllegalArgumentException("world must not be null");
+        }
+
+        this.world = world;
+    }
+
+    /**
+     * Access the Broadphase used to find pairs of bodies that may collide.
+     * 
+     * @return the Broadphase.
+     */
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
+    /**
+     * Update the Broadphase used to find pairs of bodies that may collide.
+     * 
+     * @param broadphase the new Broadphase.
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        if (broadphase == null) {
+            throw new IllegalArgumentException("broadphase must not be null");
+        }
+
+        this.broadphase = broadphase;
+    }
+
+    /**
+     * Access the ContactSolver that applies the collision response. Give it a
+     * ForkJoinPool to solve large sets of contacts in parallel.
+     * 
+     * @return the ContactSolver.
+     */
+    public ContactSolver getContactSolver() {
+        return contactSolver;
+    }
+
+    /**
+     * Update the ContactSolver that applies the collision response.
+     * 
+     * @param contactSolver the new ContactSolver.
+     */
+    public void setContactSolver(ContactSolver contactSolver) {
+        if (contactSolver == null) {
+            throw new IllegalArgumentException("contactSolver must not be null");
+        }
+
+        this.contactSolver = contactSolver;
+    }
+
+    /**
+     * Access the FrameProfiler that times the phases of each step.
+     * 
+     * @return the FrameProfiler, or null if steps are not profiled.
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Update the FrameProfiler that times the phases of each step.
+     * 
+     * @param profiler the new FrameProfiler, or null to stop profiling.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Access the FixedTimestep used by advance.
+     * 
+     * @return the FixedTimestep, or null if advance runs one step per call.
+     */
+    public FixedTimestep getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * Update the FixedTimestep used by advance.
+     * 
+     * @param timestep the new FixedTimestep, or null to run one step per call.
+     */
+    public void setTimestep(FixedTimestep timestep) {
+        this.timestep = timestep;
+    }
+}
@@ -0,0 +1,191 @@
+package action.physics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A SimulationThread runs a Simulation on a thread of its own, stepping it in
+ * real time with the Simulation's FixedTimestep, and hands the state after
+ * each batch of steps to another thread for drawing. A frame that takes long to
+ * simulate then delays the next published state, but not the thread that
+ * draws.
+ * 
+ * States are handed over through three WorldSnapshots. The simulation thread
+ * saves into one, the drawing thread reads from another, and the third holds
+ * the latest state that has not been picked up yet. Publishing and picking up a
+ * state swap buffers with a single atomic operation, so neither thread ever
+ * waits for the other, and a buffer is never written while it is being read.
+ * 
+ * Once the SimulationThread is started, its Simulation and PhysicsWorld belong
+ * to the simulation thread. Anything that changes them, such as moving a
+ * GameObject into the PhysicsWorld, must be passed to execute, which runs it on
+ * the simulation thread between steps. StepListeners run on the simulation
+ * thread too, so any input they read must be safe to read across threads.
+ */
+public class SimulationThread implements AutoCloseable {
+    // The shared buffer's index is in the low bits, with a bit set when it holds
+    // a state the drawing thread has not picked up
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private static final long IDLE_NANOS = 1000000;
+
+    private final Simulation simulation;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final WorldSnapshot[] snapshots = { new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot() };
+    private final long[] publishTimes = new long[3];
+    private final double[] publishAlphas = new double[3];
+    private final double[] publishStepLengths = new double[3];
+    private final AtomicInteger shared = new AtomicInteger(1);
+
+    // Owned by the simulation thread
+    private int writeIndex = 0;
+
+    // Owned by the drawing thread
+    private int readIndex = 2;
+
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile RuntimeException failure;
+
+    /**
+     * Initialize a new SimulationThread for the given Simulation. The thread is
+     * not started until start is called. This method throws an
+     * IllegalArgumentException if the Simulation has no FixedTimestep.
+     * 
+     * @param simulation the Simulation to run.
+     */
+    public SimulationThread(Simulation simulation) {
+        if (simulation.getTimestep() == null) {
+            throw new IllegalArgumentException("simulation must have a FixedTimestep");
+        }
+
+        this.simulation = simulation;
+
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Start running the Simulation.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Run a task on the simulation thread before the next step. Tasks run in the
+     * order they were passed in.
+     * 
+     * @param task the task to run.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Copy the latest published state into the given PhysicsWorld, if a state was
+     * published since the last call. The PhysicsWorld should be used only for
+     * drawing, and should be the same one on every call, so that its static tree
+     * is only rebuilt when the static bodies change. This method rethrows any
+     * exception that stopped the simulation thread.
+     * 
+     * @param world the PhysicsWorld to copy into.
+     * @return true if a new state was copied.
+     */
+    public boolean update(PhysicsWorld world) {
+        if (failure != null) {
+            throw new IllegalStateException("the simulation thread stopped", failure);
+        }
+
+        if ((shared.get() & FRESH) == 0)
+            return false;
+
+        readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+        world.restore(snapshots[readIndex]);
+
+        return true;
+    }
+
+    /**
+     * Get how far to draw the bodies between their previous and current positions
+     * in the last state copied by update, at the given time. Like the alpha
+     * returned by Simulation.advance, this stays one step behind the simulation
+     * so that drawing only ever interpolates.
+     * 
+     * @param now the current time, from System.nanoTime.
+     * @return the interpolation factor, from 0 to 1.
+     */
+    public double getAlpha(long now) {
+        double elapsed = (now - publishTimes[readIndex]) / 1000000000.0;
+        double alpha = publishAlphas[readIndex] + elapsed / publishStepLengths[readIndex];
+
+        return Math.min(1, Math.max(0, alpha));
+    }
+
+    /**
+     * Check whether the simulation thread is running.
+     * 
+     * @return true if the simulation thread is running.
+     */
+    public boolean isRunning() {
+        return running && thread.isAlive();
+    }
+
+    /**
+     * Stop the simulation thread and wait for it to finish its current step.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long previous = System.nanoTime();
+
+        try {
+            while (running) {
+                for (Runnable task; (task = tasks.poll()) != null;) {
+                    task.run();
+                }
+
+                long now = System.nanoTime();
+                long steps = simulation.getStepCount();
+                simulation.advance((now - previous) / 1000000000.0);
+                previous = now;
+
+                FixedTimestep timestep = simulation.getTimestep();
+
+                if (simulation.getStepCount() != steps)
+                    publish(now, timestep);
+
+                // Sleep until the next step is due, but wake up often enough to run
+                // tasks promptly
+                long wait = (long) ((1 - timestep.getAlpha()) * timestep.getStepLength() * 1000000000);
+                LockSupport.parkNanos(Math.min(wait, IDLE_NANOS));
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            running = false;
+        }
+    }
+
+    private void publish(long time, FixedTimestep timestep) {
+        simulation.getWorld().save(snapshots[writeIndex]);
+        publishTimes[writeIndex] = time;
+        publishAlphas[writeIndex] = timestep.getAlpha();
+        publishStepLengths[writeIndex] = timestep.getStepLength();
+
+        writeIndex = shared.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+}
@@ -0,0 +1,16 @@
+package action.physics;
+
+/**
+ * A StepListener is notified at the start of every Simulation step, before
+ * collisions are resolved and bodies are moved. This is where controllers
+ * apply their movement to the bodies they drive.
+ */
+@FunctionalInterface
+public interface StepListener {
+    /**
+     * Handle the start of a step.
+     * 
+     * @param deltaTime the length of the step, in seconds.
+     */
+    public void beforeStep(double deltaTime);
+}
@@ -0,0 +1,134 @@
+package action.physics;
+
+/**
+ * An immutable 2D vector. This is the core's replacement for JavaFX's Point2D,
+ * so that the simulation can run without JavaFX.
+ */
+public final class Vector2D {
+    public static final Vector2D ZERO = new Vector2D(0, 0);
+
+    private final double x, y;
+
+    /**
+     * Initialize a new Vector2D with the given components.
+     * 
+     * @param x the x component.
+     * @param y the y component.
+     */
+    public Vector2D(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Get the x component of this Vector2D.
+     * 
+     * @return the x component.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get the y component of this Vector2D.
+     * 
+     * @return the y component.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Add another Vector2D to this one.
+     * 
+     * @param other the Vector2D to add.
+     * @return the sum of the two vectors.
+     */
+    public Vector2D add(Vector2D other) {
+        return new Vector2D(x + other.x, y + other.y);
+    }
+
+    /**
+     * Subtract another Vector2D from this one.
+     * 
+     * @param other the Vector2D to subtract.
+     * @return the difference of the two vectors.
+     */
+    public Vector2D subtract(Vector2D other) {
+        return new Vector2D(x - other.x, y - other.y);
+    }
+
+    /**
+     * Multiply this Vector2D by a scalar.
+     * 
+     * @param factor the scalar to multiply by.
+     * @return the scaled vector.
+     */
+    public Vector2D multiply(double factor) {
+        return new Vector2D(x * factor, y * factor);
+    }
+
+    /**
+     * Compute the dot product of this Vector2D and another.
+     * 
+     * @param other the other Vector2D.
+     * @return the dot product.
+     */
+    public double dotProduct(Vector2D other) {
+        return x * other.x + y * other.y;
+    }
+
+    /**
+     * Get the length of this Vector2D.
+     * 
+     * @return the length.
+     */
+    public double magnitude() {
+        return Math.hypot(x, y);
+    }
+
+    /**
+     * Get a Vector2D with the same direction as this one and a length of 1. The
+     * zero vector is returned unchanged.
+     * 
+     * @return the normalized vector.
+     */
+    public Vector2D normalize() {
+        double magnitude = magnitude();
+
+        if (magnitude == 0)
+            return ZERO;
+
+        return new Vector2D(x / magnitude, y / magnitude);
+    }
+
+    /**
+     * Get the distance between the points described by this Vector2D and another.
+     * 
+     * @param other the other Vector2D.
+     * @return the distance between them.
+     */
+    public double distance(Vector2D other) {
+        return Math.hypot(other.x - x, other.y - y);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Vector2D))
+            return false;
+
+        Vector2D other = (Vector2D) object;
+
+        return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(x) + Double.hashCode(y);
+    }
+
+    @Override
+    public String toString() {
+        return "Vector2D [" + x + ", " + y + "]";
+    }
+}
@@ -0,0 +1,108 @@
+package action.physics;
+
+import java.util.Arrays;
+
+/**
+ * A WorldSnapshot holds a copy of the complete state of a PhysicsWorld, so that
+ * the PhysicsWorld can be put back into that state later. Snapshots are taken
+ * with PhysicsWorld.save and put back with PhysicsWorld.restore.
+ * 
+ * A WorldSnapshot is meant to be reused. Its columns only grow when a larger
+ * PhysicsWorld is saved into it, so taking and restoring snapshots of a world
+ * of a steady size never allocates, and each is a handful of array copies.
+ * 
+ * Since a GameObject is only a view over a row of its PhysicsWorld, restoring a
+ * snapshot moves every GameObject back to its saved state without creating any
+ * new objects. A GameObject whose body did not exist yet when the snapshot was
+ * taken is left pointing at a dead or reused row.
+ * 
+ * Only the state of the bodies is saved, along with the ContactCache if one is
+ * given to PhysicsWorld.save. Settings such as whether sleeping is enabled, and
+ * the rest of the state of the Simulation around the PhysicsWorld, are not.
+ */
+public class WorldSnapshot {
+    // The PhysicsWorld saved last, or null if nothing was saved yet
+    PhysicsWorld world;
+
+    int rows, count;
+    int staticVersion;
+
+    // A copy of the ContactCache saved with the state, which is kept when a later
+    // save has none so that its table can be reused
+    ContactCache contacts;
+    boolean hasContacts;
+
+    double[] pointAX, pointAY, pointBX, pointBY;
+    double[] previousAX, previousAY, previousBX, previousBY;
+    double[] velocityX, velocityY, accelerationX, accelerationY;
+    double[] radius, mass, sleepTimer;
+    int[] flags, islandNext, generation;
+
+    int[] freeIds = new int[16];
+    int freeCount;
+
+    /**
+     * Initialize a new, empty WorldSnapshot.
+     */
+    public WorldSnapshot() {
+        grow(16);
+    }
+
+    /**
+     * Check whether anything has been saved into this WorldSnapshot yet.
+     * 
+     * @return true if this WorldSnapshot holds no state.
+     */
+    public boolean isEmpty() {
+        return world == null;
+    }
+
+    /**
+     * Get the number of bodies in the saved state.
+     * 
+     * @return the number of bodies.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of rows in the saved state.
+     * 
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > flags.length)
+            grow(Math.max(capacity, flags.length * 2));
+    }
+
+    void ensureFreeCapacity(int capacity) {
+        if (capacity > freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, Math.max(capacity, freeIds.length * 2));
+    }
+
+    private void grow(int capacity) {
+        pointAX = new double[capacity];
+        pointAY = new double[capacity];
+        pointBX = new double[capacity];
+        pointBY = new double[capacity];
+        previousAX = new double[capacity];
+        previousAY = new double[capacity];
+        previousBX = new double[capacity];
+        previousBY = new double[capacity];
+        velocityX = new double[capacity];
+        velocityY = new double[capacity];
+        accelerationX = new double[capacity];
+        accelerationY = new double[capacity];
+        radius = new double[capacity];
+        mass = new double[capacity];
+        sleepTimer = new double[capacity];
+        flags = new int[capacity];
+        islandNext = new int[capacity];
+        generation = new int[capacity];
+    }
+}
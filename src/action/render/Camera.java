@@ -0,0 +1,270 @@
+package action.render;
+
+import action.objects.GameObject;
+import action.physics.PhysicsWorld;
+
+/**
+ * A Camera picks the part of the world that is shown on the canvas. It has a
+ * position, which is the point of the world shown at the centre of the canvas,
+ * and a zoom, which is the number of pixels per unit of world space. A Camera
+ * with a target follows that GameObject, keeping its centre in view.
+ * 
+ * The offset from the world origin to the top left corner of the canvas is
+ * rounded to whole pixels, so that cached images can be copied to the canvas
+ * without resampling.
+ */
+public class Camera {
+    private double x, y;
+    private double zoom = 1;
+    private GameObject target;
+
+    private double viewportWidth, viewportHeight;
+    private double offsetX, offsetY;
+
+    /**
+     * Initialize a new Camera looking at the world origin, with a zoom of 1.
+     */
+    public Camera() {
+    }
+
+    /**
+     * Initialize a new Camera looking at the given point, with a zoom of 1.
+     * 
+     * @param x the x coordinate of the point.
+     * @param y the y coordinate of the point.
+     */
+    public Camera(double x, double y) {
+        setPosition(x, y);
+    }
+
+    /**
+     * Move to the target, if there is one, and work out the transform for a
+     * canvas of the given size. This is called once at the start of each frame.
+     * 
+     * @param viewportWidth  the width of the canvas, in pixels.
+     * @param viewportHeight the height of the canvas, in pixels.
+     * @param alpha          how far the target is between its previous and
+     *                       current positions, from 0 to 1.
+     */
+    public void update(double viewportWidth, double viewportHeight, double alpha) {
+        update(null, viewportWidth, viewportHeight, alpha);
+    }
+
+    /**
+     * Move to the target, if there is one, and work out the transform for a
+     * canvas of the given size. The target's position is read from the given
+     * PhysicsWorld, which can be a copy of the target's own PhysicsWorld, such as
+     * one handed over by a SimulationThread. If the target's body is not in it,
+     * the target's own PhysicsWorld is used, or the target's current position if
+     * it is detached.
+     * 
+     * @param world          the PhysicsWorld being drawn, or null to use the
+     *                       target's own.
+     * @param viewportWidth  the width of the canvas, in pixels.
+     * @param viewportHeight the height of the canvas, in pixels.
+     * @param alpha          how far the target is between its previous and
+     *                       current positions, from 0 to 1.
+     */
+    public void update(PhysicsWorld world, double viewportWidth, double viewportHeight, double alpha) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+
+        if (target != null) {
+            int id = target.getId();
+
+            if (world == null || !world.isAlive(id))
+                world = target.getWorld();
+
+            if (world != null) {
+                x = (world.getInterpolatedAX(id, alpha) + world.getInterpolatedBX(id, alpha)) / 2;
+                y = (world.getInterpolatedAY(id, alpha) + world.getInterpolatedBY(id, alpha)) / 2;
+            } else {
+                x = (target.getAX() + target.getBX()) / 2;
+                y = (target.getAY() + target.getBY()) / 2;
+            }
+        }
+
+        offsetX = Math.round(x * zoom - viewportWidth / 2);
+        offsetY = Math.round(y * zoom - viewportHeight / 2);
+    }
+
+    /**
+     * Check whether any part of the given box in world space is in view.
+     * 
+     * @param minX the lowest x coordinate of the box.
+     * @param minY the lowest y coordinate of the box.
+     * @param maxX the highest x coordinate of the box.
+     * @param maxY the highest y coordinate of the box.
+     * @return true if the box overlaps the view.
+     */
+    public boolean isVisible(double minX, double minY, double maxX, double maxY) {
+        return minX <= getMaxX() && maxX >= getMinX() && minY <= getMaxY() && maxY >= getMinY();
+    }
+
+    /**
+     * Convert an x coordinate on the canvas to world space.
+     * 
+     * @param screenX the x coordinate on the canvas, in pixels.
+     * @return the x coordinate in world space.
+     */
+    public double toWorldX(double screenX) {
+        return (screenX + offsetX) / zoom;
+    }
+
+    /**
+     * Convert a y coordinate on the canvas to world space.
+     * 
+     * @param screenY the y coordinate on the canvas, in pixels.
+     * @return the y coordinate in world space.
+     */
+    public double toWorldY(double screenY) {
+        return (screenY + offsetY) / zoom;
+    }
+
+    /**
+     * Convert an x coordinate in world space to the canvas.
+     * 
+     * @param worldX the x coordinate in world space.
+     * @return the x coordinate on the canvas, in pixels.
+     */
+    public double toScreenX(double worldX) {
+        return worldX * zoom - offsetX;
+    }
+
+    /**
+     * Convert a y coordinate in world space to the canvas.
+     * 
+     * @param worldY the y coordinate in world space.
+     * @return the y coordinate on the canvas, in pixels.
+     */
+    public double toScreenY(double worldY) {
+        return worldY * zoom - offsetY;
+    }
+
+    /**
+     * Get the lowest x coordinate in view, in world space.
+     * 
+     * @return the left edge of the view.
+     */
+    public double getMinX() {
+        return offsetX / zoom;
+    }
+
+    /**
+     * Get the lowest y coordinate in view, in world space.
+     * 
+     * @return the top edge of the view.
+     */
+    public double getMinY() {
+        return offsetY / zoom;
+    }
+
+    /**
+     * Get the highest x coordinate in view, in world space.
+     * 
+     * @return the right edge of the view.
+     */
+    public double getMaxX() {
+        return (offsetX + viewportWidth) / zoom;
+    }
+
+    /**
+     * Get the highest y coordinate in view, in world space.
+     * 
+     * @return the bottom edge of the view.
+     */
+    public double getMaxY() {
+        return (offsetY + viewportHeight) / zoom;
+    }
+
+    /**
+     * Get the distance from the world origin to the left edge of the canvas, in
+     * pixels, as of the last update.
+     * 
+     * @return the horizontal offset, in whole pixels.
+     */
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Get the distance from the world origin to the top edge of the canvas, in
+     * pixels, as of the last update.
+     * 
+     * @return the vertical offset, in whole pixels.
+     */
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Get the x coordinate of the point shown at the centre of the canvas.
+     * 
+     * @return the x coordinate of the camera.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get the y coordinate of the point shown at the centre of the canvas.
+     * 
+     * @return the y coordinate of the camera.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Move the camera to look at the given point. A camera with a target moves
+     * back to the target in the next update.
+     * 
+     * @param x the x coordinate of the point.
+     * @param y the y coordinate of the point.
+     */
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Get the number of pixels per unit of world space.
+     * 
+     * @return the zoom.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Set the number of pixels per unit of world space. This method throws an
+     * IllegalArgumentException if the given zoom is not a positive finite number.
+     * 
+     * @param zoom the new zoom.
+     */
+    public void setZoom(double zoom) {
+        if (!(zoom > 0) || Double.isInfinite(zoom)) {
+            throw new IllegalArgumentException("zoom must be a positive finite number");
+        }
+
+        this.zoom = zoom;
+    }
+
+    /**
+     * Access the GameObject this camera follows.
+     * 
+     * @return the target, or null if the camera stays where it is put.
+     */
+    public GameObject getTarget() {
+        return target;
+    }
+
+    /**
+     * Update the GameObject this camera follows.
+     * 
+     * @param target the new target, or null to stop following.
+     */
+    public void setTarget(GameObject target) {
+        this.target = target;
+    }
+}
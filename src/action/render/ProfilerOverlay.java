@@ -0,0 +1,145 @@
+package action.render;
+
+import action.physics.FrameProfiler;
+import action.physics.FrameProfiler.Counter;
+import action.physics.FrameProfiler.Phase;
+import action.physics.RollingHistogram;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * A ProfilerOverlay draws the statistics of a FrameProfiler in the corner of
+ * the canvas, with one line per phase and counter. Phase durations are shown in
+ * microseconds and counters in units of work per step.
+ * 
+ * The lines are only formatted again a few times per second, and in between
+ * the same Strings are drawn, so that the overlay does not add to the
+ * allocations it reports.
+ */
+public class ProfilerOverlay {
+    private static final double LINE_HEIGHT = 14;
+    private static final double PADDING = 6;
+    private static final double WIDTH = 300;
+
+    // How long the formatted lines are drawn before they are formatted again
+    private static final long REFRESH_NANOS = 250_000_000;
+
+    private static final String HEADER = "us / count         p50       p99       max";
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static final Color BACKGROUND = Color.rgb(0, 0, 0, 0.6);
+    private static final Color TEXT = Color.WHITE;
+
+    private final StringBuilder line = new StringBuilder();
+
+    // The formatted line for each phase and then each counter, and when they were
+    // formatted
+    private final String[] lines = new String[PHASES.length + COUNTERS.length];
+    private long formattedNanos;
+
+    /**
+     * Draw the statistics of the given FrameProfiler onto the given
+     * GraphicsContext. The current fill is restored afterwards.
+     * 
+     * @param context  the GraphicsContext to draw to.
+     * @param profiler the FrameProfiler to read from.
+     */
+    public void draw(GraphicsContext context, FrameProfiler profiler) {
+        context.save();
+
+        context.setFill(BACKGROUND);
+        context.fillRect(0, 0, getWidth(), getHeight());
+        context.setFill(TEXT);
+
+        long now = System.nanoTime();
+
+        if (lines[0] == null || now - formattedNanos >= REFRESH_NANOS) {
+            formatLines(profiler);
+            formattedNanos = now;
+        }
+
+        double y = PADDING + LINE_HEIGHT;
+        context.fillText(HEADER, PADDING, y);
+
+        for (String text : lines) {
+            y += LINE_HEIGHT;
+            context.fillText(text, PADDING, y);
+        }
+
+        context.restore();
+    }
+
+    /**
+     * Get the width of the area covered by the overlay, from the top left corner
+     * of the canvas.
+     * 
+     * @return the width of the overlay.
+     */
+    public double getWidth() {
+        return WIDTH;
+    }
+
+    /**
+     * Get the height of the area covered by the overlay, from the top left corner
+     * of the canvas.
+     * 
+     * @return the height of the overlay.
+     */
+    public double getHeight() {
+        return (1 + lines.length) * LINE_HEIGHT + PADDING * 2;
+    }
+
+    private void formatLines(FrameProfiler profiler) {
+        for (int i = 0; i < PHASES.length; i++) {
+            lines[i] = format(PHASES[i].name(), profiler.getHistogram(PHASES[i]), 1000);
+        }
+
+        for (int i = 0; i < COUNTERS.length; i++) {
+            lines[PHASES.length + i] = format(COUNTERS[i].name(), profiler.getHistogram(COUNTERS[i]), 1);
+        }
+    }
+
+    private String format(String name, RollingHistogram histogram, long divisor) {
+        line.setLength(0);
+
+        for (int i = 0; i < name.length(); i++) {
+            line.append(Character.toLowerCase(name.charAt(i)));
+        }
+
+        pad(14);
+        appendNumber(histogram.getPercentile(50), divisor);
+        line.append("  ");
+        appendNumber(histogram.getPercentile(99), divisor);
+        line.append("  ");
+        appendNumber(histogram.getMax(), divisor);
+
+        return line.toString();
+    }
+
+    // Append a value divided by the divisor with one decimal place, right aligned
+    // in a field at least 8 characters wide
+    private void appendNumber(long value, long divisor) {
+        long tenths = Math.round(value * 10.0 / divisor);
+        int start = line.length();
+        int end = start + 8;
+
+        if (tenths < 0) {
+            line.append('-');
+            tenths = -tenths;
+        }
+
+        line.append(tenths / 10).append('.').append(tenths % 10);
+
+        while (line.length() < end) {
+            line.insert(start, ' ');
+        }
+    }
+
+    private void pad(int length) {
+        while (line.length() < length) {
+            line.append(' ');
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package action.render;
+
+import java.util.Arrays;
+
+import action.collision.QueryCallback;
+import action.physics.FrameProfiler;
+import action.physics.FrameProfiler.Phase;
+import action.physics.PhysicsWorld;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+
+/**
+ * A SceneRenderer draws the bodies of a PhysicsWorld onto a canvas without
+ * redrawing the parts of the scene that did not change, and without drawing
+ * the parts that are out of view.
+ * 
+ * Static bodies are drawn into a cached background image, which is only
+ * redrawn when the static bodies change, the canvas is resized, or the Camera
+ * zooms or moves out of the cached area. With a Camera, the cached area reaches
+ * beyond the canvas on every side, so a Camera that moves a little each frame
+ * only needs to copy a different part of the image. The static bodies to draw
+ * are found with the PhysicsWorld's static tree, so only those near the view
+ * are drawn at all.
+ * 
+ * Each frame where the Camera has not moved, only the regions covered by the
+ * dynamic bodies in the previous frame are cleared and restored from the
+ * background. Dynamic bodies are then drawn on top if their bounds are in view.
+ * 
+ * Bodies with the same width are stroked together as a single path, so the
+ * stroke state is set once per run of equal widths instead of once per body.
+ * Dynamic bodies are always drawn over static ones.
+ */
+public class SceneRenderer {
+    // Extra space around each dirty region to cover antialiasing
+    private static final double MARGIN = 2;
+
+    // How far the cached background reaches past each side of the canvas when
+    // there is a Camera, as a fraction of the canvas size
+    private static final double BACKGROUND_PADDING = 0.5;
+
+    private Camera camera;
+
+    private WritableImage background;
+    private final Canvas backgroundCanvas = new Canvas();
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    // What the background was last drawn from, and where its top left corner is
+    // in pixels from the world origin
+    private PhysicsWorld backgroundWorld;
+    private int backgroundVersion;
+    private double backgroundZoom;
+    private double backgroundX, backgroundY;
+
+    // The transform of the last frame
+    private double zoom, offsetX, offsetY;
+
+    // The regions drawn over in the last frame, on the canvas, as minX, minY,
+    // maxX, maxY
+    private double[] dirty = new double[64];
+    private int dirtyCount;
+
+    // The state of the path being stroked
+    private GraphicsContext strokeContext;
+    private PhysicsWorld strokeWorld;
+    private double lineWidth;
+    private final QueryCallback strokeStatic = id -> stroke(strokeContext, strokeWorld, id, 1);
+
+    /**
+     * Initialize a new SceneRenderer with an empty background and no Camera.
+     */
+    public SceneRenderer() {
+        snapshotParameters.setFill(Color.TRANSPARENT);
+    }
+
+    /**
+     * Draw every body in the given PhysicsWorld onto the given GraphicsContext, at
+     * positions interpolated between their previous and current positions.
+     * Everything else drawn onto the canvas since the last call is erased only
+     * where it was marked with addDirtyRegion.
+     * 
+     * @param context the GraphicsContext to draw to.
+     * @param world   the PhysicsWorld holding the bodies, or null to draw none.
+     * @param alpha   how far to go from the previous positions, from 0 to 1.
+     */
+    public void draw(GraphicsContext context, PhysicsWorld world, double alpha) {
+        draw(context, world, alpha, null);
+    }
+
+    /**
+     * Draw every body in the given PhysicsWorld onto the given GraphicsContext, as
+     * draw does, and record the time taken to restore the background as the
+     * CLEAR phase and the time taken to draw the dynamic bodies as the DRAW phase
+     * of the given FrameProfiler.
+     * 
+     * @param context  the GraphicsContext to draw to.
+     * @param world    the PhysicsWorld holding the bodies, or null to draw none.
+     * @param alpha    how far to go from the previous positions, from 0 to 1.
+     * @param profiler the FrameProfiler to record to, or null to record nothing.
+     */
+    public void draw(GraphicsContext context, PhysicsWorld world, double alpha, FrameProfiler profiler) {
+        long time = profiler == null ? 0 : profiler.start();
+        double width = context.getCanvas().getWidth();
+        double height = context.getCanvas().getHeight();
+        double previousX = offsetX, previousY = offsetY;
+
+        if (camera == null) {
+            zoom = 1;
+            offsetX = 0;
+            offsetY = 0;
+        } else {
+            camera.update(world, width, height, alpha);
+            zoom = camera.getZoom();
+            offsetX = camera.getOffsetX();
+            offsetY = camera.getOffsetY();
+        }
+
+        if (needsBackground(world, width, height)) {
+            drawBackground(world, width, height);
+            copyBackground(context, 0, 0, width, height);
+        } else if (offsetX != previousX || offsetY != previousY) {
+            copyBackground(context, 0, 0, width, height);
+        } else {
+            // Restore the background wherever something was drawn over it
+            for (int i = 0; i < dirtyCount; i += 4) {
+                double minX = Math.max(0, Math.floor(dirty[i] - MARGIN));
+                double minY = Math.max(0, Math.floor(dirty[i + 1] - MARGIN));
+                double maxX = Math.min(width, Math.ceil(dirty[i + 2] + MARGIN));
+                double maxY = Math.min(height, Math.ceil(dirty[i + 3] + MARGIN));
+
+                if (minX < maxX && minY < maxY)
+                    copyBackground(context, minX, minY, maxX - minX, maxY - minY);
+            }
+        }
+
+        dirtyCount = 0;
+
+        if (profiler != null)
+            time = profiler.record(Phase.CLEAR, time);
+
+        if (world != null)
+            drawDynamic(context, world, width, height, alpha);
+
+        if (profiler != null)
+            profiler.record(Phase.DRAW, time);
+    }
+
+    /**
+     * Mark a region of the canvas as drawn over, so that it is restored from the
+     * background at the start of the next frame. Anything drawn onto the canvas
+     * outside of this SceneRenderer, such as an overlay, must be marked. The
+     * region is given in pixels on the canvas, not in world space.
+     * 
+     * @param x      the x coordinate of the region's top left corner.
+     * @param y      the y coordinate of the region's top left corner.
+     * @param width  the width of the region.
+     * @param height the height of the region.
+     */
+    public void addDirtyRegion(double x, double y, double width, double height) {
+        if (dirtyCount == dirty.length)
+            dirty = Arrays.copyOf(dirty, dirty.length * 2);
+
+        dirty[dirtyCount++] = x;
+        dirty[dirtyCount++] = y;
+        dirty[dirtyCount++] = x + width;
+        dirty[dirtyCount++] = y + height;
+    }
+
+    /**
+     * Throw away the cached background, so that it is redrawn in the next frame.
+     * This is only needed if the static bodies are changed without going through
+     * their PhysicsWorld.
+     */
+    public void invalidate() {
+        background = null;
+    }
+
+    private boolean needsBackground(PhysicsWorld world, double width, double height) {
+        if (background == null || world != backgroundWorld || zoom != backgroundZoom)
+            return true;
+
+        if (world != null && world.getStaticVersion() != backgroundVersion)
+            return true;
+
+        // The view must fit inside the cached area
+        return offsetX < backgroundX || offsetY < backgroundY
+                || offsetX + Math.ceil(width) > backgroundX + background.getWidth()
+                || offsetY + Math.ceil(height) > backgroundY + background.getHeight();
+    }
+
+    private void drawBackground(PhysicsWorld world, double width, double height) {
+        double paddingX = camera == null ? 0 : Math.ceil(width * BACKGROUND_PADDING);
+        double paddingY = camera == null ? 0 : Math.ceil(height * BACKGROUND_PADDING);
+        double imageWidth = Math.ceil(width) + paddingX * 2;
+        double imageHeight = Math.ceil(height) + paddingY * 2;
+
+        backgroundX = offsetX - paddingX;
+        backgroundY = offsetY - paddingY;
+
+        backgroundCanvas.setWidth(imageWidth);
+        backgroundCanvas.setHeight(imageHeight);
+
+        GraphicsContext context = backgroundCanvas.getGraphicsContext2D();
+        context.clearRect(0, 0, imageWidth, imageHeight);
+
+        if (world != null) {
+            context.save();
+            context.setTransform(zoom, 0, 0, zoom, -backgroundX, -backgroundY);
+            beginStroke(context, world);
+
+            world.findStatic(backgroundX / zoom, backgroundY / zoom, (backgroundX + imageWidth) / zoom,
+                    (backgroundY + imageHeight) / zoom, strokeStatic);
+
+            endStroke();
+            context.restore();
+        }
+
+        if (background == null || background.getWidth() != imageWidth || background.getHeight() != imageHeight)
+            background = new WritableImage((int) imageWidth, (int) imageHeight);
+
+        backgroundCanvas.snapshot(snapshotParameters, background);
+
+        backgroundWorld = world;
+        backgroundVersion = world == null ? 0 : world.getStaticVersion();
+        backgroundZoom = zoom;
+    }
+
+    private void copyBackground(GraphicsContext context, double x, double y, double width, double height) {
+        context.clearRect(x, y, width, height);
+        context.drawImage(background, x + offsetX - backgroundX, y + offsetY - backgroundY, width, height, x, y,
+                width, height);
+    }
+
+    private void drawDynamic(GraphicsContext context, PhysicsWorld world, double width, double height,
+            double alpha) {
+        double viewMinX = offsetX / zoom, viewMinY = offsetY / zoom;
+        double viewMaxX = (offsetX + width) / zoom, viewMaxY = (offsetY + height) / zoom;
+
+        context.save();
+        context.setTransform(zoom, 0, 0, zoom, -offsetX, -offsetY);
+        beginStroke(context, world);
+
+        for (int id = 0; id < world.getRows(); id++) {
+            if (!world.isAlive(id) || world.isStatic(id))
+                continue;
+
+            double radius = world.getRadius(id);
+            double ax = world.getInterpolatedAX(id, alpha);
+            double ay = world.getInterpolatedAY(id, alpha);
+            double bx = world.getInterpolatedBX(id, alpha);
+            double by = world.getInterpolatedBY(id, alpha);
+
+            double minX = Math.min(ax, bx) - radius, minY = Math.min(ay, by) - radius;
+            double maxX = Math.max(ax, bx) + radius, maxY = Math.max(ay, by) + radius;
+
+            // Skip bodies that are entirely out of view
+            if (minX > viewMaxX || maxX < viewMinX || minY > viewMaxY || maxY < viewMinY)
+                continue;
+
+            stroke(context, world, id, alpha);
+            addDirtyRegion(minX * zoom - offsetX, minY * zoom - offsetY, (maxX - minX) * zoom, (maxY - minY) * zoom);
+        }
+
+        endStroke();
+        context.restore();
+    }
+
+    private void beginStroke(GraphicsContext context, PhysicsWorld world) {
+        strokeContext = context;
+        strokeWorld = world;
+        lineWidth = -1;
+
+        context.setLineCap(StrokeLineCap.ROUND);
+    }
+
+    /**
+     * Add a body to the path being stroked. A body with a different width from
+     * the last one strokes the path so far and starts a new one.
+     */
+    private void stroke(GraphicsContext context, PhysicsWorld world, int id, double alpha) {
+        double radius = world.getRadius(id);
+
+        if (radius * 2 != lineWidth) {
+            if (lineWidth >= 0)
+                context.stroke();
+
+            lineWidth = radius * 2;
+            context.setLineWidth(lineWidth);
+            context.beginPath();
+        }
+
+        context.moveTo(world.getInterpolatedAX(id, alpha), world.getInterpolatedAY(id, alpha));
+        context.lineTo(world.getInterpolatedBX(id, alpha), world.getInterpolatedBY(id, alpha));
+    }
+
+    private void endStroke() {
+        if (lineWidth >= 0)
+            strokeContext.stroke();
+
+        strokeContext = null;
+        strokeWorld = null;
+    }
+
+    /**
+     * Access the Camera that picks the part of the world shown.
+     * 
+     * @return the Camera, or null if the world origin is at the top left corner of
+     *         the canvas and the zoom is 1.
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Update the Camera that picks the part of the world shown.
+     * 
+     * @param camera the new Camera, or null to show the world with its origin at
+     *               the top left corner of the canvas and a zoom of 1.
+     */
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+        background = null;
+    }
+}
@@ -0,0 +1,178 @@
+package action.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.IntSupplier;
+
+import action.physics.ContactSolver;
+import action.physics.PhysicsWorld;
+import action.physics.Simulation;
+import action.physics.StepListener;
+
+/**
+ * An InputRecorder records the input and length of every step of a Simulation
+ * in the replay format, so that the session can be run again by an
+ * InputReplay. Add it to the Simulation as a StepListener when the PhysicsWorld
+ * is in the state the replay should start from, and close it when the session
+ * ends.
+ * 
+ * The PhysicsWorld's sleep and continuous collision settings and the
+ * ContactSolver's settings are recorded in the header, so the replay runs with
+ * the same ones. The ids of bodies are not kept by a level file, so the body
+ * driven by the input is recorded by its position among the alive bodies.
+ * 
+ * The input is read from an IntSupplier at the start of each step, as a set of
+ * bits. A replay only reproduces the session if that input is everything that
+ * affects the simulation from outside, so anything else that changes the
+ * PhysicsWorld between steps, such as a ChunkStreamer, must not be used while
+ * recording.
+ * 
+ * @see ReplayFormat
+ */
+public class InputRecorder implements StepListener, Closeable {
+    private final DataOutputStream output;
+    private final PhysicsWorld world;
+    private final IntSupplier input;
+
+    private long stepCount;
+
+    // The run of steps with the same input and step length that is not written
+    // yet
+    private int runInput;
+    private int runLength;
+    private double stepLength = Double.NaN;
+
+    /**
+     * Initialize a new InputRecorder that writes to the given OutputStream. The
+     * header is written straight away, with the current state of the
+     * Simulation's PhysicsWorld.
+     * 
+     * A level file cannot hold how long bodies have been resting or the impulses
+     * in a ContactCache, so every body is woken with its sleep timer reset and
+     * the ContactCache is cleared first. This method throws an
+     * IllegalArgumentException if the body driven by the input is not alive.
+     * 
+     * @param output     the OutputStream to write to.
+     * @param simulation the Simulation being recorded.
+     * @param bodyId     the id of the body driven by the input.
+     * @param speed      the speed of the controller that drives the body.
+     * @param input      the source of the input for each step.
+     * @throws IOException if the header cannot be written.
+     */
+    public InputRecorder(OutputStream output, Simulation simulation, int bodyId, double speed, IntSupplier input)
+            throws IOException {
+        if (simulation == null || input == null) {
+            throw new IllegalArgumentException("simulation and input must not be null");
+        }
+
+        PhysicsWorld world = simulation.getWorld();
+        ContactSolver solver = simulation.getContactSolver();
+
+        if (!world.isAlive(bodyId)) {
+            throw new IllegalArgumentException("body " + bodyId + " is not alive");
+        }
+
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.world = world;
+        this.input = input;
+
+        world.resetSleep();
+
+        if (solver.getCache() != null)
+            solver.getCache().clear();
+
+        // The body's id once the level is loaded is the number of alive bodies
+        // before it
+        int bodyIndex = 0;
+
+        for (int id = 0; id < bodyId; id++) {
+            if (world.isAlive(id))
+                bodyIndex++;
+        }
+
+        this.output.writeInt(ReplayFormat.MAGIC);
+        this.output.writeInt(ReplayFormat.VERSION);
+        this.output.writeInt(bodyIndex);
+        this.output.writeDouble(speed);
+        this.output.writeBoolean(world.isSleepingEnabled());
+        this.output.writeDouble(world.getSleepSpeed());
+        this.output.writeDouble(world.getSleepDelay());
+        this.output.writeDouble(world.getContinuousSpeed());
+        this.output.writeInt(solver.getIterations());
+        this.output.writeDouble(solver.getRestitution());
+        this.output.writeBoolean(solver.getCache() != null);
+        this.output.writeLong(world.getStateHash());
+    }
+
+    public void beforeStep(double deltaTime) {
+        int stepInput = input.getAsInt();
+
+        try {
+            if (Double.doubleToLongBits(deltaTime) != Double.doubleToLongBits(stepLength)) {
+                writeRun();
+
+                output.writeByte(ReplayFormat.STEP_LENGTH);
+                output.writeDouble(deltaTime);
+                stepLength = deltaTime;
+            } else if (stepInput != runInput) {
+                writeRun();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        runInput = stepInput;
+        runLength++;
+        stepCount++;
+    }
+
+    /**
+     * Write the END entry with the current state of the PhysicsWorld, and close
+     * the OutputStream. This should be called between steps.
+     * 
+     * @throws IOException if the entry cannot be written.
+     */
+    public void close() throws IOException {
+        try {
+            writeRun();
+
+            output.writeByte(ReplayFormat.END);
+            output.writeLong(stepCount);
+            output.writeLong(world.getStateHash());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Get the number of steps recorded so far.
+     * 
+     * @return the step count.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    private void writeRun() throws IOException {
+        if (runLength == 0)
+            return;
+
+        output.writeByte(ReplayFormat.RUN);
+        writeVarInt(runInput);
+        writeVarInt(runLength);
+        runLength = 0;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        output.writeByte(value);
+    }
+}
@@ -0,0 +1,214 @@
+package action.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntConsumer;
+
+import action.physics.ContactCache;
+import action.physics.ContactSolver;
+import action.physics.PhysicsWorld;
+import action.physics.Simulation;
+
+/**
+ * An InputReplay runs the steps recorded by an InputRecorder again. The steps
+ * are run back to back, without waiting for real time to pass, so a replay runs
+ * as fast as the Simulation can step.
+ * 
+ * Before each step, the recorded input is passed to an IntConsumer, which must
+ * apply it the same way as during the recording. The Simulation must start
+ * from the same PhysicsWorld as the recording, usually loaded from the level
+ * file stored next to the replay file, and be set up with the same Broadphase.
+ * The recorded PhysicsWorld and ContactSolver settings are applied to the
+ * Simulation before the first step.
+ * 
+ * @see ReplayFormat
+ */
+public class InputReplay implements Closeable {
+    private final DataInputStream input;
+
+    private final int bodyId;
+    private final double speed;
+    private final long initialHash;
+
+    private final boolean sleepingEnabled;
+    private final double sleepSpeed;
+    private final double sleepDelay;
+    private final double continuousSpeed;
+
+    private final int iterations;
+    private final double restitution;
+    private final boolean cached;
+
+    private long stepCount;
+    private long finalHash;
+
+    /**
+     * Initialize a new InputReplay that reads from the given InputStream. The
+     * header is read straight away.
+     * 
+     * @param input the InputStream to read from.
+     * @throws IOException if the header cannot be read or is not a replay header
+     *                     of a supported version.
+     */
+    public InputReplay(InputStream input) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+
+        if (this.input.readInt() != ReplayFormat.MAGIC)
+            throw new IOException("not a replay file");
+
+        int version = this.input.readInt();
+
+        if (version != ReplayFormat.VERSION)
+            throw new IOException("unsupported replay version " + version);
+
+        bodyId = this.input.readInt();
+        speed = this.input.readDouble();
+        sleepingEnabled = this.input.readBoolean();
+        sleepSpeed = this.input.readDouble();
+        sleepDelay = this.input.readDouble();
+        continuousSpeed = this.input.readDouble();
+        iterations = this.input.readInt();
+        restitution = this.input.readDouble();
+        cached = this.input.readBoolean();
+        initialHash = this.input.readLong();
+    }
+
+    /**
+     * Run every recorded step on the given Simulation, after giving its
+     * PhysicsWorld and ContactSolver the recorded settings and a new ContactCache
+     * if one was used. This method throws an IllegalStateException if the
+     * Simulation's PhysicsWorld is not in the state the recording started from.
+     * 
+     * @param simulation the Simulation to step.
+     * @param consumer   the IntConsumer that applies the input of each step.
+     * @return the number of steps run.
+     * @throws IOException if the replay cannot be read or ends early, or holds
+     *                     settings that are out of range.
+     */
+    public long run(Simulation simulation, IntConsumer consumer) throws IOException {
+        PhysicsWorld world = simulation.getWorld();
+        ContactSolver solver = simulation.getContactSolver();
+
+        try {
+            world.setSleepingEnabled(sleepingEnabled);
+            world.setSleepSpeed(sleepSpeed);
+            world.setSleepDelay(sleepDelay);
+            world.setContinuousSpeed(continuousSpeed);
+            solver.setIterations(iterations);
+            solver.setRestitution(restitution);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("replay holds invalid settings", e);
+        }
+
+        solver.setCache(cached ? new ContactCache() : null);
+
+        if (world.getStateHash() != initialHash) {
+            throw new IllegalStateException("the world is not in the state the recording started from");
+        }
+
+        double stepLength = 0;
+        long steps = 0;
+
+        while (true) {
+            byte tag = input.readByte();
+
+            if (tag == ReplayFormat.RUN) {
+                int stepInput = readVarInt();
+                int runLength = readVarInt();
+
+                for (int i = 0; i < runLength; i++) {
+                    consumer.accept(stepInput);
+                    simulation.step(stepLength);
+                }
+
+                steps += runLength;
+            } else if (tag == ReplayFormat.STEP_LENGTH) {
+                stepLength = input.readDouble();
+            } else if (tag == ReplayFormat.END) {
+                stepCount = input.readLong();
+                finalHash = input.readLong();
+
+                if (stepCount != steps)
+                    throw new IOException("replay holds " + steps + " steps but should hold " + stepCount);
+
+                return steps;
+            } else {
+                throw new IOException("unknown replay entry " + tag);
+            }
+        }
+    }
+
+    /**
+     * Close the InputStream.
+     * 
+     * @throws IOException if the InputStream cannot be closed.
+     */
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Get the id of the body driven by the recorded input.
+     * 
+     * @return the body id.
+     */
+    public int getBodyId() {
+        return bodyId;
+    }
+
+    /**
+     * Get the speed of the controller that drove the body.
+     * 
+     * @return the controller's speed.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Get the state hash of the PhysicsWorld before the first recorded step.
+     * 
+     * @return the initial state hash.
+     */
+    public long getInitialHash() {
+        return initialHash;
+    }
+
+    /**
+     * Get the state hash of the PhysicsWorld after the last recorded step. This is
+     * only known once run has returned. A replay that reproduced the session
+     * leaves the PhysicsWorld with the same hash.
+     * 
+     * @return the final state hash.
+     */
+    public long getFinalHash() {
+        return finalHash;
+    }
+
+    /**
+     * Get the number of steps in the recording. This is only known once run has
+     * returned.
+     * 
+     * @return the step count.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("malformed var int");
+    }
+}
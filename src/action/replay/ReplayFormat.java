@@ -0,0 +1,68 @@
+package action.replay;
+
+import java.nio.file.Path;
+
+/**
+ * The ReplayFormat class describes the binary replay format, which records the
+ * input and the length of every step of a Simulation so that the steps can be
+ * run again exactly. A replay file is a header followed by a sequence of
+ * tagged entries, all in the big endian byte order of DataOutputStream.
+ * 
+ * The header holds, in order, the magic number as an int, the format version as
+ * an int, the id of the body driven by the input in the level file as an int,
+ * the speed of the controller that drives it as a double, the PhysicsWorld's
+ * settings, the ContactSolver's settings, and the state hash of the
+ * PhysicsWorld before the first step as a long. The PhysicsWorld's settings are
+ * whether sleeping is enabled as a boolean, then the sleep speed, the sleep
+ * delay and the continuous speed as doubles. The ContactSolver's settings are
+ * the number of iterations as an int, the restitution as a double, and whether
+ * a ContactCache is used as a boolean.
+ * 
+ * Each entry starts with its tag as a byte. A RUN entry holds the input as a
+ * var int and the number of consecutive steps that used it as a var int. A
+ * STEP_LENGTH entry holds the length of the steps in the runs that follow it as
+ * a double. The END entry holds the total number of steps as a long and the
+ * state hash of the PhysicsWorld after the last step as a long, and is always
+ * the last entry. Since the input rarely changes and a FixedTimestep always
+ * gives the same step length, a long session records into a few bytes per
+ * change of input.
+ * 
+ * The PhysicsWorld before the first step is stored next to the replay file, as
+ * a level file with the same name and the .level extension.
+ * 
+ * Any change to the layout must increase VERSION.
+ */
+public final class ReplayFormat {
+    /**
+     * The first four bytes of every replay file, which spell "ACTR".
+     */
+    public static final int MAGIC = 0x41435452;
+
+    public static final int VERSION = 2;
+
+    public static final byte RUN = 0;
+    public static final byte STEP_LENGTH = 1;
+    public static final byte END = 2;
+
+    public static final String REPLAY_EXTENSION = ".replay";
+    public static final String LEVEL_EXTENSION = ".level";
+
+    private ReplayFormat() {
+    }
+
+    /**
+     * Get the path of the level file that holds the PhysicsWorld before the first
+     * step of a replay.
+     * 
+     * @param replayPath the path of the replay file.
+     * @return the path of its level file.
+     */
+    public static Path getLevelPath(Path replayPath) {
+        String name = replayPath.getFileName().toString();
+
+        if (name.endsWith(REPLAY_EXTENSION))
+            name = name.substring(0, name.length() - REPLAY_EXTENSION.length());
+
+        return replayPath.resolveSibling(name + LEVEL_EXTENSION);
+    }
+}
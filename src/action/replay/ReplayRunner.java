@@ -0,0 +1,133 @@
+package action.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import action.level.LevelReader;
+import action.physics.PhysicsWorld;
+import action.physics.PlayerInput;
+import action.physics.Simulation;
+
+/**
+ * The ReplayRunner runs recorded sessions headlessly, as fast as they can be
+ * simulated, and checks that each one ends in exactly the state it was
+ * recorded in. Sessions are recorded by starting the demo with
+ * --record=&lt;name&gt;, and run with
+ * 
+ * java action.replay.ReplayRunner &lt;replay files&gt;
+ * 
+ * Sessions are independent of each other, so they are run in parallel. The
+ * exit status is 0 only if every session was reproduced.
+ */
+public class ReplayRunner {
+    /**
+     * The result of running one session.
+     */
+    public static class Result {
+        private final Path path;
+        private final long steps;
+        private final long nanos;
+        private final boolean reproduced;
+        private final String error;
+
+        private Result(Path path, long steps, long nanos, boolean reproduced, String error) {
+            this.path = path;
+            this.steps = steps;
+            this.nanos = nanos;
+            this.reproduced = reproduced;
+            this.error = error;
+        }
+
+        /**
+         * Check whether the session ended in the state it was recorded in.
+         * 
+         * @return true if the session was reproduced.
+         */
+        public boolean isReproduced() {
+            return reproduced;
+        }
+
+        /**
+         * Get the number of steps run.
+         * 
+         * @return the step count.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Get the time taken to run the steps.
+         * 
+         * @return the time, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null)
+                return path + ": " + error;
+
+            double seconds = nanos / 1000000000.0;
+
+            return String.format("%s: %d steps in %.1f ms (%.0f steps/s), %s", path, steps, seconds * 1000,
+                    steps / seconds, reproduced ? "reproduced" : "DIVERGED");
+        }
+    }
+
+    /**
+     * Run the session recorded in a replay file, starting from the PhysicsWorld in
+     * the level file stored next to it.
+     * 
+     * @param path the path of the replay file.
+     * @return the Result of the run.
+     */
+    public static Result run(Path path) {
+        try (InputReplay replay = new InputReplay(Files.newInputStream(path))) {
+            PhysicsWorld world = new PhysicsWorld();
+            LevelReader.load(ReplayFormat.getLevelPath(path), world);
+
+            Simulation simulation = new Simulation(world);
+            int bodyId = replay.getBodyId();
+            double speed = replay.getSpeed();
+            int[] input = new int[1];
+
+            simulation.addStepListener(
+                    deltaTime -> PlayerInput.apply(world, bodyId, input[0], speed, deltaTime));
+
+            long start = System.nanoTime();
+            long steps = replay.run(simulation, stepInput -> input[0] = stepInput);
+            long nanos = System.nanoTime() - start;
+
+            return new Result(path, steps, nanos, world.getStateHash() == replay.getFinalHash(), null);
+        } catch (IOException | RuntimeException e) {
+            return new Result(path, 0, 0, false, e.toString());
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Path> paths = Arrays.stream(args).map(Paths::get).collect(Collectors.toList());
+        List<Result> results = paths.parallelStream().map(ReplayRunner::run).collect(Collectors.toList());
+
+        long failed = 0;
+
+        for (Result result : results) {
+            System.out.println(result);
+
+            if (!result.isReproduced())
+                failed++;
+        }
+
+        System.out.println(results.size() - failed + " of " + results.size() + " sessions reproduced");
+
+        if (failed > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,65 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * Checks that a ChunkStreamer reports a chunk file it cannot read and goes on
+ * streaming the chunks around it. Run it with ant test.
+ */
+public class ChunkStreamerTest {
+    private static final double CHUNK_SIZE = 100;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("chunk-test");
+
+        try {
+            PhysicsWorld level = new PhysicsWorld();
+            level.add(110, 50, 130, 50, 5, 1);
+            level.add(150, 20, 150, 80, 5, 1);
+            ChunkStreamer.writeChunks(level, CHUNK_SIZE, directory);
+
+            // A chunk file too short to hold a header
+            Files.write(directory.resolve("0_0.level"), new byte[3]);
+
+            List<String> failures = new ArrayList<>();
+            PhysicsWorld world = new PhysicsWorld();
+
+            // Read chunks on the calling thread, so each update sees them loaded
+            try (ChunkStreamer streamer = new ChunkStreamer(directory, CHUNK_SIZE, 50, 50, Runnable::run)) {
+                streamer.setErrorListener((x, y, error) -> failures.add(x + "_" + y));
+
+                for (int i = 0; i < 3; i++) {
+                    streamer.update(world, 100, 50);
+                }
+
+                check(failures.size() == 1 && failures.get(0).equals("0_0"),
+                        "the damaged chunk was not reported once: " + failures);
+                check(streamer.getFailedCount() == 1, "the failed count is " + streamer.getFailedCount());
+                check(world.getCount() == 2, "the readable chunk was not streamed in: " + world.getCount());
+            }
+        } finally {
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                for (Path path : paths) {
+                    Files.delete(path);
+                }
+            }
+
+            Files.delete(directory);
+        }
+
+        System.out.println("ChunkStreamerTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package action.level;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import action.physics.PhysicsWorld;
+
+/**
+ * Checks that a PhysicsWorld written by a LevelWriter loads back into exactly
+ * the same state, and that the LevelValidator rejects level files that were
+ * damaged after they were written. Run it with ant test.
+ */
+public class LevelRoundTripTest {
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("level-test");
+
+        try {
+            roundTrip(directory.resolve("world.level"));
+            corruptedChecksum(directory.resolve("world.level"), directory.resolve("corrupted.level"));
+            truncated(directory.resolve("world.level"), directory.resolve("truncated.level"));
+        } finally {
+            for (String name : new String[] { "world.level", "corrupted.level", "truncated.level" }) {
+                Files.deleteIfExists(directory.resolve(name));
+            }
+
+            Files.delete(directory);
+        }
+
+        System.out.println("LevelRoundTripTest passed");
+    }
+
+    // A world with a row of each kind the format can hold
+    private static PhysicsWorld createWorld() {
+        PhysicsWorld world = new PhysicsWorld();
+
+        world.addStatic(-500, 400, 500, 420, 10);
+
+        int moving = world.add(0, 0, 40, 10, 5, 2);
+        world.setVelocity(moving, 120.5, -30.25);
+
+        int falling = world.add(100, -50, 100, -20, 8, 0.75);
+        world.setAcceleration(falling, 0, 981);
+
+        int bullet = world.add(-200, 0, -190, 0, 2, 0.1);
+        world.setVelocity(bullet, 4000, 0);
+        world.setAcceleration(bullet, -3.5, 9.81);
+        world.setContinuous(bullet, true);
+
+        return world;
+    }
+
+    private static void roundTrip(Path path) throws IOException {
+        PhysicsWorld world = createWorld();
+        LevelWriter.write(world, path);
+
+        List<String> problems = LevelValidator.validate(path);
+        check(problems.isEmpty(), "a written level has problems: " + problems);
+
+        PhysicsWorld loaded = new PhysicsWorld();
+        int count = LevelReader.load(path, loaded);
+
+        check(count == world.getCount(), "loaded " + count + " bodies, expected " + world.getCount());
+        check(loaded.getStateHash() == world.getStateHash(), "the loaded world is not in the written state");
+    }
+
+    private static void corruptedChecksum(Path source, Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(source);
+
+        // Flip the lowest bit of the first record's first coordinate, which keeps it
+        // a finite number so that only the checksum can catch it
+        bytes[LevelFormat.recordOffset(0) + LevelFormat.AX_OFFSET] ^= 1;
+        Files.write(path, bytes);
+
+        List<String> problems = LevelValidator.validate(path);
+        check(problems.contains("checksum does not match the records"),
+                "a corrupted record was not caught: " + problems);
+    }
+
+    private static void truncated(Path source, Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(source);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - LevelFormat.RECORD_SIZE / 2));
+
+        List<String> problems = LevelValidator.validate(path);
+        check(problems.size() == 1 && problems.get(0).contains("records need"),
+                "a truncated level was not caught: " + problems);
+
+        try {
+            LevelReader.load(path, new PhysicsWorld());
+            check(false, "a truncated level was loaded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
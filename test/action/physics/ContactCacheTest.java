@@ -0,0 +1,94 @@
+package action.physics;
+
+import action.collision.SweepAndPrune;
+
+/**
+ * Checks that a change to one body only drops the ContactCache entries of that
+ * body, and that a body reusing a removed body's id does not inherit its
+ * entries. Run it with ant test.
+ */
+public class ContactCacheTest {
+    private static final int GROUPS = 20;
+
+    public static void main(String[] args) {
+        changesStayWithTheirBody();
+        reusedIdStartsFromNothing();
+
+        System.out.println("ContactCacheTest passed");
+    }
+
+    // Pairs of parallel diagonal capsules far from each other, whose bounds
+    // overlap but which do not touch
+    private static PhysicsWorld createPairs() {
+        PhysicsWorld world = new PhysicsWorld();
+
+        for (int g = 0; g < GROUPS; g++) {
+            double x = g * 1000;
+
+            int first = world.add(x, 0, x + 20, 20, 1, 1);
+            int second = world.add(x + 10, 0, x + 30, 20, 1, 1);
+
+            world.setVelocity(first, 0.001, 0);
+            world.setVelocity(second, 0.001, 0);
+        }
+
+        return world;
+    }
+
+    private static void changesStayWithTheirBody() {
+        PhysicsWorld world = createPairs();
+        SweepAndPrune broadphase = new SweepAndPrune();
+        ContactSolver solver = new ContactSolver();
+        solver.setCache(new ContactCache());
+
+        world.findContacts(broadphase, solver);
+        check(world.getPairTestCount() == GROUPS, "every pair should be tested the first time");
+
+        world.findContacts(broadphase, solver);
+        check(world.getPairTestCount() == 0, "pairs known to be apart should not be tested again");
+
+        world.translate(0, 0.5, 0);
+        world.findContacts(broadphase, solver);
+        check(world.getPairTestCount() == 1, "moving one body should only test its own pair again");
+
+        int removed = 3;
+        world.remove(removed);
+        int added = world.add(1000 + 10, 0, 1000 + 30, 20, 1, 1);
+        world.setVelocity(added, 0.001, 0);
+
+        check(added == removed, "the removed id should be reused");
+
+        world.findContacts(broadphase, solver);
+        check(world.getPairTestCount() == 1, "replacing one body should only test its own pair again");
+    }
+
+    private static void reusedIdStartsFromNothing() {
+        PhysicsWorld world = new PhysicsWorld();
+        int floor = world.addStatic(-100, 0, 100, 0, 10);
+        int body = world.add(-10, -20, 10, -20, 10, 1);
+
+        ContactCache cache = new ContactCache();
+        int floorGeneration = world.getGeneration(floor);
+        int bodyGeneration = world.getGeneration(body);
+
+        cache.putContact(floor, body, floorGeneration, bodyGeneration, 0, -1, 5);
+        cache.nextStep();
+
+        check(cache.getImpulse(floor, body, floorGeneration, bodyGeneration, 0, -1) == 5,
+                "the impulse should carry over to the same bodies");
+
+        world.remove(body);
+        int reused = world.add(-10, -20, 10, -20, 10, 1);
+
+        check(reused == body, "the removed id should be reused");
+        check(world.getGeneration(reused) != bodyGeneration, "a reused id should get a new generation");
+        check(cache.getImpulse(floor, reused, floorGeneration, world.getGeneration(reused), 0, -1) == 0,
+                "a body reusing an id should not inherit the impulse of the removed body");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
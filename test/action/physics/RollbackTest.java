@@ -0,0 +1,128 @@
+package action.physics;
+
+/**
+ * Checks that restoring a snapshot of a PhysicsWorld and simulating the same
+ * steps again reproduces them exactly when contacts are warm started from a
+ * ContactCache. Run it with ant test.
+ */
+public class RollbackTest {
+    private static final double STEP_LENGTH = 1.0 / 60;
+
+    public static void main(String[] args) {
+        withWorldSnapshot();
+        withDeltaSnapshot();
+        withChangeBeforeRestore();
+        withoutCache();
+
+        System.out.println("RollbackTest passed");
+    }
+
+    // A stack of capsules resting on the floor, solved iteratively with a cache
+    private static Simulation createStack() {
+        Simulation simulation = new Simulation();
+        PhysicsWorld world = simulation.getWorld();
+
+        world.addStatic(-200, 0, 200, 0, 10);
+
+        for (int i = 0; i < 8; i++) {
+            double y = -25 - i * 30;
+            int id = world.add(-20, y, 20, y, 15, 1);
+            world.setAcceleration(id, 0, 500);
+        }
+
+        ContactSolver solver = simulation.getContactSolver();
+        solver.setIterations(4);
+        solver.setRestitution(0);
+        solver.setCache(new ContactCache());
+
+        return simulation;
+    }
+
+    private static long run(Simulation simulation, int steps) {
+        for (int i = 0; i < steps; i++) {
+            simulation.step(STEP_LENGTH);
+        }
+
+        return simulation.getWorld().getStateHash();
+    }
+
+    private static void withWorldSnapshot() {
+        Simulation simulation = createStack();
+        PhysicsWorld world = simulation.getWorld();
+        ContactCache cache = simulation.getContactSolver().getCache();
+        WorldSnapshot snapshot = new WorldSnapshot();
+
+        run(simulation, 50);
+        world.save(snapshot, cache);
+        long first = run(simulation, 10);
+
+        world.restore(snapshot, cache);
+        long second = run(simulation, 10);
+
+        check(first == second, "steps after restoring a WorldSnapshot with its cache were not reproduced");
+    }
+
+    private static void withDeltaSnapshot() {
+        Simulation simulation = createStack();
+        PhysicsWorld world = simulation.getWorld();
+        ContactCache cache = simulation.getContactSolver().getCache();
+        WorldSnapshot keyframe = new WorldSnapshot();
+        DeltaSnapshot delta = new DeltaSnapshot();
+
+        run(simulation, 40);
+        world.save(keyframe);
+        run(simulation, 10);
+        world.save(delta, keyframe, cache);
+        long first = run(simulation, 10);
+
+        world.restore(delta, cache);
+        long second = run(simulation, 10);
+
+        check(first == second, "steps after restoring a DeltaSnapshot with its cache were not reproduced");
+    }
+
+    // A body moved between the save and the restore gets a new generation, which
+    // the restore must put back along with the cache
+    private static void withChangeBeforeRestore() {
+        Simulation simulation = createStack();
+        PhysicsWorld world = simulation.getWorld();
+        ContactCache cache = simulation.getContactSolver().getCache();
+        WorldSnapshot snapshot = new WorldSnapshot();
+
+        run(simulation, 50);
+        world.save(snapshot, cache);
+        long first = run(simulation, 10);
+
+        world.translate(1, 0, 0);
+        world.restore(snapshot, cache);
+        long second = run(simulation, 10);
+
+        check(first == second, "steps after restoring a body moved since the snapshot were not reproduced");
+    }
+
+    // Restoring only the world must not warm start from the undone steps, so
+    // every restore of the same snapshot leads to the same state
+    private static void withoutCache() {
+        Simulation simulation = createStack();
+        PhysicsWorld world = simulation.getWorld();
+        WorldSnapshot snapshot = new WorldSnapshot();
+
+        run(simulation, 50);
+        world.save(snapshot);
+        run(simulation, 10);
+
+        world.restore(snapshot);
+        long first = run(simulation, 10);
+
+        world.restore(snapshot);
+        long second = run(simulation, 10);
+
+        check(first == second, "steps after restoring a WorldSnapshot without its cache depend on the undone steps");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
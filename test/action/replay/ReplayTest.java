@@ -0,0 +1,99 @@
+package action.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import action.level.LevelWriter;
+import action.physics.ContactCache;
+import action.physics.ContactSolver;
+import action.physics.PhysicsWorld;
+import action.physics.PlayerInput;
+import action.physics.Simulation;
+
+/**
+ * Checks that a session recorded from a world with removed bodies, sleeping
+ * bodies and a tuned ContactSolver is reproduced when it is replayed from the
+ * level file stored next to it by a ReplayRunner. Run it with ant test.
+ */
+public class ReplayTest {
+    private static final double STEP_LENGTH = 1.0 / 60;
+    private static final double SPEED = 300;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("replay-test");
+        Path replayPath = directory.resolve("session" + ReplayFormat.REPLAY_EXTENSION);
+        Path levelPath = ReplayFormat.getLevelPath(replayPath);
+
+        try {
+            record(replayPath, levelPath);
+
+            ReplayRunner.Result result = ReplayRunner.run(replayPath);
+
+            check(result.isReproduced(), "the replayed session did not end in the recorded state: " + result);
+        } finally {
+            Files.deleteIfExists(replayPath);
+            Files.deleteIfExists(levelPath);
+            Files.deleteIfExists(directory);
+        }
+
+        System.out.println("ReplayTest passed");
+    }
+
+    // Records a session in which the player pushes into a pile that has already
+    // fallen asleep
+    private static void record(Path replayPath, Path levelPath) throws IOException {
+        Simulation simulation = new Simulation();
+        PhysicsWorld world = simulation.getWorld();
+
+        world.addStatic(-400, 0, 400, 0, 10);
+
+        int removed = world.add(-300, -100, -300, -100, 10, 1);
+        int player = world.add(-200, -25, -180, -25, 15, 1);
+
+        for (int i = 0; i < 6; i++) {
+            double y = -25 - i * 30;
+            int id = world.add(-20, y, 20, y, 15, 1);
+            world.setAcceleration(id, 0, 500);
+        }
+
+        world.remove(removed);
+        world.setSleepingEnabled(true);
+        world.setSleepDelay(0.25);
+
+        ContactSolver solver = simulation.getContactSolver();
+        solver.setIterations(4);
+        solver.setRestitution(0);
+        solver.setCache(new ContactCache());
+
+        run(simulation, 300);
+        LevelWriter.write(world, levelPath);
+
+        int[] input = new int[1];
+
+        try (InputRecorder recorder = new InputRecorder(Files.newOutputStream(replayPath), simulation, player, SPEED,
+                () -> input[0])) {
+            simulation.addStepListener(recorder);
+            simulation.addStepListener(deltaTime -> PlayerInput.apply(world, player, input[0], SPEED, deltaTime));
+
+            input[0] = PlayerInput.RIGHT;
+            run(simulation, 60);
+            input[0] = PlayerInput.RIGHT | PlayerInput.UP;
+            run(simulation, 30);
+            input[0] = 0;
+            run(simulation, 90);
+        }
+    }
+
+    private static void run(Simulation simulation, int steps) {
+        for (int i = 0; i < steps; i++) {
+            simulation.step(STEP_LENGTH);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}